@@ -0,0 +1,45 @@
+package bench;
+
+import data.DataFrame;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading a generated csv file with {@link DataFrame#fromCsv(File)}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class CsvLoadBenchmark {
+
+    @Param({"10000", "1000000", "10000000"})
+    public int rows;
+
+    private File file;
+
+    @Setup
+    public void setUp() throws IOException {
+        file = DataGenerator.csv(rows);
+    }
+
+    @Benchmark
+    public DataFrame fromCsv() throws IOException {
+        return DataFrame.fromCsv(file);
+    }
+}
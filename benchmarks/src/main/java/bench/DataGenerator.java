@@ -0,0 +1,74 @@
+package bench;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Random;
+
+/**
+ * Writes the synthetic csv files the benchmarks run on.
+ * <p>
+ * Columns are <code>id, name, category, x, y, z</code>: two text columns, a numeric <code>x</code> with about 1% NA,
+ * <code>y = 2.5 x + noise</code>, and a mostly numeric <code>z</code> with about 0.5% "n/a" so that
+ * <code>numericSubFrame</code> has rows to drop. Files are generated with a fixed seed and cached in
+ * <code>bench.data.dir</code> (default <code>target/bench-data</code>).
+ */
+public final class DataGenerator {
+
+    private static final String[] CATEGORIES = {"fighter", "mage", "marksman", "support", "tank", "assassin"};
+
+    private DataGenerator() {
+    }
+
+    /**
+     * @param rows number of data rows
+     * @return the csv file, generated if not already cached
+     * @throws IOException if the file cannot be written
+     */
+    public static File csv(int rows) throws IOException {
+        Path dir = Paths.get(System.getProperty("bench.data.dir", "target/bench-data"));
+        Path file = dir.resolve("rows-" + rows + ".csv");
+        if (Files.exists(file)) return file.toFile();
+        Files.createDirectories(dir);
+        Path temp = Files.createTempFile(dir, "rows-" + rows, ".tmp");
+        write(temp, rows, new Random(rows));
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return file.toFile();
+    }
+
+    private static void write(Path path, int rows, Random random) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            writer.write("id,name,category,x,y,z\n");
+            StringBuilder line = new StringBuilder();
+            for (int r = 0; r < rows; r++) {
+                line.setLength(0);
+                double x = Math.round(random.nextGaussian() * 10_000) / 100.0;
+                double y = Math.round((2.5 * x + random.nextGaussian() * 5) * 1000) / 1000.0;
+                line.append(r).append(',')
+                        .append("item").append(random.nextInt(1000)).append(',')
+                        .append(CATEGORIES[random.nextInt(CATEGORIES.length)]).append(',');
+                if (random.nextInt(100) != 0) line.append(x);
+                line.append(',').append(y).append(',');
+                if (random.nextInt(200) == 0) line.append("n/a");
+                else line.append(random.nextInt(100_000) / 10.0);
+                writer.append(line).append('\n');
+            }
+        }
+    }
+
+    /**
+     * Generates the files for the given row counts ahead of a benchmark run.
+     *
+     * @param args row counts, default 10000 1000000 10000000
+     * @throws IOException if a file cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) args = new String[]{"10000", "1000000", "10000000"};
+        for (String rows : args) System.out.println(csv(Integer.parseInt(rows)));
+    }
+}
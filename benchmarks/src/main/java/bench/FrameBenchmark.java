@@ -0,0 +1,71 @@
+package bench;
+
+import data.DataFrame;
+import lm.SimpleLinearModel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Slicing, reshaping, printing and fitting a DataFrame loaded from a generated csv file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class FrameBenchmark {
+
+    @Param({"10000", "1000000"})
+    public int rows;
+
+    private DataFrame frame;
+
+    @Setup
+    public void setUp() throws IOException {
+        frame = DataFrame.fromCsv(DataGenerator.csv(rows));
+    }
+
+    @Benchmark
+    public DataFrame subFrameByColumns() {
+        return frame.subFrameByColumns("id", "x", "y");
+    }
+
+    @Benchmark
+    public DataFrame numericSubFrame() {
+        return frame.numericSubFrame("name", "category");
+    }
+
+    @Benchmark
+    public DataFrame pivotLonger() {
+        return frame.pivotLonger(List.of("id", "name", "category"), "variable", "value");
+    }
+
+    @Benchmark
+    public DataFrame replaceNa() {
+        return frame.replaceNa(0.0);
+    }
+
+    @Benchmark
+    public String toStringFrame() {
+        return frame.toString();
+    }
+
+    @Benchmark
+    public SimpleLinearModel simpleLinearModel() {
+        return new SimpleLinearModel(frame, "y", "x");
+    }
+}
@@ -0,0 +1,116 @@
+package util;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The kernels on SIMD lanes of the preferred width, NaN lanes are masked out.
+ * <p>
+ * Compiled only by the Maven profile <code>vector</code>, and loaded by {@link NumericKernels#get()} by name.
+ * Sums are accumulated per lane and reduced at the end, so they may differ from the scalar ones in the last bits.
+ */
+final class VectorKernels extends NumericKernels {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    private final NumericKernels tail = new ScalarKernels();
+
+    @Override
+    public boolean isVectorized() {
+        return true;
+    }
+
+    @Override
+    public int count(double[] values, int from, int to) {
+        int count = 0;
+        int i = from;
+        for (int bound = from + SPECIES.loopBound(to - from); i < bound; i += SPECIES.length()) {
+            DoubleVector v = DoubleVector.fromArray(SPECIES, values, i);
+            count += v.eq(v).trueCount();
+        }
+        return count + tail.count(values, i, to);
+    }
+
+    @Override
+    public double sum(double[] values, int from, int to) {
+        DoubleVector acc = DoubleVector.zero(SPECIES);
+        int i = from;
+        for (int bound = from + SPECIES.loopBound(to - from); i < bound; i += SPECIES.length()) {
+            DoubleVector v = DoubleVector.fromArray(SPECIES, values, i);
+            acc = acc.add(v, v.eq(v));
+        }
+        return acc.reduceLanes(VectorOperators.ADD) + tail.sum(values, i, to);
+    }
+
+    @Override
+    public double mean(double[] values, int from, int to) {
+        DoubleVector acc = DoubleVector.zero(SPECIES);
+        int count = 0;
+        int i = from;
+        for (int bound = from + SPECIES.loopBound(to - from); i < bound; i += SPECIES.length()) {
+            DoubleVector v = DoubleVector.fromArray(SPECIES, values, i);
+            VectorMask<Double> valid = v.eq(v);
+            acc = acc.add(v, valid);
+            count += valid.trueCount();
+        }
+        double sum = acc.reduceLanes(VectorOperators.ADD) + tail.sum(values, i, to);
+        return sum / (count + tail.count(values, i, to));
+    }
+
+    @Override
+    public double min(double[] values, int from, int to) {
+        DoubleVector acc = DoubleVector.broadcast(SPECIES, Double.MAX_VALUE);
+        int i = from;
+        for (int bound = from + SPECIES.loopBound(to - from); i < bound; i += SPECIES.length()) {
+            DoubleVector v = DoubleVector.fromArray(SPECIES, values, i);
+            acc = acc.lanewise(VectorOperators.MIN, v, v.eq(v));
+        }
+        return Math.min(acc.reduceLanes(VectorOperators.MIN), tail.min(values, i, to));
+    }
+
+    @Override
+    public double max(double[] values, int from, int to) {
+        DoubleVector acc = DoubleVector.broadcast(SPECIES, -Double.MAX_VALUE);
+        int i = from;
+        for (int bound = from + SPECIES.loopBound(to - from); i < bound; i += SPECIES.length()) {
+            DoubleVector v = DoubleVector.fromArray(SPECIES, values, i);
+            acc = acc.lanewise(VectorOperators.MAX, v, v.eq(v));
+        }
+        return Math.max(acc.reduceLanes(VectorOperators.MAX), tail.max(values, i, to));
+    }
+
+    @Override
+    public double dot(double[] x, double[] y, int from, int to) {
+        DoubleVector acc = DoubleVector.zero(SPECIES);
+        int i = from;
+        for (int bound = from + SPECIES.loopBound(to - from); i < bound; i += SPECIES.length()) {
+            DoubleVector vx = DoubleVector.fromArray(SPECIES, x, i);
+            DoubleVector vy = DoubleVector.fromArray(SPECIES, y, i);
+            acc = acc.blend(vx.fma(vy, acc), vx.eq(vx).and(vy.eq(vy)));
+        }
+        return acc.reduceLanes(VectorOperators.ADD) + tail.dot(x, y, i, to);
+    }
+
+    @Override
+    public double[] centeredMoments(double[] x, double[] y, int from, int to, double xMean, double yMean) {
+        DoubleVector sxx = DoubleVector.zero(SPECIES);
+        DoubleVector sxy = DoubleVector.zero(SPECIES);
+        DoubleVector syy = DoubleVector.zero(SPECIES);
+        int i = from;
+        for (int bound = from + SPECIES.loopBound(to - from); i < bound; i += SPECIES.length()) {
+            DoubleVector dx = DoubleVector.fromArray(SPECIES, x, i).sub(xMean);
+            DoubleVector dy = DoubleVector.fromArray(SPECIES, y, i).sub(yMean);
+            VectorMask<Double> valid = dx.eq(dx).and(dy.eq(dy));
+            sxx = sxx.blend(dx.fma(dx, sxx), valid);
+            sxy = sxy.blend(dx.fma(dy, sxy), valid);
+            syy = syy.blend(dy.fma(dy, syy), valid);
+        }
+        double[] moments = tail.centeredMoments(x, y, i, to, xMean, yMean);
+        moments[0] += sxx.reduceLanes(VectorOperators.ADD);
+        moments[1] += sxy.reduceLanes(VectorOperators.ADD);
+        moments[2] += syy.reduceLanes(VectorOperators.ADD);
+        return moments;
+    }
+}
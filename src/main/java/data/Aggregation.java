@@ -0,0 +1,114 @@
+package data;
+
+/**
+ * An aggregation of a column within groups of rows, see {@link GroupedDataFrame#agg(Aggregation...)}.
+ * <p>
+ * Sum, mean, min, max and variance use the numeric values of the column and skip the others. Count and n_distinct
+ * use every value except NA.
+ */
+public final class Aggregation {
+
+    enum Kind {
+        COUNT_ROWS, COUNT, SUM, MEAN, MIN, MAX, VARIANCE, N_DISTINCT
+    }
+
+    private final Kind kind;
+    private final String colName;
+    private final String outputName;
+
+    private Aggregation(Kind kind, String colName, String outputName) {
+        this.kind = kind;
+        this.colName = colName;
+        this.outputName = outputName;
+    }
+
+    private static Aggregation of(Kind kind, String colName, String prefix) {
+        return new Aggregation(kind, colName, prefix + "_" + colName.strip());
+    }
+
+    /**
+     * @return the number of rows of each group, in column "n"
+     */
+    public static Aggregation count() {
+        return new Aggregation(Kind.COUNT_ROWS, null, "n");
+    }
+
+    /**
+     * @param colName title of the column
+     * @return the number of values that are not NA, in column "count_colName"
+     */
+    public static Aggregation count(String colName) {
+        return of(Kind.COUNT, colName, "count");
+    }
+
+    /**
+     * @param colName title of the column
+     * @return the sum of numeric values, in column "sum_colName"
+     */
+    public static Aggregation sum(String colName) {
+        return of(Kind.SUM, colName, "sum");
+    }
+
+    /**
+     * @param colName title of the column
+     * @return the mean of numeric values, NA if none, in column "mean_colName"
+     */
+    public static Aggregation mean(String colName) {
+        return of(Kind.MEAN, colName, "mean");
+    }
+
+    /**
+     * @param colName title of the column
+     * @return the minimum numeric value, NA if none, in column "min_colName"
+     */
+    public static Aggregation min(String colName) {
+        return of(Kind.MIN, colName, "min");
+    }
+
+    /**
+     * @param colName title of the column
+     * @return the maximum numeric value, NA if none, in column "max_colName"
+     */
+    public static Aggregation max(String colName) {
+        return of(Kind.MAX, colName, "max");
+    }
+
+    /**
+     * @param colName title of the column
+     * @return the sample variance of numeric values, NA if less than 2, in column "variance_colName"
+     */
+    public static Aggregation variance(String colName) {
+        return of(Kind.VARIANCE, colName, "variance");
+    }
+
+    /**
+     * @param colName title of the column
+     * @return the number of distinct values that are not NA, in column "n_distinct_colName"
+     */
+    public static Aggregation nDistinct(String colName) {
+        return of(Kind.N_DISTINCT, colName, "n_distinct");
+    }
+
+    /**
+     * @param outputName title of the result column
+     * @return this aggregation, with its result in column <code>outputName</code>
+     */
+    public Aggregation as(String outputName) {
+        return new Aggregation(kind, colName, outputName);
+    }
+
+    Kind kind() {
+        return kind;
+    }
+
+    /**
+     * @return title of the aggregated column, null for {@link #count()}
+     */
+    String colName() {
+        return colName;
+    }
+
+    String outputName() {
+        return outputName;
+    }
+}
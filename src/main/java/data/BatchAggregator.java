@@ -0,0 +1,130 @@
+package data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Aggregates columns within groups over a sequence of DataFrames, see
+ * {@link DataFrameStream#agg(List, Aggregation...)}.
+ * <p>
+ * Each DataFrame is grouped and aggregated on its own, see {@link GroupedDataFrame#agg(Aggregation...)}. Its groups
+ * are then looked up among the groups seen so far, and its aggregators are merged into the totals. Values are
+ * compared through canonical words, which do not depend on the dictionary or the type of the column holding them:
+ * the bits of a number, or the code of a text in a dictionary shared by all DataFrames. Only the key values of each
+ * group and the distinct texts are kept, never the rows.
+ */
+final class BatchAggregator {
+
+    private static final long NA_WORD = 0x7ff8000000000000L;  // canonical NaN
+    private static final long TEXT_WORD = 0xfff8000000000000L;  // a NaN never returned by doubleToLongBits, | code
+
+    private final String[] keyNames;
+    private final Aggregation[] aggregations;
+    private final StringDictionary texts = new StringDictionary();
+    private final GroupedDataFrame.KeyTable groups;
+    private final ColumnBuilder[] keys;  // key values of each group
+    private final long[] key;
+    private GroupAggregator[] totals;
+    private int capacity;
+
+    BatchAggregator(String[] keyNames, Aggregation[] aggregations) {
+        this.keyNames = keyNames.clone();
+        this.aggregations = aggregations.clone();
+        this.groups = new GroupedDataFrame.KeyTable(new ColumnVector[keyNames.length]);
+        this.keys = DataFrame.newBuilders(keyNames.length);
+        this.key = new long[keyNames.length];
+        this.totals = newTotals(ColumnVector.DEFAULT_CAPACITY);
+        if (keyNames.length == 0) groups.groupOf(key, 0);  // a single group, even if there are no rows
+    }
+
+    private GroupAggregator[] newTotals(int capacity) {
+        this.capacity = capacity;
+        GroupAggregator[] aggregators = new GroupAggregator[aggregations.length];
+        for (int a = 0; a < aggregations.length; a++) {
+            aggregators[a] = GroupAggregator.create(aggregations[a], null, null, capacity);
+        }
+        return aggregators;
+    }
+
+    /**
+     * Aggregates the rows of <code>frame</code> into the totals.
+     *
+     * @param frame the rows
+     * @throws DataFrameException if a key or aggregated column is not found
+     */
+    void add(DataFrame frame) {
+        if (frame.rowsCount() == 0) return;
+        GroupedDataFrame grouped = new GroupedDataFrame(frame, keyNames);
+        GroupAggregator[] partials = grouped.aggregate(aggregations);
+        ColumnVector[] vectors = new ColumnVector[keyNames.length];
+        for (int k = 0; k < keyNames.length; k++) vectors[k] = frame.getColumn(keyNames[k]).vector().materialize();
+
+        int[] firstRows = grouped.firstRows();
+        int[] totalGroups = new int[firstRows.length];
+        for (int g = 0; g < firstRows.length; g++) {
+            int row = firstRows[g];
+            for (int k = 0; k < key.length; k++) key[k] = canonicalWord(vectors[k], row);
+            int groupsCount = groups.size();
+            totalGroups[g] = groups.groupOf(key, groupsCount);
+            if (totalGroups[g] < groupsCount) continue;
+            for (int k = 0; k < key.length; k++) keys[k].addFrom(vectors[k], row);
+        }
+
+        if (groups.size() > capacity) {
+            GroupAggregator[] grown = newTotals(Math.max(groups.size(), ColumnVector.grownCapacity(capacity)));
+            for (int a = 0; a < totals.length; a++) grown[a].merge(totals[a], null);
+            totals = grown;
+        }
+        for (int a = 0; a < totals.length; a++) {
+            partials[a].canonicalize(texts);
+            totals[a].merge(partials[a], totalGroups);
+        }
+    }
+
+    /**
+     * @return a new DataFrame of the key columns followed by one column per aggregation, with one row per group, in
+     * order of first appearance
+     */
+    DataFrame result() {
+        int groupsCount = groups.size();
+        List<DataColumn> columns = new ArrayList<>();
+        for (int k = 0; k < keyNames.length; k++) columns.add(new DataColumn(keyNames[k].strip(), keys[k].build()));
+        for (int a = 0; a < aggregations.length; a++) {
+            double[] values = Arrays.copyOf(totals[a].result(), groupsCount);
+            columns.add(DataColumn.of(aggregations[a].outputName(), values));
+        }
+        return DataFrame.fromColumns(columns, groupsCount);
+    }
+
+    private long canonicalWord(ColumnVector vector, int row) {
+        if (vector instanceof StringVector) {
+            StringVector strings = (StringVector) vector;
+            int code = strings.getCode(row);
+            return code == StringVector.NA_CODE ? NA_WORD : canonicalWord(strings.dictionary(), code, texts);
+        }
+        if (vector.isNa(row)) return NA_WORD;
+        double number = vector.getNumber(row);
+        return Double.doubleToLongBits(number == 0.0 ? 0.0 : number);
+    }
+
+    private static long canonicalWord(StringDictionary dictionary, int code, StringDictionary texts) {
+        double number = dictionary.number(code);
+        if (Double.isNaN(number)) return TEXT_WORD | texts.encode(dictionary.text(code), Double.NaN);
+        return Double.doubleToLongBits(number == 0.0 ? 0.0 : number);
+    }
+
+    /**
+     * The canonical word of a value is the word of {@link GroupedDataFrame.KeyTable#keyWord(ColumnVector, int)} for
+     * numbers, and a NaN word holding the code of the text in <code>texts</code> otherwise.
+     *
+     * @param dictionary the dictionary of a textual vector
+     * @param texts      the canonical codes of non-numeric texts, entries are added if absent
+     * @return the canonical word of each code of <code>dictionary</code>
+     */
+    static long[] canonicalWords(StringDictionary dictionary, StringDictionary texts) {
+        long[] words = new long[dictionary.size()];
+        for (int code = 0; code < words.length; code++) words[code] = canonicalWord(dictionary, code, texts);
+        return words;
+    }
+}
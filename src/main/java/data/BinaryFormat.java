@@ -0,0 +1,364 @@
+package data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The binary columnar file format of a DataFrame.
+ * <p>
+ * All numbers are little-endian, and every block starts at a multiple of 8 bytes.
+ * <pre>
+ * header:  int magic "DFB1", int version, int rowsCount, int columnsCount,
+ *          per column: byte type (0 numeric, 1 text), int nameLength, UTF-8 name
+ * numeric: long[ceil(rowsCount / 64)] validity bitmap, double[rowsCount] values (NaN if NA),
+ *          long[ceil(rowsCount / 64)] bitmap of the values written as integers, int textsCount, per other value not
+ *          written as its shortest decimal: int index, int textLength, UTF-8 text
+ * text:    int dictionarySize, per entry used by the column: double number (NaN if not numeric), int textLength,
+ *          UTF-8 text, then int[rowsCount] codes (-1 if NA)
+ * </pre>
+ * Files are read through memory mappings and bulk-copied into the column arrays, nothing is parsed per value. Files of
+ * version 1, whose numeric blocks end at the values, are still read.
+ */
+final class BinaryFormat {
+
+    private static final int MAGIC = 0x31424644;  // "DFB1" in little-endian
+    private static final int VERSION = 2;
+    private static final byte NUMERIC = 0;
+    private static final byte TEXT = 1;
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final int MAX_MAPPING = 1 << 30;
+
+    private BinaryFormat() {
+    }
+
+    static void write(DataFrame frame, Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            Writer writer = new Writer(channel);
+            writer.putInt(MAGIC);
+            writer.putInt(VERSION);
+            writer.putInt(frame.rowsCount());
+            writer.putInt(frame.columnsCount());
+            ColumnVector[] vectors = new ColumnVector[frame.columnsCount()];
+            for (int c = 0; c < frame.columnsCount(); c++) {
+                DataColumn column = frame.getColumn(c);
+                vectors[c] = column.vector().materialize();
+                writer.putByte(vectors[c] instanceof NumericVector ? NUMERIC : TEXT);
+                writer.putString(column.getColName());
+            }
+            for (int c = 0; c < frame.columnsCount(); c++) {
+                writer.align();
+                ColumnVector vector = vectors[c];
+                int size = vector.size();
+                if (vector instanceof NumericVector) {
+                    NumericVector numbers = (NumericVector) vector;
+                    writer.putLongs(numbers.validity(), NumericVector.bitmapLength(size));
+                    writer.putDoubles(numbers.values(), size);
+                    long[] integers = numbers.integerTexts();
+                    writer.putLongs(integers != null ? integers : new long[NumericVector.bitmapLength(size)],
+                            NumericVector.bitmapLength(size));
+                    List<Integer> texts = new ArrayList<>();
+                    for (int i = 0; i < size; i++) {
+                        if (numbers.hasSourceText(i) && !numbers.isIntegerText(i)) texts.add(i);
+                    }
+                    writer.putInt(texts.size());
+                    for (int i : texts) {
+                        writer.putInt(i);
+                        writer.putString(numbers.getText(i));
+                    }
+                } else {
+                    StringVector strings = (StringVector) vector;
+                    StringDictionary dictionary = strings.dictionary();
+                    int[] codes = strings.codes();
+                    int[] remap = usedCodes(dictionary, codes, size);
+                    int used = 0;
+                    for (int code = 0; code < remap.length; code++) {
+                        if (remap[code] >= 0) used++;
+                    }
+                    writer.putInt(used);
+                    for (int code = 0; code < remap.length; code++) {
+                        if (remap[code] < 0) continue;
+                        writer.align();
+                        writer.putDouble(dictionary.number(code));
+                        writer.putString(dictionary.text(code));
+                    }
+                    if (used < dictionary.size()) {
+                        int[] written = new int[size];
+                        for (int i = 0; i < size; i++) {
+                            written[i] = codes[i] == StringVector.NA_CODE ? codes[i] : remap[codes[i]];
+                        }
+                        codes = written;
+                    }
+                    writer.align();
+                    writer.putInts(codes, size);
+                }
+            }
+            writer.flush();
+        }
+    }
+
+    /**
+     * A dictionary may be shared with other columns, only the entries of this column are written, in code order.
+     *
+     * @return the code in the written dictionary of each entry of <code>dictionary</code>, -1 if not used
+     */
+    private static int[] usedCodes(StringDictionary dictionary, int[] codes, int size) {
+        int[] remap = new int[dictionary.size()];
+        Arrays.fill(remap, -1);
+        for (int i = 0; i < size; i++) {
+            if (codes[i] != StringVector.NA_CODE) remap[codes[i]] = 0;
+        }
+        int next = 0;
+        for (int code = 0; code < remap.length; code++) {
+            if (remap[code] == 0) remap[code] = next++;
+        }
+        return remap;
+    }
+
+    static DataFrame read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < 16) throw new DataFrameException("'" + path + "' is not a DataFrame binary file.");
+            Reader reader = new Reader(channel);
+            if (reader.getInt() != MAGIC)
+                throw new DataFrameException("'" + path + "' is not a DataFrame binary file.");
+            int version = reader.getInt();
+            if (version != 1 && version != VERSION)
+                throw new DataFrameException("Unsupported DataFrame file version " + version + ".");
+            int rowsCount = reader.getInt();
+            int colsCount = reader.getInt();
+            byte[] types = new byte[colsCount];
+            List<String> titles = new ArrayList<>();
+            for (int c = 0; c < colsCount; c++) {
+                types[c] = reader.getByte();
+                titles.add(reader.getString());
+            }
+            List<DataColumn> columns = new ArrayList<>();
+            for (int c = 0; c < colsCount; c++) {
+                reader.align();
+                ColumnVector vector;
+                if (types[c] == NUMERIC) {
+                    long[] validity = new long[NumericVector.bitmapLength(rowsCount)];
+                    reader.getLongs(validity);
+                    double[] values = new double[rowsCount];
+                    reader.getDoubles(values);
+                    NumericVector numbers = new NumericVector(values, validity, rowsCount);
+                    if (version > 1) {
+                        long[] integers = new long[NumericVector.bitmapLength(rowsCount)];
+                        reader.getLongs(integers);
+                        for (int w = 0; w < integers.length; w++) {
+                            for (long bits = integers[w]; bits != 0; bits &= bits - 1) {
+                                numbers.setIntegerText(w * 64 + Long.numberOfTrailingZeros(bits));
+                            }
+                        }
+                        int textsCount = reader.getInt();
+                        for (int t = 0; t < textsCount; t++) {
+                            int index = reader.getInt();
+                            numbers.setSourceText(index, reader.getString());
+                        }
+                    }
+                    vector = numbers;
+                } else if (types[c] == TEXT) {
+                    StringDictionary dictionary = new StringDictionary();
+                    int dictionarySize = reader.getInt();
+                    for (int code = 0; code < dictionarySize; code++) {
+                        reader.align();
+                        double number = reader.getDouble();
+                        dictionary.encode(reader.getString(), number);
+                    }
+                    reader.align();
+                    int[] codes = new int[rowsCount];
+                    reader.getInts(codes);
+                    vector = new StringVector(dictionary, codes, rowsCount);
+                } else {
+                    throw new DataFrameException("Unknown type " + types[c] + " of column '" + titles.get(c) + "'.");
+                }
+                columns.add(new DataColumn(titles.get(c), vector));
+            }
+            return DataFrame.fromColumns(columns, rowsCount);
+        }
+    }
+
+    /**
+     * Writes through one reused direct buffer.
+     */
+    private static final class Writer {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private long position;
+
+        Writer(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void putByte(byte value) throws IOException {
+            ensure(1).put(value);
+            position += 1;
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(4).putInt(value);
+            position += 4;
+        }
+
+        void putDouble(double value) throws IOException {
+            ensure(8).putDouble(value);
+            position += 8;
+        }
+
+        void putString(String value) throws IOException {
+            byte[] bytes = value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+            putInt(bytes.length);
+            for (int i = 0; i < bytes.length; ) {
+                int n = Math.min(bytes.length - i, ensure(1).remaining());
+                buffer.put(bytes, i, n);
+                position += n;
+                i += n;
+            }
+        }
+
+        void putLongs(long[] values, int length) throws IOException {
+            for (int i = 0; i < length; ) {
+                int n = Math.min(length - i, ensure(8).remaining() / 8);
+                buffer.asLongBuffer().put(values, i, n);
+                advance(n * 8);
+                i += n;
+            }
+        }
+
+        void putDoubles(double[] values, int length) throws IOException {
+            for (int i = 0; i < length; ) {
+                int n = Math.min(length - i, ensure(8).remaining() / 8);
+                buffer.asDoubleBuffer().put(values, i, n);
+                advance(n * 8);
+                i += n;
+            }
+        }
+
+        void putInts(int[] values, int length) throws IOException {
+            for (int i = 0; i < length; ) {
+                int n = Math.min(length - i, ensure(4).remaining() / 4);
+                buffer.asIntBuffer().put(values, i, n);
+                advance(n * 4);
+                i += n;
+            }
+        }
+
+        private void advance(int bytes) {
+            buffer.position(buffer.position() + bytes);
+            position += bytes;
+        }
+
+        void align() throws IOException {
+            while (position % 8 != 0) putByte((byte) 0);
+        }
+
+        private ByteBuffer ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) flush();
+            return buffer;
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) channel.write(buffer);
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Reads through memory mappings of at most {@link #MAX_MAPPING} bytes.
+     */
+    private static final class Reader {
+        private final FileChannel channel;
+        private ByteBuffer mapped;
+        private long mappedFrom;
+
+        Reader(FileChannel channel) throws IOException {
+            this.channel = channel;
+            map(0);
+        }
+
+        byte getByte() throws IOException {
+            return ensure(1).get();
+        }
+
+        int getInt() throws IOException {
+            return ensure(4).getInt();
+        }
+
+        double getDouble() throws IOException {
+            return ensure(8).getDouble();
+        }
+
+        String getString() throws IOException {
+            int length = getInt();
+            byte[] bytes = new byte[length];
+            for (int i = 0; i < length; ) {
+                int n = Math.min(length - i, ensure(1).remaining());
+                mapped.get(bytes, i, n);
+                i += n;
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        void getLongs(long[] values) throws IOException {
+            for (int i = 0; i < values.length; ) {
+                int n = Math.min(values.length - i, ensure(8).remaining() / 8);
+                mapped.asLongBuffer().get(values, i, n);
+                skip(n * 8L);
+                i += n;
+            }
+        }
+
+        void getDoubles(double[] values) throws IOException {
+            for (int i = 0; i < values.length; ) {
+                int n = Math.min(values.length - i, ensure(8).remaining() / 8);
+                mapped.asDoubleBuffer().get(values, i, n);
+                skip(n * 8L);
+                i += n;
+            }
+        }
+
+        void getInts(int[] values) throws IOException {
+            for (int i = 0; i < values.length; ) {
+                int n = Math.min(values.length - i, ensure(4).remaining() / 4);
+                mapped.asIntBuffer().get(values, i, n);
+                skip(n * 4L);
+                i += n;
+            }
+        }
+
+        void align() throws IOException {
+            long position = mappedFrom + mapped.position();
+            if (position % 8 != 0) skip(8 - position % 8);
+        }
+
+        private void skip(long bytes) throws IOException {
+            long position = mappedFrom + mapped.position() + bytes;
+            if (position <= mappedFrom + mapped.limit()) mapped.position((int) (position - mappedFrom));
+            else map(position);
+        }
+
+        private ByteBuffer ensure(int bytes) throws IOException {
+            if (mapped.remaining() < bytes) {
+                long position = mappedFrom + mapped.position();
+                if (position + bytes > channel.size()) throw new DataFrameException("Truncated DataFrame file.");
+                map(position);
+            }
+            return mapped;
+        }
+
+        private void map(long from) throws IOException {
+            long length = Math.min(MAX_MAPPING, channel.size() - from);
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, from, length).order(ByteOrder.LITTLE_ENDIAN);
+            mappedFrom = from;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package data;
+
+import util.ShortestDouble;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Builds a {@link ColumnVector} by appending values.
+ * <p>
+ * The column starts numeric, and is promoted to a textual column on the first non-numeric text. Numbers keep the text
+ * they were read from (e.g. <code>02139</code> or <code>1e3</code>), in either column.
+ */
+final class ColumnBuilder {
+
+    private ColumnVector vector;
+    private byte[] shortest;  // scratch for the shortest decimal of a parsed number, null once textual
+
+    ColumnBuilder() {
+        this(ColumnVector.DEFAULT_CAPACITY);
+    }
+
+    ColumnBuilder(int capacity) {
+        this.vector = new NumericVector(Math.max(capacity, 1));
+        this.shortest = new byte[ShortestDouble.MAX_LENGTH];
+    }
+
+    /**
+     * Creates a vector holding the values of <code>cells</code>.
+     *
+     * @param cells the cells
+     * @return the vector
+     */
+    static ColumnVector fromCells(Iterable<DataCell> cells) {
+        ColumnBuilder builder = new ColumnBuilder();
+        for (DataCell cell : cells) builder.addCell(cell);
+        return builder.build();
+    }
+
+    void addNa() {
+        vector.addNa();
+    }
+
+    /**
+     * Appends a value from its text representation, see {@link ColumnVector#setText(int, String)}.
+     *
+     * @param text the text
+     */
+    void addText(String text) {
+        if (shortest != null && isText(text)) promote();
+        vector.addNa();
+        vector.setText(vector.size() - 1, text);
+    }
+
+    /**
+     * Appends a numeric value, NaN is treated as NA.
+     *
+     * @param value the number
+     */
+    void addNumber(double value) {
+        vector.addNa();
+        vector.setValue(vector.size() - 1, value);
+    }
+
+    /**
+     * Appends a csv field. Empty fields are NA, quoted fields are never numeric.
+     *
+     * @param bytes  the UTF-8 bytes
+     * @param from   beginning index, inclusive
+     * @param to     ending index, exclusive
+     * @param quoted whether the field was quoted
+     */
+    void addField(byte[] bytes, int from, int to, boolean quoted) {
+        double number = from == to || quoted ? Double.NaN : NumberParser.parse(bytes, from, to);
+        if (!Double.isNaN(number)) {
+            while (NumberParser.isBlank(bytes[from])) from++;
+            while (NumberParser.isBlank(bytes[to - 1])) to--;
+        }
+        if (shortest != null) {
+            if (from == to || !Double.isNaN(number)) {
+                NumericVector numbers = (NumericVector) vector;
+                numbers.add(number);  // fast path, no dictionary involved
+                if (from != to) addSourceText(numbers, numbers.size() - 1, bytes, from, to, number);
+                return;
+            }
+            promote();
+        }
+        vector.addNa();
+        if (from != to) ((StringVector) vector).setBytes(vector.size() - 1, bytes, from, to, number);
+    }
+
+    void addFrom(ColumnVector source, int sourceIndex) {
+        if (shortest != null && !source.isNa(sourceIndex) && !source.isNumber(sourceIndex)) promote();
+        vector.addNa();
+        vector.setFrom(vector.size() - 1, source, sourceIndex);
+    }
+
+    void addCell(DataCell cell) {
+        if (cell.column() != null) {
+            addFrom(cell.column().vector(), cell.index());
+        } else if (cell.isNa()) {
+            addNa();
+        } else if (cell.isNumber()) {
+            vector.addNa();
+            vector.setNumber(vector.size() - 1, cell.getNumberValue(), cell.text());
+        } else {
+            if (shortest != null) promote();
+            vector.addNa();
+            ((StringVector) vector).setString(vector.size() - 1, cell.text());
+        }
+    }
+
+    int size() {
+        return vector.size();
+    }
+
+    /**
+     * @return the built vector, the builder must not be used afterwards
+     */
+    ColumnVector build() {
+        shortest = null;
+        vector.trim();
+        return vector;
+    }
+
+    /**
+     * @return whether <code>text</code> makes a numeric column textual
+     */
+    private static boolean isText(String text) {
+        if (text == null || text.isEmpty() || text.equals("\"\"")) return false;
+        return text.startsWith("\"") && text.endsWith("\"") || Double.isNaN(NumberParser.parse(text));
+    }
+
+    /**
+     * Keeps the trimmed ASCII text of a parsed number, unless it is the shortest decimal of the number.
+     */
+    private void addSourceText(NumericVector numbers, int index, byte[] bytes, int from, int to, double number) {
+        if (NumericVector.isIntegerText(bytes, from, to, number)) {
+            numbers.setIntegerText(index);
+            return;
+        }
+        int length = ShortestDouble.format(number, shortest, 0);
+        if (!Arrays.equals(bytes, from, to, shortest, 0, length)) {
+            numbers.setSourceText(index, new String(bytes, from, to - from, StandardCharsets.ISO_8859_1));
+        }
+    }
+
+    /**
+     * Replaces the numeric vector by a textual one, whose numbers keep their source text.
+     */
+    private void promote() {
+        vector = vector.toStringVector();
+        shortest = null;
+    }
+}
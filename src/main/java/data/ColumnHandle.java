@@ -0,0 +1,98 @@
+package data;
+
+import java.util.Objects;
+
+/**
+ * A column of a DataFrame resolved once by title, see {@link DataFrame#handle(String)}.
+ * <p>
+ * Values are read and written by row index directly in the column storage, without looking the title up again and
+ * without creating a {@link DataCell} per value. Reads and writes behave like those of {@link DataCell}.
+ */
+public final class ColumnHandle {
+
+    private final DataColumn column;
+    private final int index;
+
+    ColumnHandle(DataColumn column, int index) {
+        this.column = column;
+        this.index = index;
+    }
+
+    /**
+     * @return the title of the column
+     */
+    public String name() {
+        return column.getColName();
+    }
+
+    /**
+     * @return the index of the column in its DataFrame
+     */
+    public int index() {
+        return index;
+    }
+
+    /**
+     * @return the number of rows
+     */
+    public int size() {
+        return column.size();
+    }
+
+    /**
+     * @param row the row index, starts from 0
+     * @return whether the value at <code>row</code> is NA
+     */
+    public boolean isNa(int row) {
+        return column.vector().isNa(Objects.checkIndex(row, column.size()));
+    }
+
+    /**
+     * @param row the row index, starts from 0
+     * @return whether the value at <code>row</code> is numeric
+     */
+    public boolean isNumber(int row) {
+        return column.vector().isNumber(Objects.checkIndex(row, column.size()));
+    }
+
+    /**
+     * @param row the row index, starts from 0
+     * @return the numeric value at <code>row</code>, or Double.NaN if it is not numeric
+     */
+    public double getNumber(int row) {
+        return column.vector().getNumber(Objects.checkIndex(row, column.size()));
+    }
+
+    /**
+     * @param row the row index, starts from 0
+     * @return the text of the value at <code>row</code>, "NA" for NA
+     */
+    public String getText(int row) {
+        ColumnVector vector = column.vector();
+        return vector.isNa(Objects.checkIndex(row, column.size())) ? "NA" : vector.getText(row);
+    }
+
+    /**
+     * @param row the row index, starts from 0
+     * @return the cell at <code>row</code>
+     */
+    public DataCell getCell(int row) {
+        return column.get(row);
+    }
+
+    /**
+     * @param row   the row index, starts from 0
+     * @param value the value, see {@link DataCell#setValue(String)}
+     */
+    public void setValue(int row, String value) {
+        column.setText(row, value);
+    }
+
+    /**
+     * @param row   the row index, starts from 0
+     * @param value the number, see {@link DataCell#setValue(double)}
+     */
+    public void setValue(int row, double value) {
+        column.setNumber(row, value);
+    }
+}
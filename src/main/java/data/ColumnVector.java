@@ -0,0 +1,383 @@
+package data;
+
+import util.ShortestDouble;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The primitive storage behind a {@link DataColumn}.
+ * <p>
+ * A vector is either numeric ({@link NumericVector}) or textual ({@link StringVector}). Every value of a DataFrame is
+ * stored exactly once, in one of these vectors; DataCells and DataRows are only views on them.
+ * <p>
+ * Vectors are growable, values are appended as NA by {@link #addNa()} and then assigned by one of the setters.
+ * <p>
+ * A vector may be shared by several columns, or viewed by a {@link ViewVector}. Shared vectors are never written,
+ * their columns copy them first and give up their hold, so the last holder writes in place again. A view dropped
+ * without being written keeps its hold, and the columns of its base go on copying before writes.
+ */
+abstract class ColumnVector {
+
+    static final int DEFAULT_CAPACITY = 16;
+    static final int NA_INDEX = -1;  // an index that gathers NA, see gatherOrNa
+
+    private int shares;  // holders besides the first one
+
+    /**
+     * @return number of values in this vector
+     */
+    abstract int size();
+
+    /**
+     * @param index the index, starts from 0
+     * @return whether the value at <code>index</code> is NA
+     */
+    abstract boolean isNa(int index);
+
+    /**
+     * @param index the index, starts from 0
+     * @return whether the value at <code>index</code> is numeric
+     */
+    abstract boolean isNumber(int index);
+
+    /**
+     * @param index the index, starts from 0
+     * @return the numeric value at <code>index</code>, or Double.NaN if the value is not numeric
+     */
+    abstract double getNumber(int index);
+
+    /**
+     * @param index the index, starts from 0
+     * @return the text of the value at <code>index</code>, empty string if the value is NA
+     */
+    abstract String getText(int index);
+
+    /**
+     * Appends a NA value to the end of this vector.
+     */
+    abstract void addNa();
+
+    abstract void setNa(int index);
+
+    /**
+     * @param index the index, starts from 0
+     * @param value the number, must not be NaN
+     */
+    abstract void setNumber(int index, double value);
+
+    /**
+     * Sets a number read from <code>text</code>, the vector keeps the text.
+     *
+     * @param index the index, starts from 0
+     * @param value the number, must not be NaN
+     * @param text  the text that <code>value</code> was read from
+     */
+    void setNumber(int index, double value, String text) {
+        setNumber(index, value);
+    }
+
+    /**
+     * @return a textual vector holding the same values, <code>this</code> if already textual
+     */
+    abstract StringVector toStringVector();
+
+    /**
+     * @return an independent copy of this
+     */
+    abstract ColumnVector copy();
+
+    /**
+     * Returns a new vector containing the values at <code>indexes</code>, in that order.
+     *
+     * @param indexes indexes of values to be copied
+     * @return the new vector
+     */
+    abstract ColumnVector gather(int[] indexes);
+
+    /**
+     * Returns a new vector containing the values at <code>indexes</code>, in that order, and NA where the index is
+     * {@link #NA_INDEX}.
+     *
+     * @param indexes indexes of values to be copied, or {@link #NA_INDEX}
+     * @return the new vector
+     */
+    abstract ColumnVector gatherOrNa(int[] indexes);
+
+    /**
+     * Converts this vector to an array of doubles, non-numeric values are converted to Double.NaN.
+     *
+     * @return the numeric values array
+     */
+    abstract double[] toNumberArray();
+
+    /**
+     * Releases the unused capacity of this vector.
+     */
+    abstract void trim();
+
+    /**
+     * Tells which of the 64 values from index <code>word * 64</code> are numeric.
+     *
+     * @param word the index of the group of 64 values
+     * @return bit i is set if the value at <code>word * 64 + i</code> is numeric, bits after the end are clear
+     */
+    long numberBits(int word) {
+        long bits = 0L;
+        int end = Math.min(size(), (word + 1) << 6);
+        for (int i = word << 6; i < end; i++) {
+            if (isNumber(i)) bits |= 1L << i;
+        }
+        return bits;
+    }
+
+    /**
+     * @return the statistics of the numeric values in this vector
+     */
+    SummaryStats summaryStats() {
+        SummaryStats.Accumulator accumulator = new SummaryStats.Accumulator();
+        double[] block = new double[Math.min(size(), SummaryStats.BLOCK)];
+        int naCount = 0;
+        for (int start = 0; start < size(); start += block.length) {
+            int length = Math.min(block.length, size() - start);
+            for (int i = 0; i < length; i++) {
+                if (isNa(start + i)) naCount++;
+                block[i] = getNumber(start + i);
+            }
+            accumulator.add(block, 0, length);
+        }
+        return accumulator.result(naCount);
+    }
+
+    /**
+     * @return this if values are stored in this vector, otherwise a copy that stores them
+     */
+    ColumnVector materialize() {
+        return this;
+    }
+
+    /**
+     * Adds a holder to this vector, so that none of its holders writes to it anymore.
+     */
+    final void share() {
+        shares++;
+    }
+
+    /**
+     * Removes a holder from this vector, after it copied the vector to write to it.
+     */
+    void release() {
+        if (shares > 0) shares--;
+    }
+
+    /**
+     * @return whether this vector must be copied before being written
+     */
+    boolean isShared() {
+        return shares > 0;
+    }
+
+    /**
+     * Sets a value from its text representation.
+     * <p>
+     * Text surrounded by '"' is never numeric and has the quotes stripped, empty text is NA. Numeric text is stored as
+     * a number, which keeps its text without surrounding blanks in a textual vector, see
+     * {@link #setNumber(int, double, String)}.
+     *
+     * @param index the index, starts from 0
+     * @param value the text
+     * @return the vector that holds the value, which is a promoted copy of this if a numeric vector received text
+     */
+    final ColumnVector setText(int index, String value) {
+        if (value == null) value = "";
+        if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+            String inner = value.substring(1, value.length() - 1);
+            if (inner.isEmpty()) {
+                setNa(index);
+                return this;
+            }
+            StringVector vector = toStringVector();
+            vector.setString(index, inner);
+            return vector;
+        }
+        if (value.isEmpty()) {
+            setNa(index);
+            return this;
+        }
+        double number = NumberParser.parse(value);
+        if (!Double.isNaN(number)) {
+            setNumber(index, number, value.trim());
+            return this;
+        }
+        StringVector vector = toStringVector();
+        vector.setString(index, value);
+        return vector;
+    }
+
+    /**
+     * Sets a numeric value, NaN is treated as NA.
+     *
+     * @param index the index, starts from 0
+     * @param value the number
+     * @return this
+     */
+    final ColumnVector setValue(int index, double value) {
+        if (Double.isNaN(value)) setNa(index);
+        else setNumber(index, value);
+        return this;
+    }
+
+    /**
+     * Sets the value at <code>index</code> to the value at <code>sourceIndex</code> of <code>source</code>.
+     *
+     * @param index       the index in this vector
+     * @param source      the vector to copy from
+     * @param sourceIndex the index in <code>source</code>
+     * @return the vector that holds the value, which is a promoted copy of this if a numeric vector received text
+     */
+    final ColumnVector setFrom(int index, ColumnVector source, int sourceIndex) {
+        if (source.isNa(sourceIndex)) {
+            setNa(index);
+            return this;
+        }
+        double number = source.getNumber(sourceIndex);
+        if (!Double.isNaN(number)) {
+            if (source instanceof NumericVector && !((NumericVector) source).hasSourceText(sourceIndex)) {
+                setNumber(index, number);
+            } else {
+                setNumber(index, number, source.getText(sourceIndex));
+            }
+            return this;
+        }
+        StringVector vector = toStringVector();
+        vector.setString(index, source.getText(sourceIndex));
+        return vector;
+    }
+
+    /**
+     * Concatenates vectors. The result is numeric if all <code>vectors</code> are numeric.
+     *
+     * @param vectors the vectors, in order
+     * @return the new vector
+     */
+    static ColumnVector concat(List<ColumnVector> vectors) {
+        int size = 0;
+        boolean numeric = true;
+        vectors = new ArrayList<>(vectors);
+        for (int i = 0; i < vectors.size(); i++) {
+            ColumnVector vector = vectors.get(i).materialize();
+            vectors.set(i, vector);
+            size += vector.size();
+            numeric &= vector instanceof NumericVector;
+        }
+        if (numeric) {
+            double[] values = new double[size];
+            int offset = 0;
+            for (ColumnVector vector : vectors) {
+                System.arraycopy(((NumericVector) vector).values(), 0, values, offset, vector.size());
+                offset += vector.size();
+            }
+            NumericVector result = NumericVector.of(values);  // NA slots hold NaN, so the bitmap can be rebuilt
+            offset = 0;
+            for (ColumnVector vector : vectors) {
+                NumericVector numbers = (NumericVector) vector;
+                if (numbers.hasSourceTexts()) {
+                    for (int i = 0; i < numbers.size(); i++) {
+                        if (numbers.hasSourceText(i)) result.copyText(offset + i, numbers, i);
+                    }
+                }
+                offset += vector.size();
+            }
+            return result;
+        }
+        StringDictionary dictionary = new StringDictionary();
+        int[] codes = new int[size];
+        int offset = 0;
+        for (ColumnVector vector : vectors) {
+            StringVector strings = vector.toStringVector();
+            int[] remap = remap(strings.dictionary(), dictionary);
+            for (int i = 0; i < strings.size(); i++) {
+                int code = strings.getCode(i);
+                codes[offset + i] = code == StringVector.NA_CODE ? code : remap[code];
+            }
+            offset += strings.size();
+        }
+        return new StringVector(dictionary, codes, size);
+    }
+
+    /**
+     * Interleaves vectors of the same size, value <code>r</code> of vector <code>m</code> goes to index
+     * <code>r * vectors.size() + m</code>. The result is numeric if all <code>vectors</code> are numeric.
+     *
+     * @param vectors the vectors
+     * @param size    the size of each vector
+     * @return the new vector
+     */
+    static ColumnVector interleave(List<ColumnVector> vectors, int size) {
+        int count = vectors.size();
+        int length = Math.multiplyExact(size, count);
+        ColumnVector[] sources = new ColumnVector[count];
+        boolean numeric = true;
+        for (int m = 0; m < count; m++) {
+            sources[m] = vectors.get(m).materialize();
+            numeric &= sources[m] instanceof NumericVector;
+        }
+        if (numeric) {
+            double[] values = new double[length];
+            for (int m = 0; m < count; m++) {
+                double[] source = ((NumericVector) sources[m]).values();
+                for (int r = 0, i = m; r < size; r++, i += count) values[i] = source[r];
+            }
+            NumericVector result = NumericVector.of(values);  // NA slots hold NaN, so the bitmap can be rebuilt
+            for (int m = 0; m < count; m++) {
+                NumericVector numbers = (NumericVector) sources[m];
+                if (!numbers.hasSourceTexts()) continue;
+                for (int r = 0, i = m; r < size; r++, i += count) {
+                    if (numbers.hasSourceText(r)) result.copyText(i, numbers, r);
+                }
+            }
+            return result;
+        }
+        StringDictionary dictionary = new StringDictionary();
+        int[] codes = new int[length];
+        for (int m = 0; m < count; m++) {
+            ColumnVector source = sources[m];
+            if (source instanceof StringVector) {
+                StringVector strings = (StringVector) source;
+                int[] remap = remap(strings.dictionary(), dictionary);
+                for (int r = 0, i = m; r < size; r++, i += count) {
+                    int code = strings.getCode(r);
+                    codes[i] = code == StringVector.NA_CODE ? code : remap[code];
+                }
+            } else {
+                for (int r = 0, i = m; r < size; r++, i += count) {
+                    codes[i] = source.isNa(r) ? StringVector.NA_CODE
+                            : dictionary.encode(source.getText(r), source.getNumber(r));
+                }
+            }
+        }
+        return new StringVector(dictionary, codes, length);
+    }
+
+    /**
+     * @return the code in <code>target</code> of each entry of <code>source</code>, entries are added if absent
+     */
+    private static int[] remap(StringDictionary source, StringDictionary target) {
+        int[] remap = new int[source.size()];
+        for (int code = 0; code < remap.length; code++) {
+            remap[code] = target.encode(source.text(code), source.number(code));
+        }
+        return remap;
+    }
+
+    /**
+     * @return the text of a number that was not read from text, the shortest decimal that parses back to it
+     */
+    static String numberText(double value) {
+        return ShortestDouble.toString(value);
+    }
+
+    static int grownCapacity(int capacity) {
+        return Math.max(DEFAULT_CAPACITY, capacity + (capacity >> 1));
+    }
+}
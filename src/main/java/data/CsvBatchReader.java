@@ -0,0 +1,115 @@
+package data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Reads the records of a csv file into DataFrames of up to a given number of rows.
+ * <p>
+ * The title row is read on construction. Rows are filtered and columns are selected while reading, as in
+ * {@link DataFrame#fromCsv(java.io.File, List, Predicate)}, so only the loaded values of one batch are held.
+ */
+final class CsvBatchReader implements Closeable {
+
+    private final CsvReader reader;
+    private final Predicate<CsvRow> rowFilter;
+    private final int fileColumnsCount;
+    private final List<String> titles = new ArrayList<>();
+    private final int[] fields;  // indexes of loaded fields in a record, null for all fields in file order
+    private final CsvRow row;
+    private boolean finished;
+
+    /**
+     * @param reader      the tokenizer, the first record is the title row
+     * @param columnNames titles of columns to be loaded, in the order of the batches, or null for all columns
+     * @param rowFilter   the condition for a row to be loaded, or null for all rows
+     * @throws IOException        if the input is not readable
+     * @throws DataFrameException if some column does not exist in the file
+     */
+    CsvBatchReader(CsvReader reader, List<String> columnNames, Predicate<CsvRow> rowFilter) throws IOException {
+        this.reader = reader;
+        this.rowFilter = rowFilter;
+        List<String> fileTitles = new ArrayList<>();
+        if (reader.nextRecord()) {
+            for (int c = 0; c < reader.fieldCount(); c++) fileTitles.add(reader.text(c));
+        }
+        fileColumnsCount = fileTitles.size();
+
+        Map<String, Integer> fieldIndexes = new HashMap<>();
+        for (int c = fileTitles.size() - 1; c >= 0; c--) fieldIndexes.put(fileTitles.get(c), c);  // first wins
+        row = new CsvRow(reader, fieldIndexes);
+        if (columnNames == null) {
+            titles.addAll(fileTitles);
+            fields = null;
+            return;
+        }
+        fields = new int[columnNames.size()];
+        for (int i = 0; i < fields.length; i++) {
+            String colName = columnNames.get(i).strip();
+            Integer field = fieldIndexes.get(colName);
+            if (field == null) throw new DataFrameException("No such column '" + columnNames.get(i) + "'");
+            fields[i] = field;
+            titles.add(colName);
+        }
+    }
+
+    /**
+     * @return titles of the loaded columns
+     */
+    List<String> titles() {
+        return titles;
+    }
+
+    /**
+     * Reads the next records accepted by the row filter.
+     *
+     * @param maxRows the maximum number of rows
+     * @return a DataFrame of up to <code>maxRows</code> rows, or null if no record is left
+     * @throws IOException        if the input is not readable
+     * @throws DataFrameException if a record does not have as many fields as the title row
+     */
+    DataFrame next(int maxRows) throws IOException {
+        if (finished) return null;
+        ColumnBuilder[] builders = DataFrame.newBuilders(titles.size());
+        int rows = 0;
+        while (rows < maxRows) {
+            if (!reader.nextRecord()) {
+                finished = true;
+                if (rows == 0) return null;
+                break;
+            }
+            if (fields == null && rowFilter == null) {
+                DataFrame.addRecord(reader, builders);
+                rows++;
+                continue;
+            }
+            if (reader.fieldCount() != fileColumnsCount) throw new DataFrameException("Row '" + reader.recordString()
+                    + "' (" + reader.recordPosition() + ") has different number of data compares to the previous row.");
+            if (rowFilter != null && !rowFilter.test(row)) continue;
+            byte[] buffer = reader.buffer();
+            for (int i = 0; i < builders.length; i++) {
+                int field = fields == null ? i : fields[i];
+                builders[i].addField(buffer, reader.fieldStart(field), reader.fieldEnd(field), reader.isQuoted(field));
+            }
+            rows++;
+        }
+        return DataFrame.fromBuilders(titles, builders, rows);
+    }
+
+    /**
+     * @return a DataFrame of the loaded columns without rows
+     */
+    DataFrame emptyFrame() {
+        return DataFrame.fromBuilders(titles, DataFrame.newBuilders(titles.size()), 0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
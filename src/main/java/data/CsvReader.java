@@ -0,0 +1,288 @@
+package data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A streaming csv tokenizer following RFC 4180.
+ * <p>
+ * Bytes are read into one buffer and split by a hand-written state machine. Fields of the current record are
+ * exposed as ranges of that buffer, nothing is allocated per field. Quoted fields may contain ',', line breaks and
+ * escaped quotes (<code>""</code>), which are unescaped in place.
+ * <p>
+ * Unquoted fields have surrounding spaces and tabs stripped. Blank lines are skipped.
+ */
+final class CsvReader implements Closeable {
+
+    static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+    private final InputStream in;
+    private final long inputStart;  // offset of the input in its file, 0 if the whole file is read
+    private byte[] buf;
+    private int pos;
+    private int limit;
+    private boolean eof;
+    private long recordsRead;
+    private long recordNumber;  // of the current record, from 1
+    private long bytesRead;
+
+    private int recordStart;
+    private int fieldCount;
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private boolean[] quoted = new boolean[16];
+
+    CsvReader(InputStream in) {
+        this(in, DEFAULT_BUFFER_SIZE, 0);
+    }
+
+    /**
+     * @param in         the input
+     * @param bufferSize initial size of the buffer
+     * @param inputStart offset of <code>in</code> in its file, 0 if <code>in</code> is the whole file. Records of
+     *                   an input that starts later are reported by their byte offset in the file, as their number
+     *                   in the file is not known.
+     */
+    CsvReader(InputStream in, int bufferSize, long inputStart) {
+        this.in = in;
+        this.buf = new byte[bufferSize];
+        this.inputStart = inputStart;
+    }
+
+    /**
+     * Reads the next record.
+     *
+     * @return false if there are no more records
+     * @throws IOException        if the input is not readable
+     * @throws DataFrameException if the input is not valid csv
+     */
+    boolean nextRecord() throws IOException {
+        fieldCount = 0;
+        recordStart = pos;
+        recordNumber = recordsRead + 1;
+        if (recordsRead == 0) skipByteOrderMark();
+        while (true) {  // skips line breaks, so blank lines are ignored
+            if (pos == limit) fill();
+            if (pos == limit) return false;
+            byte b = buf[pos];
+            if (b != '\n' && b != '\r') break;
+            recordStart = ++pos;
+        }
+
+        while (true) {
+            skipBlanks();  // FIELD_START
+            if (pos < limit && buf[pos] == '"') {
+                readQuoted();
+                skipBlanks();
+            } else {
+                readUnquoted();
+            }
+
+            if (pos == limit) break;  // end of input
+            byte b = buf[pos++];
+            if (b == ',') continue;
+            if (b == '\r') {
+                if (pos == limit) fill();
+                if (pos < limit && buf[pos] == '\n') pos++;
+            } else if (b != '\n') {
+                throw new DataFrameException("Unexpected character '" + (char) b + "' after quoted field in "
+                        + recordPosition() + ".");
+            }
+            break;
+        }
+        recordsRead++;
+        return true;
+    }
+
+    /**
+     * UNQUOTED state: reads until ',', a line break or the end of input, then strips trailing blanks.
+     */
+    private void readUnquoted() throws IOException {
+        int start = pos;
+        while (true) {
+            if (pos == limit) {
+                start -= fill();
+                if (pos == limit) break;
+            }
+            byte b = buf[pos];
+            if (b == ',' || b == '\n' || b == '\r') break;
+            pos++;
+        }
+        int end = pos;
+        while (end > start && (buf[end - 1] == ' ' || buf[end - 1] == '\t')) end--;
+        addField(start, end, false);
+    }
+
+    /**
+     * QUOTED and QUOTE_IN_QUOTED states, called with <code>pos</code> at the opening quote. The content is unescaped
+     * in place, it never grows.
+     */
+    private void readQuoted() throws IOException {
+        int start = ++pos;
+        int write = start;
+        while (true) {
+            if (pos == limit) {
+                int shift = fill();
+                start -= shift;
+                write -= shift;
+                if (pos == limit) throw new DataFrameException("Unterminated quoted field in "
+                        + recordPosition() + ".");
+            }
+            byte b = buf[pos++];
+            if (b != '"') {
+                buf[write++] = b;
+                continue;
+            }
+            if (pos == limit) {
+                int shift = fill();
+                start -= shift;
+                write -= shift;
+            }
+            if (pos < limit && buf[pos] == '"') {  // escaped quote
+                buf[write++] = '"';
+                pos++;
+            } else {
+                addField(start, write, true);
+                return;
+            }
+        }
+    }
+
+    private void skipBlanks() throws IOException {
+        while (true) {
+            if (pos == limit) fill();
+            if (pos == limit) return;
+            byte b = buf[pos];
+            if (b != ' ' && b != '\t') return;
+            pos++;
+        }
+    }
+
+    private void skipByteOrderMark() throws IOException {
+        while (limit - pos < 3 && !eof) fill();
+        if (limit - pos >= 3
+                && buf[pos] == (byte) 0xEF && buf[pos + 1] == (byte) 0xBB && buf[pos + 2] == (byte) 0xBF)
+            recordStart = pos += 3;
+    }
+
+    private void addField(int start, int end, boolean isQuoted) {
+        if (fieldCount == starts.length) {
+            int capacity = fieldCount * 2;
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+            quoted = Arrays.copyOf(quoted, capacity);
+        }
+        starts[fieldCount] = start;
+        ends[fieldCount] = end;
+        quoted[fieldCount] = isQuoted;
+        fieldCount++;
+    }
+
+    /**
+     * Reads more bytes, moving the current record to the front of the buffer.
+     * <p>
+     * All positions in the buffer are shifted down by the same amount, callers holding local positions must subtract
+     * the returned shift from them. No bytes were read if <code>pos == limit</code> afterwards.
+     *
+     * @return the shift
+     */
+    private int fill() throws IOException {
+        if (eof) return 0;
+        int shift = recordStart;
+        if (shift > 0) {
+            System.arraycopy(buf, shift, buf, 0, limit - shift);
+            limit -= shift;
+            pos -= shift;
+            recordStart = 0;
+            for (int i = 0; i < fieldCount; i++) {
+                starts[i] -= shift;
+                ends[i] -= shift;
+            }
+        }
+        if (limit == buf.length) buf = Arrays.copyOf(buf, buf.length * 2);  // a record longer than the buffer
+        int n = in.read(buf, limit, buf.length - limit);
+        if (n <= 0) {
+            eof = true;
+        } else {
+            limit += n;
+            bytesRead += n;
+        }
+        return shift;
+    }
+
+    /**
+     * @return number of fields in the current record
+     */
+    int fieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * @return the buffer holding the current record, only valid until the next call to {@link #nextRecord()}
+     */
+    byte[] buffer() {
+        return buf;
+    }
+
+    int fieldStart(int field) {
+        return starts[field];
+    }
+
+    int fieldEnd(int field) {
+        return ends[field];
+    }
+
+    boolean isQuoted(int field) {
+        return quoted[field];
+    }
+
+    /**
+     * @param field the field index
+     * @return the text of that field, without quotes
+     */
+    String text(int field) {
+        return new String(buf, starts[field], ends[field] - starts[field], StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the current record as text, for error messages
+     */
+    String recordString() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < fieldCount; i++) {
+            if (i > 0) builder.append(',');
+            builder.append(text(i));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * @return the position of the current record in its file, for error messages
+     */
+    String recordPosition() {
+        if (inputStart == 0) return "record " + recordNumber;
+        return "the record at byte " + (inputStart + bytesRead - (limit - recordStart));
+    }
+
+    /**
+     * @return offset in the input of the first byte not consumed by the records read so far
+     */
+    long offset() {
+        return bytesRead - (limit - pos);
+    }
+
+    /**
+     * @return number of records read so far
+     */
+    long recordsRead() {
+        return recordsRead;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
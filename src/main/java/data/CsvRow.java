@@ -0,0 +1,65 @@
+package data;
+
+import java.util.Map;
+
+/**
+ * The record currently read from a csv file, given to row filters while loading.
+ * <p>
+ * Values are parsed from the read buffer only when asked for, and no DataCell or DataRow is created. A CsvRow is
+ * reused for every record, so it must not be kept after the filter returns.
+ */
+public final class CsvRow {
+
+    private final CsvReader reader;
+    private final Map<String, Integer> fieldIndexes;
+
+    CsvRow(CsvReader reader, Map<String, Integer> fieldIndexes) {
+        this.reader = reader;
+        this.fieldIndexes = fieldIndexes;
+    }
+
+    /**
+     * @param colName title of the column, which does not need to be loaded
+     * @return whether the value in that column is NA
+     * @throws DataFrameException if no column has that name
+     */
+    public boolean isNa(String colName) {
+        int field = field(colName);
+        return reader.fieldStart(field) == reader.fieldEnd(field);
+    }
+
+    /**
+     * @param colName title of the column, which does not need to be loaded
+     * @return whether the value in that column is numeric
+     * @throws DataFrameException if no column has that name
+     */
+    public boolean isNumber(String colName) {
+        return !Double.isNaN(getNumberValue(colName));
+    }
+
+    /**
+     * @param colName title of the column, which does not need to be loaded
+     * @return the numeric value in that column, or Double.NaN if it is not numeric
+     * @throws DataFrameException if no column has that name
+     */
+    public double getNumberValue(String colName) {
+        int field = field(colName);
+        if (reader.isQuoted(field)) return Double.NaN;
+        return NumberParser.parse(reader.buffer(), reader.fieldStart(field), reader.fieldEnd(field));
+    }
+
+    /**
+     * @param colName title of the column, which does not need to be loaded
+     * @return the text in that column as written in the file, without quotes, empty string if NA
+     * @throws DataFrameException if no column has that name
+     */
+    public String getText(String colName) {
+        return reader.text(field(colName));
+    }
+
+    private int field(String colName) {
+        Integer field = fieldIndexes.get(colName.strip());
+        if (field == null) throw new DataFrameException("No such column '" + colName + "'");
+        return field;
+    }
+}
@@ -0,0 +1,226 @@
+package data;
+
+import util.ShortestDouble;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Writes DataFrames to a csv file following RFC 4180, so that {@link DataFrame#fromCsv(java.io.File)} reads the same
+ * values back.
+ * <p>
+ * NA is written as an empty field, numbers as the text they were read from, or else as their shortest decimal, see
+ * {@link ShortestDouble}. Texts are quoted
+ * if they contain ',', '"' or line breaks, if they have surrounding blanks, or if they would be read back as numbers.
+ * The field of each dictionary entry of a textual column is encoded once.
+ * <p>
+ * Rows are formatted to UTF-8 in blocks of {@value #BLOCK_ROWS} rows, several blocks in parallel, and the blocks are
+ * copied in order to a direct buffer of {@value #BUFFER_SIZE} bytes that is written to the file channel when full.
+ */
+final class CsvWriter implements Closeable {
+
+    static final int BUFFER_SIZE = 1 << 20;
+    static final int BLOCK_ROWS = 1 << 13;
+
+    private static final byte[] LINE_BREAK = {'\r', '\n'};
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+    /**
+     * @param path the file, overwritten if exists
+     * @throws IOException if file not writable
+     */
+    CsvWriter(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /**
+     * @param titles the title row
+     * @throws IOException if file not writable
+     */
+    void writeTitles(List<String> titles) throws IOException {
+        Block block = new Block();
+        for (int c = 0; c < titles.size(); c++) {
+            if (c > 0) block.add((byte) ',');
+            block.add(field(titles.get(c), true));
+        }
+        block.add(LINE_BREAK);
+        write(block);
+    }
+
+    /**
+     * @param frame the rows to append
+     * @throws IOException if file not writable
+     */
+    void writeRows(DataFrame frame) throws IOException {
+        int colsCount = frame.columnsCount();
+        int rowsCount = frame.rowsCount();
+        if (colsCount == 0) return;
+        Column[] columns = new Column[colsCount];
+        for (int c = 0; c < colsCount; c++) columns[c] = new Column(frame.getColumn(c).vector().materialize());
+
+        int blocksCount = (rowsCount + BLOCK_ROWS - 1) / BLOCK_ROWS;
+        int wave = 2 * ForkJoinPool.getCommonPoolParallelism();  // blocks formatted at once, bounds the memory used
+        for (int first = 0; first < blocksCount; first += wave) {
+            Block[] blocks = IntStream.range(first, Math.min(blocksCount, first + wave)).parallel()
+                    .mapToObj(b -> format(columns, b * BLOCK_ROWS, Math.min(rowsCount, (b + 1) * BLOCK_ROWS)))
+                    .toArray(Block[]::new);
+            for (Block block : blocks) write(block);
+        }
+    }
+
+    private static Block format(Column[] columns, int from, int to) {
+        Block block = new Block();
+        for (int r = from; r < to; r++) {
+            for (int c = 0; c < columns.length; c++) {
+                if (c > 0) block.add((byte) ',');
+                columns[c].format(r, block);
+            }
+            block.add(LINE_BREAK);
+        }
+        return block;
+    }
+
+    private void write(Block block) throws IOException {
+        for (int offset = 0; offset < block.size; ) {
+            int length = Math.min(buffer.remaining(), block.size - offset);
+            buffer.put(block.bytes, offset, length);
+            offset += length;
+            if (!buffer.hasRemaining()) drain();
+        }
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) channel.write(buffer);
+        buffer.clear();
+    }
+
+    /**
+     * @param text    a text that is not NA
+     * @param numeric whether the text is the value of a number, otherwise it is quoted if it looks like one
+     * @return the UTF-8 field of <code>text</code>, quoted if needed
+     */
+    private static byte[] field(String text, boolean numeric) {
+        boolean quoted = !numeric && !Double.isNaN(NumberParser.parse(text));
+        char first = text.isEmpty() ? 'x' : text.charAt(0);
+        char last = text.isEmpty() ? 'x' : text.charAt(text.length() - 1);
+        quoted |= first == ' ' || first == '\t' || last == ' ' || last == '\t';
+        for (int i = 0; i < text.length() && !quoted; i++) {
+            char ch = text.charAt(i);
+            quoted = ch == ',' || ch == '"' || ch == '\n' || ch == '\r';
+        }
+        if (quoted) text = '"' + text.replace("\"", "\"\"") + '"';
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            drain();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * How the values of a column are formatted.
+     */
+    private static final class Column {
+        private final ColumnVector vector;
+        private final int[] codes;  // of a textual column, null otherwise
+        private final byte[][] fields;  // of each dictionary code, null if the dictionary is larger than the column
+
+        Column(ColumnVector vector) {
+            this.vector = vector;
+            if (!(vector instanceof StringVector)) {
+                codes = null;
+                fields = null;
+                return;
+            }
+            StringVector strings = (StringVector) vector;
+            StringDictionary dictionary = strings.dictionary();
+            codes = strings.codes();
+            if (dictionary.size() > strings.size()) {  // most entries are not in this column
+                fields = null;
+                return;
+            }
+            fields = new byte[dictionary.size()][];
+            for (int code = 0; code < fields.length; code++) fields[code] = field(dictionary, code);
+        }
+
+        private static byte[] field(StringDictionary dictionary, int code) {
+            double number = dictionary.number(code);
+            String text = dictionary.text(code);
+            if (Double.isNaN(number)) return CsvWriter.field(text, false);
+            return text.getBytes(StandardCharsets.US_ASCII);  // numeric text has no separator, quote or blank
+        }
+
+        void format(int row, Block block) {
+            if (codes != null) {
+                int code = codes[row];
+                if (code != StringVector.NA_CODE) {
+                    block.add(fields != null ? fields[code] : field(((StringVector) vector).dictionary(), code));
+                }
+            } else if (vector.isNa(row)) {
+                return;
+            } else if (((NumericVector) vector).isIntegerText(row)) {
+                block.addInteger((long) vector.getNumber(row));
+            } else if (((NumericVector) vector).hasSourceText(row)) {
+                block.add(vector.getText(row).getBytes(StandardCharsets.US_ASCII));
+            } else {
+                block.ensure(ShortestDouble.MAX_LENGTH);
+                block.size = ShortestDouble.format(vector.getNumber(row), block.bytes, block.size);
+            }
+        }
+    }
+
+    /**
+     * A growing array of formatted bytes.
+     */
+    private static final class Block {
+        private byte[] bytes = new byte[1 << 12];
+        private int size;
+
+        void ensure(int length) {
+            if (size + length > bytes.length) bytes = Arrays.copyOf(bytes, Math.max(size + length, bytes.length * 2));
+        }
+
+        void add(byte b) {
+            ensure(1);
+            bytes[size++] = b;
+        }
+
+        void add(byte[] field) {
+            ensure(field.length);
+            System.arraycopy(field, 0, bytes, size, field.length);
+            size += field.length;
+        }
+
+        /**
+         * Adds the decimal digits of an integer below 10^15 in magnitude, see {@link NumericVector#isIntegerText(int)}.
+         */
+        void addInteger(long value) {
+            ensure(16);
+            if (value < 0) {
+                bytes[size++] = '-';
+                value = -value;
+            }
+            int end = size + 1;
+            for (long rest = value / 10; rest != 0; rest /= 10) end++;
+            for (int i = end - 1; i >= size; i--, value /= 10) bytes[i] = (byte) ('0' + value % 10);
+            size = end;
+        }
+    }
+}
@@ -1,33 +1,43 @@
 package data;
 
-import java.util.Objects;
-
 /**
  * A data cell.
+ * <p>
+ * A DataCell is a lightweight view on one value of a {@link DataColumn}, it does not store the value itself.
+ * Mutating a cell through {@link #setValue(String)} or {@link #setValue(double)} mutates that column.
+ * <p>
+ * Copies and cells created from a value are standalone: they hold their text and number themselves, and share
+ * nothing with any column.
  */
 public class DataCell {
-    private String value;
-    private double numberValue;
+    private final DataColumn column;  // null for a standalone cell
+    private final int index;
+    private String text;  // of a standalone cell, null if NA
+    private double number = Double.NaN;  // of a standalone cell, NaN if not numeric
 
-    private DataCell() {
+    DataCell(DataColumn column, int index) {
+        this.column = column;
+        this.index = index;
     }
 
     DataCell(String value) {
+        this(null, 0);
         setValue(value);
     }
 
     DataCell(double numberValue) {
+        this(null, 0);
         setValue(numberValue);
     }
 
     /**
-     * @return a copy of this
+     * @return a standalone copy of this
      */
     public DataCell copy() {
-        DataCell cell = new DataCell();
-        cell.value = this.value;
-        cell.numberValue = this.numberValue;
-        return cell;
+        DataCell copy = new DataCell(null, 0);
+        copy.text = isNa() ? null : text();
+        copy.number = getNumberValue();
+        return copy;
     }
 
     /**
@@ -36,17 +46,19 @@ public class DataCell {
      * @param value the string value
      */
     public void setValue(String value) {
-        if (value == null) {
-            value = "";
+        if (column != null) {
+            column.setText(index, value);
+            return;
         }
-        // strips '"' and '"'
-        if (value.startsWith("\"") && value.endsWith("\"")) this.value = value.substring(1, value.length() - 1);
-        else this.value = value;
-        try {
-            numberValue = Double.parseDouble(value);
-        } catch (NumberFormatException e) {
-            numberValue = Double.NaN;
+        if (value == null) value = "";
+        if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {  // as ColumnVector.setText
+            value = value.substring(1, value.length() - 1);
+            number = Double.NaN;
+        } else {
+            number = NumberParser.parse(value);
+            if (!Double.isNaN(number)) value = value.trim();
         }
+        text = value.isEmpty() ? null : value;
     }
 
     /**
@@ -55,40 +67,63 @@ public class DataCell {
      * @param numberValue the double value
      */
     public void setValue(double numberValue) {
-        if (Double.isNaN(numberValue)) {
-            this.value = "";
-        } else {
-            this.value = String.valueOf(numberValue);
+        if (column != null) {
+            column.setNumber(index, numberValue);
+            return;
         }
-        this.numberValue = numberValue;
+        number = numberValue;
+        text = Double.isNaN(numberValue) ? null : ColumnVector.numberText(numberValue);
     }
 
     /**
      * @return whether the value in this cell is NA
      */
     public boolean isNa() {
-        return value.isEmpty();
+        return column == null ? text == null : column.vector().isNa(index);
     }
 
     /**
      * @return whether the value contained in this DataCell is numeric
      */
     public boolean isNumber() {
-        return !Double.isNaN(numberValue);
+        return column == null ? !Double.isNaN(number) : column.vector().isNumber(index);
     }
 
     /**
      * @return the numeric value contained in this DataCell, or Double.NaN if this DataCell is not numeric
      */
     public double getNumberValue() {
-        return numberValue;
+        return column == null ? number : column.vector().getNumber(index);
+    }
+
+    /**
+     * @return the column viewed by this cell, null if standalone
+     */
+    DataColumn column() {
+        return column;
+    }
+
+    int index() {
+        return index;
+    }
+
+    /**
+     * @return the text of the value, empty string if NA
+     */
+    String text() {
+        if (column != null) return column.vector().getText(index);
+        return text == null ? "" : text;
     }
 
     @Override
     public String toString() {
-        return value.isEmpty() ? "NA" : value;
+        return isNa() ? "NA" : text();
     }
 
+    /**
+     * Cells are equal if their texts are, numbers compare by the text they were read from, so <code>1</code> does not
+     * equal <code>1.0</code>. This holds whether a cell views a numeric column, a textual column or is standalone.
+     */
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -96,6 +131,11 @@ public class DataCell {
 
         DataCell cell = (DataCell) o;
 
-        return Objects.equals(value, cell.value);
+        return text().equals(cell.text());
+    }
+
+    @Override
+    public int hashCode() {
+        return text().hashCode();
     }
 }
@@ -1,14 +1,26 @@
 package data;
 
-import java.util.ArrayList;
+import util.NumericKernels;
+
 import java.util.List;
+import java.util.Objects;
 
 /**
  * A data column.
+ * <p>
+ * Values are stored in a primitive {@link ColumnVector}: numeric columns as a double array, other columns as
+ * dictionary codes. Cells returned by {@link #get(int)} are views on that storage.
+ * <p>
+ * The storage may be shared with other columns, see {@link DataFrame#viewByColumns(String...)} and
+ * {@link DataFrame#viewByRows(int...)}. It is then copied on the first write, so columns never see each other's
+ * changes, and the column that is left alone with the storage writes it in place again.
  */
 public class DataColumn extends LinearDataList {
 
     private final String colName;
+    private ColumnVector vector;
+    private int modCount;  // number of writes, tells caches derived from the values whether they are stale
+    private HashIndex hashIndex;  // built on first lookup, dropped on write
 
     /**
      * The constructor.
@@ -17,17 +29,63 @@ public class DataColumn extends LinearDataList {
      * @param columnData data cells in this column
      */
     public DataColumn(String colName, List<DataCell> columnData) {
-        super(columnData);
+        this(colName, ColumnBuilder.fromCells(columnData));
+    }
+
+    DataColumn(String colName, ColumnVector vector) {
         this.colName = colName;
+        this.vector = vector;
+    }
+
+    /**
+     * Creates a numeric column.
+     *
+     * @param colName title of this column
+     * @param values  numeric values, copied, Double.NaN is NA
+     * @return the column
+     */
+    public static DataColumn of(String colName, double[] values) {
+        return new DataColumn(colName, NumericVector.of(values.clone()));
     }
 
     @Override
     public DataColumn deepCopy() {
-        List<DataCell> cells = new ArrayList<>();
-        for (DataCell cell : this) {
-            cells.add(cell.copy());
-        }
-        return new DataColumn(colName, cells);
+        return new DataColumn(colName, vector.copy());
+    }
+
+    /**
+     * Returns a new column containing the values at <code>indexes</code>, in that order.
+     *
+     * @param indexes indexes of values to be copied
+     * @return the new column
+     */
+    DataColumn gather(int[] indexes) {
+        return new DataColumn(colName, vector.gather(indexes));
+    }
+
+    /**
+     * @return a column sharing the storage of this one
+     */
+    DataColumn view() {
+        vector.share();
+        return new DataColumn(colName, vector);
+    }
+
+    /**
+     * @param indexes indexes of values to be viewed, not copied
+     * @return a column viewing the values at <code>indexes</code>, in that order
+     */
+    DataColumn view(int[] indexes) {
+        return new DataColumn(colName, ViewVector.of(vector, indexes));
+    }
+
+    /**
+     * @param from beginning index, inclusive
+     * @param to   ending index, exclusive
+     * @return a column viewing the values between <code>from</code> and <code>to</code>
+     */
+    DataColumn view(int from, int to) {
+        return new DataColumn(colName, ViewVector.range(vector, from, to));
     }
 
     /**
@@ -37,8 +95,119 @@ public class DataColumn extends LinearDataList {
         return colName;
     }
 
+    ColumnVector vector() {
+        return vector;
+    }
+
+    int modCount() {
+        return modCount;
+    }
+
+    /**
+     * @return the equality index of this column, built on first use, or null if this column is numeric
+     */
+    synchronized HashIndex hashIndex() {
+        if (hashIndex != null || vector instanceof NumericVector) return hashIndex;
+        ColumnVector values = vector.materialize();
+        if (values instanceof StringVector) hashIndex = new HashIndex((StringVector) values);
+        return hashIndex;
+    }
+
+    void setText(int index, String value) {
+        Objects.checkIndex(index, size());
+        vector = writableVector().setText(index, value);
+        written();
+    }
+
+    void setNumber(int index, double value) {
+        Objects.checkIndex(index, size());
+        writableVector().setValue(index, value);
+        written();
+    }
+
+    private synchronized void written() {
+        modCount++;
+        hashIndex = null;
+    }
+
+    private ColumnVector writableVector() {
+        if (vector.isShared()) {
+            ColumnVector shared = vector;
+            vector = vector.copy();
+            shared.release();
+        }
+        return vector;
+    }
+
+    @Override
+    public DataCell get(int index) {
+        return new DataCell(this, Objects.checkIndex(index, size()));
+    }
+
+    @Override
+    public int size() {
+        return vector.size();
+    }
+
+    @Override
+    boolean isNumberAt(int index) {
+        return vector.isNumber(index);
+    }
+
+    @Override
+    double numberAt(int index) {
+        return vector.getNumber(index);
+    }
+
+    @Override
+    boolean isNaAt(int index) {
+        return vector.isNa(index);
+    }
+
+    @Override
+    public double[] toNumberArray() {
+        return vector.toNumberArray();
+    }
+
+    @Override
+    public SummaryStats summaryStats() {
+        return vector.summaryStats();
+    }
+
+    @Override
+    public int numericCellsCount() {
+        return NumericKernels.get().count(numbers(), 0, size());
+    }
+
+    @Override
+    public double sum() {
+        return NumericKernels.get().sum(numbers(), 0, size());
+    }
+
+    @Override
+    public double mean() {
+        return NumericKernels.get().mean(numbers(), 0, size());
+    }
+
+    @Override
+    public double min() {
+        return NumericKernels.get().min(numbers(), 0, size());
+    }
+
+    @Override
+    public double max() {
+        return NumericKernels.get().max(numbers(), 0, size());
+    }
+
+    /**
+     * @return the numeric values of this column, followed by unused capacity. Must not be modified.
+     */
+    double[] numbers() {
+        return vector instanceof NumericVector ? ((NumericVector) vector).values() : vector.toNumberArray();
+    }
+
     @Override
     public String toString() {
-        return "DataColumn{" + colName + ": " + cellList.toString() + "}";
+        return "DataColumn{" + colName + ": " + cellsString() + "}";
     }
 }
@@ -1,31 +1,40 @@
 package data;
 
-import util.Utility;
-
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Predicate;
 
 /**
  * A 2D table.
  * <p>
  * All indexes in this DataFrame are started from 0.
+ * <p>
+ * Data is stored column by column in primitive arrays, rows and cells are views created on demand.
  */
 public class DataFrame {
 
-    /**
-     * These two lists store the same cells, just in different order.
-     */
-    private final List<DataRow> rows;
     private final List<DataColumn> columns;
+    private final int rowsCount;
+    private final Map<String, Integer> columnIndexes;  // title to index of its first column
+    private final Map<List<SortKey>, CachedOrder> sortedOrders = new HashMap<>();
 
-    private DataFrame(List<DataRow> rows, List<DataColumn> columns) {
-        this.rows = rows;
+    private DataFrame(List<DataColumn> columns, int rowsCount) {
         this.columns = columns;
+        this.rowsCount = rowsCount;
+        Map<String, Integer> indexes = new HashMap<>();
+        for (int c = columns.size() - 1; c >= 0; c--) indexes.put(columns.get(c).getColName(), c);  // first wins
+        this.columnIndexes = Collections.unmodifiableMap(indexes);
     }
 
     /**
@@ -41,36 +50,106 @@ public class DataFrame {
 
     /**
      * Creates a DataFrame reads from a csv file.
+     * <p>
+     * The file is parsed as UTF-8 following RFC 4180: fields may be quoted to contain ',', line breaks or escaped
+     * quotes (<code>""</code>). Quoted fields are never numeric.
      *
      * @param csvFile .csv file
      * @return the data frame created according to data stored in csv file
      * @throws IOException if file not readable
      */
     public static DataFrame fromCsv(File csvFile) throws IOException {
-        try (BufferedReader br = new BufferedReader(new FileReader(csvFile))) {
-            List<DataRow> rows = new ArrayList<>();
-            List<String> titleRow = new ArrayList<>();
-            String line;
-            while ((line = br.readLine()) != null) {
-                String[] parts = line.split(",");
-                for (int i = 0; i < parts.length; i++) parts[i] = parts[i].strip();
-                if (titleRow.isEmpty()) {
-                    for (String title : parts) {
-                        String stripped = title.strip();
-                        if (stripped.startsWith("\"") && stripped.endsWith("\""))
-                            stripped = stripped.substring(1, stripped.length() - 1);
-                        titleRow.add(stripped);
-                    }
-                } else {
-                    List<DataCell> row = new ArrayList<>();
-                    for (String part : parts) {
-                        DataCell cell = new DataCell(part);
-                        row.add(cell);
-                    }
-                    rows.add(new DataRow(row));
-                }
-            }
-            return fromRows(titleRow, rows);
+        return fromCsv(csvFile, null, null);
+    }
+
+    /**
+     * Creates a DataFrame reads only the columns <code>columnNames</code> from a csv file.
+     * <p>
+     * Fields of other columns are skipped without being parsed.
+     *
+     * @param csvFile     .csv file
+     * @param columnNames titles of columns to be loaded, in the order of the new DataFrame
+     * @return the data frame created according to data stored in csv file
+     * @throws IOException        if file not readable
+     * @throws DataFrameException if some column does not exist in the file
+     */
+    public static DataFrame fromCsv(File csvFile, String... columnNames) throws IOException {
+        return fromCsv(csvFile, List.of(columnNames), null);
+    }
+
+    /**
+     * Creates a DataFrame reads the rows accepted by <code>rowFilter</code> and the columns
+     * <code>columnNames</code> from a csv file.
+     * <p>
+     * Rows are filtered while being read, before any value is stored, and fields of other columns are skipped
+     * without being parsed. The filter may look at any column of the file, not only the loaded ones.
+     * <p>
+     * Equivalent to <code>subset(read.csv(csvFile), rowFilter, columnNames)</code> in R.
+     *
+     * @param csvFile     .csv file
+     * @param columnNames titles of columns to be loaded, in the order of the new DataFrame, or null for all columns
+     * @param rowFilter   the condition for a row to be loaded, or null for all rows
+     * @return the data frame created according to data stored in csv file
+     * @throws IOException        if file not readable
+     * @throws DataFrameException if some column does not exist in the file
+     */
+    public static DataFrame fromCsv(File csvFile, List<String> columnNames, Predicate<CsvRow> rowFilter)
+            throws IOException {
+        try (CsvReader reader = new CsvReader(new FileInputStream(csvFile))) {
+            return readCsv(reader, columnNames, rowFilter);
+        }
+    }
+
+    /**
+     * Reads a DataFrame saved by {@link #write(Path)}.
+     * <p>
+     * The file is memory-mapped and its column blocks are copied directly into the column arrays, nothing is
+     * parsed per value.
+     *
+     * @param path the file
+     * @return the DataFrame stored in that file
+     * @throws IOException        if file not readable
+     * @throws DataFrameException if the file is not a DataFrame file
+     */
+    public static DataFrame read(Path path) throws IOException {
+        return BinaryFormat.read(path);
+    }
+
+    /**
+     * Creates a DataFrame reads from a csv file, parsing it with <code>threads</code> threads.
+     * <p>
+     * The file is memory-mapped and split into chunks at line breaks outside quoted fields, each chunk is parsed by a
+     * worker. The result is the same as {@link #fromCsv(File)}, provided that '"' only appears around quoted fields
+     * or escaped inside them, as RFC 4180 requires.
+     *
+     * @param csvPath path of .csv file
+     * @param threads number of worker threads
+     * @return the data frame created according to data stored in csv file
+     * @throws IOException if file not readable
+     */
+    public static DataFrame fromCsvParallel(Path csvPath, int threads) throws IOException {
+        return new ParallelCsvLoader(csvPath, threads).load();
+    }
+
+    /**
+     * Reads the records of <code>reader</code> accepted by <code>rowFilter</code>, the first record is the title row.
+     */
+    private static DataFrame readCsv(CsvReader reader, List<String> columnNames, Predicate<CsvRow> rowFilter)
+            throws IOException {
+        CsvBatchReader batches = new CsvBatchReader(reader, columnNames, rowFilter);
+        DataFrame frame = batches.next(Integer.MAX_VALUE);
+        return frame != null ? frame : batches.emptyFrame();
+    }
+
+    /**
+     * Appends the current record of <code>reader</code> to <code>builders</code>.
+     */
+    static void addRecord(CsvReader reader, ColumnBuilder[] builders) {
+        if (reader.fieldCount() != builders.length) throw new DataFrameException("Row '" + reader.recordString()
+                + "' (" + reader.recordPosition() + ") has different number of data compares to the previous row.");
+        byte[] buffer = reader.buffer();
+        for (int c = 0; c < builders.length; c++) {
+            builders[c].addField(buffer, reader.fieldStart(c), reader.fieldEnd(c), reader.isQuoted(c));
         }
     }
 
@@ -83,7 +162,6 @@ public class DataFrame {
      * @return the newly created DataFrame
      */
     public static DataFrame fromColumns(List<DataColumn> columns) {
-        List<DataRow> rows = new ArrayList<>();
         int colsCount = columns.size();
         if (colsCount == 0) throw new DataFrameException("Cannot create dataframe from 0 columns.");
         int rowsCount = columns.get(0).size();
@@ -93,14 +171,14 @@ public class DataFrame {
                         "Column '" + c + "' has different number of data compares to the previous column.");
             }
         }
-        for (int r = 0; r < rowsCount; r++) {
-            List<DataCell> row = new ArrayList<>();
-            for (DataColumn column : columns) {
-                row.add(column.get(r));
-            }
-            rows.add(new DataRow(row));
-        }
-        return new DataFrame(rows, new ArrayList<>(columns));  // avoids modification to original columns
+        return new DataFrame(new ArrayList<>(columns), rowsCount);  // avoids modification to original columns
+    }
+
+    /**
+     * Creates a DataFrame that owns <code>columns</code>, which must all have <code>rowsCount</code> values.
+     */
+    static DataFrame fromColumns(List<DataColumn> columns, int rowsCount) {
+        return new DataFrame(columns, rowsCount);
     }
 
     /**
@@ -114,23 +192,17 @@ public class DataFrame {
      * @return the newly created DataFrame
      */
     public static DataFrame fromRows(List<String> titleRow, List<DataRow> rows) {
-        List<List<DataCell>> columns = new ArrayList<>();
         int colsCount = titleRow.size();
-        for (int c = 0; c < colsCount; c++) {
-            columns.add(new ArrayList<>());
-        }
+        ColumnBuilder[] builders = newBuilders(colsCount);
         for (DataRow row : rows) {
             if (row.size() != colsCount) throw new DataFrameException(
                     "Row '" + row + "' has different number of data compares to the previous row.");
             for (int c = 0; c < colsCount; c++) {
-                columns.get(c).add(row.get(c));
+                builders[c].addCell(row.get(c));  // copies the value, avoids modification to original rows
             }
         }
-        List<DataColumn> dataColumns = new ArrayList<>();
-        for (int c = 0; c < colsCount; c++) {
-            dataColumns.add(new DataColumn(titleRow.get(c), columns.get(c)));
-        }
-        return new DataFrame(new ArrayList<>(rows), dataColumns);  // avoids modification to original rows
+        DataFrame frame = fromBuilders(titleRow, builders);
+        return colsCount == 0 ? new DataFrame(frame.columns, rows.size()) : frame;
     }
 
     /**
@@ -141,19 +213,40 @@ public class DataFrame {
      * @return the newly created DataFrame
      */
     public static DataFrame fromDataArray(String[] titles, Object[][] dataMatrix) {
-        List<DataRow> rows = new ArrayList<>();
+        ColumnBuilder[] builders = newBuilders(titles.length);
         for (Object[] rowData : dataMatrix) {
-            List<DataCell> row = new ArrayList<>();
-            for (Object data : rowData) {
-                DataCell cell;
-                if (data instanceof String) cell = new DataCell((String) data);
-                else if (data instanceof Number) cell = new DataCell(((Number) data).doubleValue());
+            if (rowData.length != titles.length) throw new DataFrameException("Row '" + Arrays.toString(rowData)
+                    + "' has different number of data compares to the previous row.");
+            for (int c = 0; c < rowData.length; c++) {
+                Object data = rowData[c];
+                if (data instanceof String) builders[c].addText((String) data);
+                else if (data instanceof Number) builders[c].addNumber(((Number) data).doubleValue());
                 else throw new DataFrameException("Cannot convert '" + data + "' to data cell.");
-                row.add(cell);
             }
-            rows.add(new DataRow(row));
         }
-        return fromRows(List.of(titles), rows);
+        return fromBuilders(List.of(titles), builders);
+    }
+
+    static ColumnBuilder[] newBuilders(int count) {
+        ColumnBuilder[] builders = new ColumnBuilder[count];
+        for (int c = 0; c < count; c++) builders[c] = new ColumnBuilder();
+        return builders;
+    }
+
+    private static DataFrame fromBuilders(List<String> titles, ColumnBuilder[] builders) {
+        return fromBuilders(titles, builders, builders.length == 0 ? 0 : builders[0].size());
+    }
+
+    /**
+     * Creates a DataFrame of the columns built by <code>builders</code>, which must all have <code>rowsCount</code>
+     * values.
+     */
+    static DataFrame fromBuilders(List<String> titles, ColumnBuilder[] builders, int rowsCount) {
+        List<DataColumn> columns = new ArrayList<>();
+        for (int c = 0; c < builders.length; c++) {
+            columns.add(new DataColumn(titles.get(c), builders[c].build()));
+        }
+        return new DataFrame(columns, rowsCount);
     }
 
     /**
@@ -167,7 +260,7 @@ public class DataFrame {
      * @return the row at given index
      */
     public DataRow getRow(int index) {
-        return rows.get(index);
+        return DataRow.view(columns, Objects.checkIndex(index, rowsCount));
     }
 
     /**
@@ -210,16 +303,31 @@ public class DataFrame {
     /**
      * Returns the index of the column in this DataFrame that has title equals to <code>colName</code>, or -1
      * if not found.
+     * <p>
+     * <code>colName</code> is stripped, then looked up in a hash map built with this DataFrame. If several columns
+     * have that title, the first one is returned.
      *
      * @param colName the name of the column to look for
      * @return index of that column, -1 if not found
      */
     public int indexOfColumn(String colName) {
-        colName = colName.strip();
-        for (int i = 0; i < columnsCount(); i++) {
-            if (colName.equals(getColumn(i).getColName())) return i;
-        }
-        return -1;
+        Integer index = columnIndexes.get(colName.strip());
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * Resolves the column that has title <code>colName</code> once, to access its values by row index without
+     * looking the title up again.
+     *
+     * @param colName the name of the column to look for
+     * @return the handle of that column
+     * @throws DataFrameException if no column has that name
+     */
+    public ColumnHandle handle(String colName) throws DataFrameException {
+        int index = indexOfColumn(colName);
+        if (index < 0)
+            throw new DataFrameException("No such column '" + colName + "'");
+        return new ColumnHandle(getColumn(index), index);
     }
 
     /**
@@ -232,7 +340,7 @@ public class DataFrame {
      * @return the cell at that position
      */
     public DataCell getCell(int row, int column) {
-        return rows.get(row).get(column);
+        return columns.get(column).get(row);
     }
 
     /**
@@ -290,6 +398,10 @@ public class DataFrame {
      * @return the copied sub-DataFrame
      */
     public DataFrame subFrameByColumns(String... columnNames) {
+        return subFrameByColumns(columnIndexes(columnNames));
+    }
+
+    private int[] columnIndexes(String... columnNames) {
         int[] indexes = new int[columnNames.length];
         for (int i = 0; i < columnNames.length; i++) {
             int index = indexOfColumn(columnNames[i]);
@@ -297,7 +409,7 @@ public class DataFrame {
                 throw new DataFrameException("No such column '" + columnNames[i] + "'");
             indexes[i] = index;
         }
-        return subFrameByColumns(indexes);
+        return indexes;
     }
 
     /**
@@ -309,11 +421,11 @@ public class DataFrame {
      * @return the copied sub-DataFrame
      */
     public DataFrame subFrameByRows(int... rowIndexes) {
-        List<DataRow> rows = new ArrayList<>();
-        for (int r : rowIndexes) {
-            rows.add(getRow(r).deepCopy());
+        List<DataColumn> newColumns = new ArrayList<>();
+        for (DataColumn column : columns) {
+            newColumns.add(column.gather(rowIndexes));
         }
-        return fromRows(getTitles(), rows);
+        return new DataFrame(newColumns, rowIndexes.length);
     }
 
     /**
@@ -333,10 +445,77 @@ public class DataFrame {
         return subFrameByRows(indexes);
     }
 
+    /**
+     * Returns a sub-DataFrame of this that shares the storage of the selected columns, with the same number of rows.
+     * <p>
+     * Nothing is copied until a value is set: the column being written, in the view or in this, is copied first. So,
+     * like {@link #subFrameByColumns(int...)}, mutating the parent DataFrame would not have any effect on the view,
+     * and vice versa.
+     *
+     * @param columnIndexes indexes of columns to be viewed
+     * @return the view
+     */
+    public DataFrame viewByColumns(int... columnIndexes) {
+        List<DataColumn> newColumns = new ArrayList<>();
+        for (int c : columnIndexes) {
+            newColumns.add(getColumn(c).view());
+        }
+        return fromColumns(newColumns);
+    }
+
+    /**
+     * Returns a sub-DataFrame of this that shares the storage of the selected columns, with the same number of rows.
+     *
+     * @param columnNames titles of columns to be viewed
+     * @return the view
+     * @see #viewByColumns(int...)
+     */
+    public DataFrame viewByColumns(String... columnNames) {
+        return viewByColumns(columnIndexes(columnNames));
+    }
+
+    /**
+     * Returns a sub-DataFrame of this that reads the selected rows from the storage of this, through an index vector.
+     * <p>
+     * Nothing is copied until a value is set: the column being written, in the view or in this, is copied first. So,
+     * like {@link #subFrameByRows(int...)}, mutating the parent DataFrame would not have any effect on the view, and
+     * vice versa.
+     *
+     * @param rowIndexes indexes of rows to be viewed
+     * @return the view
+     */
+    public DataFrame viewByRows(int... rowIndexes) {
+        int[] indexes = rowIndexes.clone();
+        List<DataColumn> newColumns = new ArrayList<>();
+        for (DataColumn column : columns) {
+            newColumns.add(column.view(indexes));
+        }
+        return new DataFrame(newColumns, indexes.length);
+    }
+
+    /**
+     * Returns a sub-DataFrame of this that reads the rows between <code>from</code> and <code>to</code> from the
+     * storage of this.
+     *
+     * @param from the beginning index of rows to be viewed, inclusive
+     * @param to   the ending index of rows to be viewed, exclusive
+     * @return the view
+     * @see #viewByRows(int...)
+     */
+    public DataFrame viewByRowsRange(int from, int to) {
+        Objects.checkFromToIndex(from, to, rowsCount);
+        List<DataColumn> newColumns = new ArrayList<>();
+        for (DataColumn column : columns) {
+            newColumns.add(column.view(from, to));
+        }
+        return new DataFrame(newColumns, to - from);
+    }
+
     /**
      * Returns a new DataFrame with any non-numeric rows removed.
      * <p>
-     * Any rows with at least 1 non-numeric value at numeric column are removed.
+     * Any rows with at least 1 non-numeric value (text or NA) at a column not in <code>preservedColNames</code> are
+     * removed. Rows of large DataFrames are checked in parallel.
      *
      * @param preservedColNames the name of columns that does not count as non-numeric.
      *                          If some row has a non-numeric value at column in <code>preservedColNames</code>, it
@@ -344,37 +523,250 @@ public class DataFrame {
      * @return a new DataFrame any non-numeric rows removed
      */
     public DataFrame numericSubFrame(String... preservedColNames) {
-        List<DataRow> numericRows = new ArrayList<>();
-        List<String> titles = getTitles();
-        String[] fixedColNames = new String[preservedColNames.length];  // stripped version
-        for (int i = 0; i < preservedColNames.length; i++) {
-            fixedColNames[i] = preservedColNames[i].strip();
+        Set<String> preserved = new HashSet<>();  // stripped version
+        for (String colName : preservedColNames) {
+            preserved.add(colName.strip());
         }
-        OUT_LOOP:
-        for (DataRow row : rows) {
-            for (int c = 0; c < row.size(); c++) {
-                DataCell cell = row.get(c);
-                String thisTitle = titles.get(c);
-                for (String preserved : fixedColNames) {
-                    if (preserved.equals(thisTitle)) break;
-                }
-                if (!cell.isNumber())
-                    continue OUT_LOOP;
-            }
-            numericRows.add(row.deepCopy());
+        List<ColumnVector> checked = new ArrayList<>();
+        for (DataColumn column : columns) {
+            if (!preserved.contains(column.getColName())) checked.add(column.vector());
+        }
+        return subFrameByRows(NumericRows.find(checked.toArray(new ColumnVector[0]), rowsCount));
+    }
+
+    /**
+     * Partitions the rows of this DataFrame by the values of some columns.
+     *
+     * @param keyNames titles of the key columns
+     * @return the groups of rows, which refer to this DataFrame without copying it
+     * @throws DataFrameException if no column has one of the titles
+     */
+    public GroupedDataFrame groupBy(String... keyNames) {
+        columnIndexes(keyNames);  // checks names
+        return new GroupedDataFrame(this, keyNames);
+    }
+
+    /**
+     * Joins this DataFrame with another by the values of some key columns, which must be in both.
+     * <p>
+     * The result has the key columns, then the other columns of this, then those of <code>other</code>. Titles that
+     * are in both get suffixes ".x" and ".y". Rows are in order of the rows of this, each with its matches in order of
+     * the rows of <code>other</code>, followed by the unmatched rows of <code>other</code> for an outer join.
+     * <p>
+     * The smaller DataFrame is put in a hash table that the other probes, unless both are already sorted by the keys,
+     * both were sorted by them with {@link #sortBy(String...)}, or both are very large: then they are merged in order
+     * of the keys. Columns of the result are gathered through the matched row indexes.
+     *
+     * @param other    the right DataFrame
+     * @param type     which rows to keep
+     * @param keyNames titles of the key columns
+     * @return the new DataFrame
+     * @throws DataFrameException if a key column is not found
+     */
+    public DataFrame join(DataFrame other, JoinType type, String... keyNames) {
+        return Join.join(this, other, type, Join.Strategy.AUTO, keyNames);
+    }
+
+    /**
+     * Returns a copy of this DataFrame with the rows sorted by some columns in ascending order, NA last.
+     *
+     * @param colNames titles of the columns, the first one is the most significant
+     * @return the sorted DataFrame
+     * @throws DataFrameException if a column is not found
+     * @see #sortBy(SortKey...)
+     */
+    public DataFrame sortBy(String... colNames) {
+        SortKey[] keys = new SortKey[colNames.length];
+        for (int k = 0; k < colNames.length; k++) keys[k] = SortKey.asc(colNames[k]);
+        return sortBy(keys);
+    }
+
+    /**
+     * Returns a copy of this DataFrame with the rows sorted by some columns. Rows with equal keys keep their order.
+     * <p>
+     * The values of each key column are encoded as primitive words that compare in order: IEEE-754 bits for numbers,
+     * ranks in the dictionary for text. The rows are then radix sorted by those words. The resulting row order is
+     * cached by this DataFrame until a key column is written, so sorting again by the same keys, or joining by them,
+     * does not sort again.
+     *
+     * @param keys the columns, the first one is the most significant
+     * @return the sorted DataFrame
+     * @throws DataFrameException if a column is not found
+     */
+    public DataFrame sortBy(SortKey... keys) {
+        return subFrameByRows(sortedOrder(keys));
+    }
+
+    /**
+     * Returns a copy of the rows whose value at a column equals <code>value</code>.
+     * <p>
+     * <code>value</code> is read like in {@link DataCell#setValue(String)}: numeric text matches the number, quoted
+     * text never does, and empty text matches NA. The first lookup on a column builds an index of it, later lookups
+     * take time proportional to the number of matching rows: a textual column is indexed by dictionary code, a
+     * numeric column by its sorted order, see {@link #sortBy(String...)}. The index is rebuilt after the column is
+     * written.
+     *
+     * @param colName title of the column
+     * @param value   the value
+     * @return the matching rows, in order
+     * @throws DataFrameException if no column has that title
+     */
+    public DataFrame whereEquals(String colName, String value) {
+        return subFrameByRows(rowsEqualTo(colName, value));
+    }
+
+    /**
+     * Returns a copy of the rows whose value at a column is the number <code>value</code>.
+     *
+     * @param colName title of the column
+     * @param value   the number, NaN matches no row, not even the text <code>NaN</code>
+     * @return the matching rows, in order
+     * @throws DataFrameException if no column has that title
+     * @see #whereEquals(String, String)
+     */
+    public DataFrame whereEquals(String colName, double value) {
+        if (Double.isNaN(value)) {
+            getColumn(colName);  // checks the name
+            return subFrameByRows(new int[0]);
+        }
+        return subFrameByRows(rowsEqualTo(colName, String.valueOf(value)));
+    }
+
+    /**
+     * Returns a copy of the rows whose value at a column is a number between <code>min</code> and <code>max</code>,
+     * inclusive.
+     * <p>
+     * The first lookup on a column sorts it, later lookups are binary searches in the cached order, see
+     * {@link #sortBy(String...)}.
+     *
+     * @param colName title of the column
+     * @param min     the smallest number
+     * @param max     the largest number
+     * @return the matching rows, in order
+     * @throws DataFrameException if no column has that title
+     */
+    public DataFrame whereBetween(String colName, double min, double max) {
+        return subFrameByRows(rowsBetween(colName, min, max));
+    }
+
+    private int[] rowsEqualTo(String colName, String value) {
+        if (value == null) value = "";
+        double number = Double.NaN;
+        if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+            value = value.substring(1, value.length() - 1);
+        } else if (!value.isEmpty()) {
+            number = NumberParser.parse(value);
+        }
+        HashIndex index = getColumn(colName).hashIndex();
+        if (index != null) return index.rowsOf(value, number);
+        if (value.isEmpty()) {  // NA is after all numbers
+            int[] order = sortedOrder(SortKey.asc(colName));
+            int from = firstAbove(order, getColumn(colName).vector(), Double.POSITIVE_INFINITY, false);
+            int[] rows = Arrays.copyOfRange(order, from, order.length);
+            Arrays.sort(rows);
+            return rows;
+        }
+        return Double.isNaN(number) ? new int[0] : rowsBetween(colName, number, number);
+    }
+
+    private int[] rowsBetween(String colName, double min, double max) {
+        int[] order = sortedOrder(SortKey.asc(colName));
+        ColumnVector vector = getColumn(colName).vector();
+        int from = firstAbove(order, vector, min, true);
+        int to = firstAbove(order, vector, max, false);
+        if (from >= to) return new int[0];
+        int[] rows = Arrays.copyOfRange(order, from, to);
+        Arrays.sort(rows);
+        return rows;
+    }
+
+    /**
+     * @return the first position in <code>order</code> whose value is above <code>bound</code>, or equal to it if
+     * <code>inclusive</code>. Values that are not numbers are above every bound.
+     */
+    private static int firstAbove(int[] order, ColumnVector vector, double bound, boolean inclusive) {
+        int low = 0;
+        int high = order.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int row = order[mid];
+            boolean above = !vector.isNumber(row)
+                    || (inclusive ? vector.getNumber(row) >= bound : vector.getNumber(row) > bound);
+            if (above) high = mid;
+            else low = mid + 1;
+        }
+        return low;
+    }
+
+    /**
+     * @return the order of rows sorted by <code>keys</code>, cached. Must not be modified.
+     */
+    int[] sortedOrder(SortKey... keys) {
+        int[] order = cachedSortedOrder(keys);
+        if (order != null) return order;
+        DataColumn[] keyColumns = new DataColumn[keys.length];
+        ColumnVector[] vectors = new ColumnVector[keys.length];
+        int[] modCounts = new int[keys.length];
+        for (int k = 0; k < keys.length; k++) {
+            keyColumns[k] = getColumn(keys[k].colName());
+            vectors[k] = keyColumns[k].vector();
+            modCounts[k] = keyColumns[k].modCount();
+        }
+        order = RowOrder.sort(RowOrder.encode(vectors, keys), rowsCount);
+        synchronized (sortedOrders) {
+            sortedOrders.put(List.of(keys), new CachedOrder(order, keyColumns, modCounts));
+        }
+        return order;
+    }
+
+    /**
+     * @return the order of rows sorted by <code>keys</code> if cached and still valid, otherwise null
+     */
+    int[] cachedSortedOrder(SortKey... keys) {
+        synchronized (sortedOrders) {
+            CachedOrder cached = sortedOrders.get(List.of(keys));
+            return cached != null && cached.isValid() ? cached.order : null;
+        }
+    }
+
+    /**
+     * Saves this DataFrame to a binary columnar file, which can be loaded back by {@link #read(Path)}.
+     * <p>
+     * Numeric columns are saved as raw doubles with a validity bitmap, other columns as a dictionary and codes.
+     *
+     * @param path the file, overwritten if exists
+     * @throws IOException if file not writable
+     */
+    public void write(Path path) throws IOException {
+        BinaryFormat.write(this, path);
+    }
+
+    /**
+     * Saves this DataFrame to a csv file following RFC 4180, which can be loaded back by {@link #fromCsv(File)}.
+     * <p>
+     * NA is written as an empty field and numbers as their shortest decimal that reads back as the same double.
+     * Texts are quoted if they contain ',', '"' or line breaks, if they have surrounding blanks, or if they would be
+     * read back as numbers. Rows are formatted in blocks, in parallel, and written in order through a direct buffer.
+     *
+     * @param path the file, overwritten if exists
+     * @throws IOException if file not writable
+     */
+    public void toCsv(Path path) throws IOException {
+        try (CsvWriter writer = new CsvWriter(path)) {
+            writer.writeTitles(getTitles());
+            writer.writeRows(this);
         }
-        return fromRows(getTitles(), numericRows);
     }
 
     /**
      * @return an independent copy of this
      */
     public DataFrame copy() {
-        List<DataRow> newRows = new ArrayList<>();
-        for (DataRow row : this.rows) {
-            newRows.add(row.deepCopy());
+        List<DataColumn> newColumns = new ArrayList<>();
+        for (DataColumn column : columns) {
+            newColumns.add(column.deepCopy());
         }
-        return fromRows(getTitles(), newRows);
+        return new DataFrame(newColumns, rowsCount);
     }
 
     /**
@@ -385,9 +777,9 @@ public class DataFrame {
      */
     public DataFrame replaceNa(double replacement) {
         DataFrame copied = copy();
-        for (DataRow row : copied.rows) {
-            for (DataCell cell : row) {
-                if (cell.isNa()) cell.setValue(replacement);
+        for (DataColumn column : copied.columns) {
+            for (int r = 0; r < rowsCount; r++) {
+                if (column.vector().isNa(r)) column.setNumber(r, replacement);
             }
         }
         return copied;
@@ -401,9 +793,9 @@ public class DataFrame {
      */
     public DataFrame replaceNa(String replacement) {
         DataFrame copied = copy();
-        for (DataRow row : copied.rows) {
-            for (DataCell cell : row) {
-                if (cell.isNa()) cell.setValue(replacement);
+        for (DataColumn column : copied.columns) {
+            for (int r = 0; r < rowsCount; r++) {
+                if (column.vector().isNa(r)) column.setText(r, replacement);
             }
         }
         return copied;
@@ -411,6 +803,11 @@ public class DataFrame {
 
     /**
      * Reshape this DataFrame to pivot-longer form.
+     * <p>
+     * Each row becomes one row per column not in <code>preservedColNames</code>. Preserved columns are views that
+     * repeat each value, see {@link #viewByRows(int...)}. The names column is coded on a dictionary of the moved
+     * titles, and the values column interleaves the moved columns row by row. If every column is preserved, the result
+     * has no rows.
      *
      * @param preservedColNames name of columns that do not modify
      * @param namesTo           the name of new column containing categorical names
@@ -418,43 +815,98 @@ public class DataFrame {
      * @return the reshaped DataFrame
      */
     public DataFrame pivotLonger(List<String> preservedColNames, String namesTo, String valuesTo) {
-        List<String> preserved = new ArrayList<>();  // strips all preserved names
+        Set<String> preserved = new HashSet<>();  // strips all preserved names
         for (String s : preservedColNames) {
             preserved.add(s.strip());
         }
 
-        int repetition = columnsCount() - preserved.size();
-
-        List<DataColumn> fixedColumns = new ArrayList<>();
-        List<DataColumn> movingColumns = new ArrayList<>();
-        for (String colName : getTitles()) {
-            if (preserved.contains(colName)) {  // fixed column
-                DataColumn oldColumn = getColumn(colName);
-                List<DataCell> newColumn = new ArrayList<>();
-                for (int r = 0; r < rowsCount(); r++) {
-                    for (int i = 0; i < repetition; i++) {
-                        newColumn.add(oldColumn.get(r).copy());
-                    }
-                }
-                fixedColumns.add(new DataColumn(colName, newColumn));
-            } else {  // moving column
-                movingColumns.add(getColumn(colName));
+        List<DataColumn> newColumns = new ArrayList<>();
+        List<ColumnVector> moving = new ArrayList<>();
+        ColumnBuilder names = new ColumnBuilder();
+        for (DataColumn column : columns) {
+            if (!preserved.contains(column.getColName())) {
+                moving.add(column.vector());
+                names.addText(column.getColName());
             }
         }
-
-        List<DataCell> namesColumn = new ArrayList<>();
-        List<DataCell> valuesColumn = new ArrayList<>();
-        for (int r = 0; r < rowsCount(); r++) {  // reshape the data
-            for (DataColumn movingColumn : movingColumns) {  // distribute data in one row to different rows
-                namesColumn.add(new DataCell(movingColumn.getColName()));
-                valuesColumn.add(movingColumn.get(r).copy());
+        int repetition = moving.size();
+        if (repetition == 0) {  // every column is preserved, nothing to move
+            for (DataColumn column : columns) {
+                newColumns.add(new DataColumn(column.getColName(), column.vector().gather(new int[0])));
+            }
+            newColumns.add(new DataColumn(namesTo, names.build()));
+            newColumns.add(new DataColumn(valuesTo, new ColumnBuilder().build()));
+            return new DataFrame(newColumns, 0);
+        }
+        int newRowsCount = Math.multiplyExact(rowsCount, repetition);
+        for (DataColumn column : columns) {
+            if (preserved.contains(column.getColName())) {  // fixed column
+                newColumns.add(new DataColumn(column.getColName(), ViewVector.repeat(column.vector(), repetition)));
             }
         }
 
-        List<DataColumn> newColumns = new ArrayList<>(fixedColumns);
-        newColumns.add(new DataColumn(namesTo, namesColumn));
-        newColumns.add(new DataColumn(valuesTo, valuesColumn));
-        return fromColumns(newColumns);
+        int[] namesIndexes = new int[newRowsCount];
+        for (int i = 0; i < newRowsCount; i++) namesIndexes[i] = i % repetition;
+        newColumns.add(new DataColumn(namesTo, names.build().gather(namesIndexes)));
+        newColumns.add(new DataColumn(valuesTo, ColumnVector.interleave(moving, rowsCount)));
+        return new DataFrame(newColumns, newRowsCount);
+    }
+
+    /**
+     * Reshape this DataFrame to pivot-wider form, the inverse of {@link #pivotLonger(List, String, String)}.
+     * <p>
+     * The other columns identify the rows of the result: rows with the same values in them become one row, with one
+     * column per distinct value of <code>namesFrom</code>, in order of first appearance, holding the value of
+     * <code>valuesFrom</code>. Missing combinations are NA. Both the identifiers and the names are looked up in one
+     * pass over the rows, through open-addressing hash tables of their primitive values.
+     *
+     * @param namesFrom  the name of the column containing the new column titles
+     * @param valuesFrom the name of the column containing the values
+     * @return the reshaped DataFrame
+     * @throws DataFrameException if a column is not found, or if two rows have the same identifiers and name
+     */
+    public DataFrame pivotWider(String namesFrom, String valuesFrom) {
+        DataColumn namesColumn = getColumn(namesFrom);
+        DataColumn valuesColumn = getColumn(valuesFrom);
+        List<String> idNames = new ArrayList<>();
+        for (DataColumn column : columns) {
+            if (column != namesColumn && column != valuesColumn) idNames.add(column.getColName());
+        }
+        ColumnVector[] idVectors = new ColumnVector[idNames.size()];
+        for (int k = 0; k < idVectors.length; k++) idVectors[k] = getColumn(idNames.get(k)).vector().materialize();
+        ColumnVector namesVector = namesColumn.vector().materialize();
+
+        GroupedDataFrame.KeyTable ids = new GroupedDataFrame.KeyTable(idVectors);
+        GroupedDataFrame.KeyTable names = new GroupedDataFrame.KeyTable(new ColumnVector[]{namesVector});
+        int[] idOfRow = new int[rowsCount];
+        int[] nameOfRow = new int[rowsCount];
+        for (int r = 0; r < rowsCount; r++) {
+            idOfRow[r] = ids.groupOf(r);
+            nameOfRow[r] = names.groupOf(r);
+        }
+
+        int idsCount = ids.size();
+        int[][] valueRows = new int[names.size()][idsCount];  // row holding each value, NA_INDEX for none
+        for (int[] rows : valueRows) Arrays.fill(rows, ColumnVector.NA_INDEX);
+        for (int r = 0; r < rowsCount; r++) {
+            int[] rows = valueRows[nameOfRow[r]];
+            if (rows[idOfRow[r]] != ColumnVector.NA_INDEX) throw new DataFrameException(
+                    "Rows " + rows[idOfRow[r]] + " and " + r + " have the same identifiers and name.");
+            rows[idOfRow[r]] = r;
+        }
+
+        List<DataColumn> newColumns = new ArrayList<>();
+        int[] firstRows = ids.firstRows();
+        for (int k = 0; k < idVectors.length; k++) {
+            newColumns.add(new DataColumn(idNames.get(k), idVectors[k].gather(firstRows)));
+        }
+        int[] nameRows = names.firstRows();
+        ColumnVector values = valuesColumn.vector();
+        for (int n = 0; n < nameRows.length; n++) {
+            String title = namesVector.isNa(nameRows[n]) ? "NA" : namesVector.getText(nameRows[n]);
+            newColumns.add(new DataColumn(title, values.gatherOrNa(valueRows[n])));
+        }
+        return new DataFrame(newColumns, idsCount);
     }
 
     /**
@@ -463,7 +915,7 @@ public class DataFrame {
      * @return umber of data rows, does not include title row
      */
     public int rowsCount() {
-        return rows.size();
+        return rowsCount;
     }
 
     /**
@@ -475,20 +927,69 @@ public class DataFrame {
         return columns.size();
     }
 
+    /**
+     * Prints this DataFrame as an aligned grid, like {@link #toString()}, with at most <code>maxRows</code> rows and
+     * <code>maxWidth</code> characters per line.
+     * <p>
+     * If there are more rows, the first and last ones are printed around a <code>... N more rows</code> line. Columns
+     * are printed from the left while the line fits, the others are counted in a <code>... N more columns</code> line,
+     * and the values of a column narrowed to the end of the line are cut. Only the printed values are read, and they
+     * are written directly to <code>out</code>, so a DataFrame of any size can be printed in bounded time and memory.
+     *
+     * @param out      where to print
+     * @param maxRows  the maximum number of rows printed
+     * @param maxWidth the maximum number of characters per line
+     * @throws IOException if <code>out</code> is not writable
+     */
+    public void print(Appendable out, int maxRows, int maxWidth) throws IOException {
+        new FramePrinter(this, maxRows, maxWidth).print(out);
+    }
+
+    /**
+     * Prints this DataFrame as an aligned grid of at most {@value FramePrinter#DEFAULT_MAX_ROWS} rows and
+     * {@value FramePrinter#DEFAULT_MAX_WIDTH} characters per line.
+     *
+     * @param out where to print
+     * @throws IOException if <code>out</code> is not writable
+     * @see #print(Appendable, int, int)
+     */
+    public void print(Appendable out) throws IOException {
+        print(out, FramePrinter.DEFAULT_MAX_ROWS, FramePrinter.DEFAULT_MAX_WIDTH);
+    }
+
+    /**
+     * @return this DataFrame as an aligned grid, truncated as by {@link #print(Appendable)}
+     */
     @Override
     public String toString() {
-        int rowsCount = rowsCount();
-        int colsCount = columnsCount();
-        String[][] matrix = new String[rowsCount + 1][colsCount];
-        for (int c = 0; c < colsCount; c++) {
-            matrix[0][c] = getColumn(c).getColName();
+        StringBuilder builder = new StringBuilder();
+        try {
+            print(builder);
+        } catch (IOException e) {
+            throw new AssertionError(e);  // a StringBuilder is always writable
         }
-        for (int r = 0; r < rowsCount; r++) {
-            DataRow row = getRow(r);
-            for (int c = 0; c < colsCount; c++) {
-                matrix[r + 1][c] = row.get(c).toString();
+        return builder.toString();
+    }
+
+    /**
+     * A row order computed from some columns, valid until one of them is written.
+     */
+    private static final class CachedOrder {
+        private final int[] order;
+        private final DataColumn[] columns;
+        private final int[] modCounts;
+
+        CachedOrder(int[] order, DataColumn[] columns, int[] modCounts) {
+            this.order = order;
+            this.columns = columns;
+            this.modCounts = modCounts;
+        }
+
+        boolean isValid() {
+            for (int c = 0; c < columns.length; c++) {
+                if (columns[c].modCount() != modCounts[c]) return false;
             }
+            return true;
         }
-        return Utility.toGridString(matrix, ", ");
     }
 }
@@ -0,0 +1,353 @@
+package data;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.DoublePredicate;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * A pipeline over the rows of a source too large to be loaded, processed one batch of rows at a time.
+ * <p>
+ * Batches are pulled from the source on demand, each batch is a DataFrame of up to {@link #DEFAULT_BATCH_ROWS} rows
+ * (or the batch size given to the source). Operations such as {@link #filter(String, DoublePredicate)},
+ * {@link #map(String, DoubleUnaryOperator)}, {@link #replaceNa(double)} and {@link #select(String...)} are applied to
+ * each batch when it is pulled, and a sink such as {@link #agg(List, Aggregation...)} or {@link #toCsv(Path)}
+ * consumes the batches one after the other. Only one batch is held at a time, so memory stays bounded by the batch
+ * size whatever the size of the source.
+ * <p>
+ * Each operation returns a new stream that reads from the same source, so only the last one should be used. A sink
+ * consumes the stream and closes its source.
+ */
+public final class DataFrameStream implements Closeable {
+
+    /**
+     * Number of rows per batch if not given.
+     */
+    public static final int DEFAULT_BATCH_ROWS = 1 << 16;
+
+    private final Source source;
+    private final UnaryOperator<DataFrame> stage;  // applied to every batch
+
+    private DataFrameStream(Source source, UnaryOperator<DataFrame> stage) {
+        this.source = source;
+        this.stage = stage;
+    }
+
+    /**
+     * Creates a stream of the rows of a csv file, see {@link DataFrame#fromCsv(File)}.
+     *
+     * @param csvFile .csv file
+     * @return the stream, batches of {@value #DEFAULT_BATCH_ROWS} rows
+     * @throws IOException if file not readable
+     */
+    public static DataFrameStream fromCsv(File csvFile) throws IOException {
+        return fromCsv(csvFile, null, null, DEFAULT_BATCH_ROWS);
+    }
+
+    /**
+     * Creates a stream of the rows accepted by <code>rowFilter</code> and the columns <code>columnNames</code> of a
+     * csv file, see {@link DataFrame#fromCsv(File, List, Predicate)}.
+     * <p>
+     * Rows are filtered and columns selected while reading, before any value is stored in a batch.
+     *
+     * @param csvFile     .csv file
+     * @param columnNames titles of columns to be loaded, in the order of the batches, or null for all columns
+     * @param rowFilter   the condition for a row to be loaded, or null for all rows
+     * @param batchRows   the maximum number of rows per batch
+     * @return the stream
+     * @throws IOException        if file not readable
+     * @throws DataFrameException if some column does not exist in the file
+     */
+    public static DataFrameStream fromCsv(File csvFile, List<String> columnNames, Predicate<CsvRow> rowFilter,
+                                          int batchRows) throws IOException {
+        if (batchRows <= 0) throw new IllegalArgumentException("Batch size must be positive: " + batchRows + ".");
+        CsvReader reader = new CsvReader(new FileInputStream(csvFile));
+        try {
+            CsvBatchReader batches = new CsvBatchReader(reader, columnNames, rowFilter);
+            return new DataFrameStream(new Source() {
+                private boolean started;
+
+                @Override
+                public DataFrame next() throws IOException {
+                    DataFrame batch = batches.next(batchRows);
+                    if (batch == null && !started) {  // an empty file still gives its titles
+                        batch = batches.emptyFrame();
+                    }
+                    started = true;
+                    return batch;
+                }
+
+                @Override
+                public void close() throws IOException {
+                    batches.close();
+                }
+            }, UnaryOperator.identity());
+        } catch (IOException | RuntimeException e) {
+            reader.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Creates a stream of the rows of a DataFrame, each batch being a view on it, see
+     * {@link DataFrame#viewByRowsRange(int, int)}.
+     *
+     * @param frame     the DataFrame
+     * @param batchRows the maximum number of rows per batch
+     * @return the stream
+     */
+    public static DataFrameStream of(DataFrame frame, int batchRows) {
+        if (batchRows <= 0) throw new IllegalArgumentException("Batch size must be positive: " + batchRows + ".");
+        return new DataFrameStream(new Source() {
+            private int from = -1;
+
+            @Override
+            public DataFrame next() {
+                if (from == frame.rowsCount()) return null;
+                if (from < 0) from = 0;  // an empty DataFrame still gives one batch
+                int to = (int) Math.min(frame.rowsCount(), (long) from + batchRows);
+                DataFrame batch = frame.viewByRowsRange(from, to);
+                from = to;
+                return batch;
+            }
+
+            @Override
+            public void close() {
+            }
+        }, UnaryOperator.identity());
+    }
+
+    private DataFrameStream then(UnaryOperator<DataFrame> next) {
+        return new DataFrameStream(source, batch -> next.apply(stage.apply(batch)));
+    }
+
+    /**
+     * Keeps the rows whose numeric value in a column satisfies <code>condition</code>.
+     *
+     * @param colName   title of the column
+     * @param condition the condition, given Double.NaN for values that are not numeric
+     * @return the filtered stream
+     */
+    public DataFrameStream filter(String colName, DoublePredicate condition) {
+        return then(batch -> {
+            double[] values = batch.getColumn(colName).numbers();
+            int size = batch.rowsCount();
+            int[] kept = new int[size];
+            int count = 0;
+            for (int r = 0; r < size; r++) {
+                if (condition.test(values[r])) kept[count++] = r;
+            }
+            return count == size ? batch : batch.viewByRows(Arrays.copyOf(kept, count));
+        });
+    }
+
+    /**
+     * Keeps the rows whose text in a column satisfies <code>condition</code>. The condition is tested once per
+     * distinct text of a textual column.
+     *
+     * @param colName   title of the column
+     * @param condition the condition, given an empty string for NA
+     * @return the filtered stream
+     */
+    public DataFrameStream filterText(String colName, Predicate<String> condition) {
+        return then(batch -> {
+            ColumnVector vector = batch.getColumn(colName).vector().materialize();
+            int size = vector.size();
+            int[] kept = new int[size];
+            int count = 0;
+            if (vector instanceof StringVector) {
+                StringVector strings = (StringVector) vector;
+                StringDictionary dictionary = strings.dictionary();
+                boolean[] accepted = new boolean[dictionary.size()];
+                for (int code = 0; code < accepted.length; code++) {
+                    accepted[code] = condition.test(dictionary.text(code));
+                }
+                boolean naAccepted = condition.test("");
+                for (int r = 0; r < size; r++) {
+                    int code = strings.getCode(r);
+                    if (code == StringVector.NA_CODE ? naAccepted : accepted[code]) kept[count++] = r;
+                }
+            } else {
+                for (int r = 0; r < size; r++) {
+                    if (condition.test(vector.getText(r))) kept[count++] = r;
+                }
+            }
+            return count == size ? batch : batch.viewByRows(Arrays.copyOf(kept, count));
+        });
+    }
+
+    /**
+     * Replaces the values of a numeric column by a function of them.
+     *
+     * @param colName  title of the column
+     * @param function the function, given Double.NaN for values that are not numeric, returns Double.NaN for NA
+     * @return the mapped stream
+     */
+    public DataFrameStream map(String colName, DoubleUnaryOperator function) {
+        return map(colName, colName, function);
+    }
+
+    /**
+     * Computes a numeric column from the values of another.
+     *
+     * @param colName    title of the column read
+     * @param newColName title of the computed column, which replaces the column with that title if any, otherwise is
+     *                   appended
+     * @param function   the function, given Double.NaN for values that are not numeric, returns Double.NaN for NA
+     * @return the mapped stream
+     */
+    public DataFrameStream map(String colName, String newColName, DoubleUnaryOperator function) {
+        return then(batch -> {
+            double[] values = batch.getColumn(colName).toNumberArray();
+            for (int r = 0; r < values.length; r++) values[r] = function.applyAsDouble(values[r]);
+            List<DataColumn> columns = new ArrayList<>();
+            for (int c = 0; c < batch.columnsCount(); c++) columns.add(batch.getColumn(c));
+            DataColumn mapped = new DataColumn(newColName.strip(), NumericVector.of(values));
+            int index = batch.indexOfColumn(newColName);
+            if (index < 0) columns.add(mapped);
+            else columns.set(index, mapped);
+            return DataFrame.fromColumns(columns, values.length);
+        });
+    }
+
+    /**
+     * Replaces all NA by <code>replacement</code>, see {@link DataFrame#replaceNa(double)}.
+     *
+     * @param replacement numeric replacement
+     * @return the replaced stream
+     */
+    public DataFrameStream replaceNa(double replacement) {
+        return then(batch -> batch.replaceNa(replacement));
+    }
+
+    /**
+     * Replaces all NA by <code>replacement</code>, see {@link DataFrame#replaceNa(String)}.
+     *
+     * @param replacement string replacement
+     * @return the replaced stream
+     */
+    public DataFrameStream replaceNa(String replacement) {
+        return then(batch -> batch.replaceNa(replacement));
+    }
+
+    /**
+     * Keeps only the columns <code>colNames</code>, in that order, see {@link DataFrame#viewByColumns(String...)}.
+     * <p>
+     * Columns not needed by the pipeline are better not loaded at all, see
+     * {@link #fromCsv(File, List, Predicate, int)}.
+     *
+     * @param colNames titles of the columns
+     * @return the projected stream
+     */
+    public DataFrameStream select(String... colNames) {
+        String[] names = colNames.clone();
+        return then(batch -> batch.viewByColumns(names));
+    }
+
+    /**
+     * Pulls the next batch through the pipeline.
+     *
+     * @return the next batch, which may have no rows, or null at the end of the source
+     * @throws IOException if the source is not readable
+     */
+    public DataFrame nextBatch() throws IOException {
+        DataFrame batch = source.next();
+        return batch == null ? null : stage.apply(batch);
+    }
+
+    /**
+     * Gives every batch to <code>action</code>, then closes this.
+     *
+     * @param action the action, must not keep the batches if memory is to stay bounded
+     * @throws IOException if the source is not readable
+     */
+    public void forEach(Consumer<DataFrame> action) throws IOException {
+        try (DataFrameStream stream = this) {
+            for (DataFrame batch = stream.nextBatch(); batch != null; batch = stream.nextBatch()) action.accept(batch);
+        }
+    }
+
+    /**
+     * Counts the rows, then closes this.
+     *
+     * @return the number of rows
+     * @throws IOException if the source is not readable
+     */
+    public long count() throws IOException {
+        long[] count = new long[1];
+        forEach(batch -> count[0] += batch.rowsCount());
+        return count[0];
+    }
+
+    /**
+     * Aggregates columns within groups of all rows, then closes this.
+     * <p>
+     * Each batch is aggregated as in {@link GroupedDataFrame#agg(Aggregation...)}, then merged into the totals of the
+     * groups seen so far, so only one row per group is kept. The result is the same as
+     * <code>frame.groupBy(keyNames).agg(aggregations)</code> on all rows at once, up to rounding.
+     *
+     * @param keyNames     titles of the key columns, empty for a single group of all rows
+     * @param aggregations the aggregations, see {@link Aggregation}
+     * @return a new DataFrame of the key columns followed by one column per aggregation, with one row per group, in
+     * order of first appearance
+     * @throws IOException        if the source is not readable
+     * @throws DataFrameException if a key or aggregated column is not found
+     */
+    public DataFrame agg(List<String> keyNames, Aggregation... aggregations) throws IOException {
+        BatchAggregator aggregator = new BatchAggregator(keyNames.toArray(new String[0]), aggregations);
+        forEach(aggregator::add);
+        return aggregator.result();
+    }
+
+    /**
+     * Writes all rows to a csv file, then closes this. The columns of the first batch give the title row.
+     *
+     * @param path the file, overwritten if exists
+     * @throws IOException        if the source is not readable or the file not writable
+     * @throws DataFrameException if a batch has other columns than the first one
+     */
+    public void toCsv(Path path) throws IOException {
+        try (DataFrameStream stream = this; CsvWriter writer = new CsvWriter(path)) {
+            List<String> titles = null;
+            for (DataFrame batch = stream.nextBatch(); batch != null; batch = stream.nextBatch()) {
+                if (titles == null) {
+                    titles = batch.getTitles();
+                    writer.writeTitles(titles);
+                } else if (!titles.equals(batch.getTitles())) {
+                    throw new DataFrameException("Batch has columns " + batch.getTitles() + " instead of " + titles
+                            + ".");
+                }
+                writer.writeRows(batch);
+            }
+        }
+    }
+
+    /**
+     * Closes the source.
+     *
+     * @throws IOException if the source cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        source.close();
+    }
+
+    /**
+     * Where batches are pulled from.
+     */
+    private interface Source extends Closeable {
+        /**
+         * @return the next batch, at least one even without rows, or null if none is left
+         */
+        DataFrame next() throws IOException;
+    }
+}
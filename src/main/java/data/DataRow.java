@@ -1,20 +1,61 @@
 package data;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
  * A data row.
+ * <p>
+ * Rows of a DataFrame are views on its columns, created on demand.
  */
 public class DataRow extends LinearDataList {
 
+    private final List<DataCell> cellList;
+
     /**
      * The constructor.
      *
      * @param cells list of cells in this row
      */
     public DataRow(List<DataCell> cells) {
-        super(cells);
+        this.cellList = cells;
+    }
+
+    /**
+     * Creates a view on row <code>row</code> of <code>columns</code>.
+     *
+     * @param columns the columns of a DataFrame
+     * @param row     the row index
+     * @return the row view
+     */
+    static DataRow view(List<DataColumn> columns, int row) {
+        return new DataRow(new AbstractList<>() {
+            @Override
+            public DataCell get(int index) {
+                return columns.get(index).get(row);
+            }
+
+            @Override
+            public int size() {
+                return columns.size();
+            }
+        }) {
+            @Override
+            boolean isNumberAt(int index) {
+                return columns.get(index).isNumberAt(row);
+            }
+
+            @Override
+            double numberAt(int index) {
+                return columns.get(index).numberAt(row);
+            }
+
+            @Override
+            boolean isNaAt(int index) {
+                return columns.get(index).isNaAt(row);
+            }
+        };
     }
 
     @Override
@@ -26,8 +67,18 @@ public class DataRow extends LinearDataList {
         return new DataRow(cells);
     }
 
+    @Override
+    public DataCell get(int index) {
+        return cellList.get(index);
+    }
+
+    @Override
+    public int size() {
+        return cellList.size();
+    }
+
     @Override
     public String toString() {
-        return "DataRow" + cellList.toString();
+        return "DataRow" + cellsString();
     }
 }
@@ -0,0 +1,106 @@
+package data;
+
+import java.io.IOException;
+
+/**
+ * Prints a DataFrame as an aligned grid, see {@link DataFrame#print(Appendable, int, int)}.
+ * <p>
+ * Only the printed rows are read: all rows if there are at most <code>maxRows</code>, otherwise the first and last
+ * ones around a <code>... N more rows</code> marker. Column widths are measured on those rows only, and columns are
+ * taken from the left while the line fits in <code>maxWidth</code>. The first column that does not fit is narrowed
+ * to the rest of the line, and its longer values are cut, as long as a few characters are left. Values are never cut
+ * otherwise. Nothing is collected before writing to the output, so printing a frame of any size takes time and memory
+ * bounded by <code>maxRows</code> and <code>maxWidth</code>.
+ */
+final class FramePrinter {
+
+    static final int DEFAULT_MAX_ROWS = 60;
+    static final int DEFAULT_MAX_WIDTH = 200;
+
+    private static final String SEPARATOR = ", ";
+    private static final String ELLIPSIS = "...";
+
+    private final DataFrame frame;
+    private final int head;
+    private final int tail;
+    private final int columnsCount;  // columns that fit
+    private final int[] widths;
+
+    FramePrinter(DataFrame frame, int maxRows, int maxWidth) {
+        if (maxRows < 0) throw new IllegalArgumentException("Maximum rows must not be negative: " + maxRows + ".");
+        if (maxWidth <= 0) throw new IllegalArgumentException("Maximum width must be positive: " + maxWidth + ".");
+        this.frame = frame;
+        int rowsCount = frame.rowsCount();
+        head = rowsCount <= maxRows ? rowsCount : (maxRows + 1) / 2;
+        tail = rowsCount <= maxRows ? 0 : maxRows / 2;
+
+        widths = new int[frame.columnsCount()];
+        int lineWidth = 0;
+        int fitting = 0;
+        for (int c = 0; c < widths.length; c++) {
+            int width = frame.getColumn(c).getColName().length();
+            ColumnVector vector = frame.getColumn(c).vector();
+            for (int i = 0; i < head + tail; i++) width = Math.max(width, text(vector, row(i)).length());
+            int space = c == 0 ? maxWidth : maxWidth - lineWidth - SEPARATOR.length();
+            if (width <= space) {
+                widths[c] = width;
+                lineWidth += (c == 0 ? 0 : SEPARATOR.length()) + width;
+                fitting++;
+                continue;
+            }
+            if (c == 0 || space > ELLIPSIS.length()) {  // narrowed to the rest of the line, the last column printed
+                widths[c] = space;
+                fitting++;
+            }
+            break;
+        }
+        columnsCount = fitting;
+    }
+
+    /**
+     * @return the row of the <code>i</code>-th printed row
+     */
+    private int row(int i) {
+        return i < head ? i : frame.rowsCount() - tail + (i - head);
+    }
+
+    private static String text(ColumnVector vector, int row) {
+        return vector.isNa(row) ? "NA" : vector.getText(row);
+    }
+
+    /**
+     * @return <code>text</code>, cut with an ellipsis if longer than the width of column <code>c</code>
+     */
+    private String cell(int c, String text) {
+        if (text.length() <= widths[c]) return text;
+        if (widths[c] <= ELLIPSIS.length()) return text.substring(0, widths[c]);
+        return text.substring(0, widths[c] - ELLIPSIS.length()) + ELLIPSIS;
+    }
+
+    void print(Appendable out) throws IOException {
+        for (int c = 0; c < columnsCount; c++) printCell(out, c, frame.getColumn(c).getColName());
+        out.append('\n');
+        ColumnVector[] vectors = new ColumnVector[columnsCount];
+        for (int c = 0; c < columnsCount; c++) vectors[c] = frame.getColumn(c).vector();
+        for (int i = 0; i < head; i++) printRow(out, vectors, row(i));
+        int hiddenRows = frame.rowsCount() - head - tail;
+        if (hiddenRows > 0) out.append(ELLIPSIS).append(' ').append(String.valueOf(hiddenRows)).append(" more rows\n");
+        for (int i = head; i < head + tail; i++) printRow(out, vectors, row(i));
+        int hiddenColumns = frame.columnsCount() - columnsCount;
+        if (hiddenColumns > 0) {
+            out.append(ELLIPSIS).append(' ').append(String.valueOf(hiddenColumns)).append(" more columns\n");
+        }
+    }
+
+    private void printRow(Appendable out, ColumnVector[] vectors, int row) throws IOException {
+        for (int c = 0; c < columnsCount; c++) printCell(out, c, text(vectors[c], row));
+        out.append('\n');
+    }
+
+    private void printCell(Appendable out, int c, String text) throws IOException {
+        text = cell(c, text);
+        out.append(text);
+        for (int i = text.length(); i < widths[c]; i++) out.append(' ');
+        if (c != columnsCount - 1) out.append(SEPARATOR);
+    }
+}
@@ -0,0 +1,343 @@
+package data;
+
+import java.util.Arrays;
+
+/**
+ * The state of one {@link Aggregation} for every group, held in primitive arrays indexed by group.
+ * <p>
+ * An aggregator accumulates a range of rows, so several aggregators of the same aggregation can accumulate disjoint
+ * ranges in parallel and then be merged. Aggregators of different DataFrames can be merged too, through a mapping of
+ * their groups, see {@link BatchAggregator}.
+ */
+abstract class GroupAggregator {
+
+    final int groupsCount;
+
+    GroupAggregator(int groupsCount) {
+        this.groupsCount = groupsCount;
+    }
+
+    /**
+     * @param aggregation the aggregation
+     * @param vector      the aggregated column, null for {@link Aggregation#count()}
+     * @param values      the numeric values of <code>vector</code>, NaN if not numeric, null if not needed
+     * @param groupsCount number of groups
+     * @return an empty aggregator
+     */
+    static GroupAggregator create(Aggregation aggregation, ColumnVector vector, double[] values, int groupsCount) {
+        switch (aggregation.kind()) {
+            case COUNT_ROWS:
+                return new Count(null, groupsCount);
+            case COUNT:
+                return new Count(vector, groupsCount);
+            case SUM:
+                return new Sum(values, groupsCount, false);
+            case MEAN:
+                return new Sum(values, groupsCount, true);
+            case MIN:
+                return new Extreme(values, groupsCount, false);
+            case MAX:
+                return new Extreme(values, groupsCount, true);
+            case VARIANCE:
+                return new Variance(values, groupsCount);
+            case N_DISTINCT:
+                return new Distinct(vector, groupsCount);
+            default:
+                throw new AssertionError(aggregation.kind());
+        }
+    }
+
+    /**
+     * @return whether the aggregation reads numeric values
+     */
+    static boolean needsValues(Aggregation aggregation) {
+        switch (aggregation.kind()) {
+            case SUM:
+            case MEAN:
+            case MIN:
+            case MAX:
+            case VARIANCE:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @param groupOfRow the group of each row
+     * @param from       beginning row, inclusive
+     * @param to         ending row, exclusive
+     */
+    abstract void accumulate(int[] groupOfRow, int from, int to);
+
+    /**
+     * @param other  an aggregator of the same aggregation over other rows
+     * @param groups the group of this for each group of <code>other</code>, or null for the same groups
+     */
+    abstract void merge(GroupAggregator other, int[] groups);
+
+    /**
+     * Replaces the values kept by this with their canonical words, see {@link BatchAggregator#canonicalWords}, so
+     * that this can be merged with aggregators of other DataFrames.
+     *
+     * @param texts the canonical codes of non-numeric texts
+     */
+    void canonicalize(StringDictionary texts) {
+    }
+
+    /**
+     * @return the result of each group, NaN for NA
+     */
+    abstract double[] result();
+
+    private static final class Count extends GroupAggregator {
+        private final ColumnVector vector;
+        private final double[] counts;
+
+        Count(ColumnVector vector, int groupsCount) {
+            super(groupsCount);
+            this.vector = vector;
+            this.counts = new double[groupsCount];
+        }
+
+        @Override
+        void accumulate(int[] groupOfRow, int from, int to) {
+            for (int r = from; r < to; r++) {
+                if (vector == null || !vector.isNa(r)) counts[groupOfRow[r]]++;
+            }
+        }
+
+        @Override
+        void merge(GroupAggregator other, int[] groups) {
+            double[] otherCounts = ((Count) other).counts;
+            for (int g = 0; g < otherCounts.length; g++) counts[groups == null ? g : groups[g]] += otherCounts[g];
+        }
+
+        @Override
+        double[] result() {
+            return counts;
+        }
+    }
+
+    private static final class Sum extends GroupAggregator {
+        private final double[] values;
+        private final boolean mean;
+        private final double[] sums;
+        private final long[] counts;
+
+        Sum(double[] values, int groupsCount, boolean mean) {
+            super(groupsCount);
+            this.values = values;
+            this.mean = mean;
+            this.sums = new double[groupsCount];
+            this.counts = new long[groupsCount];
+        }
+
+        @Override
+        void accumulate(int[] groupOfRow, int from, int to) {
+            for (int r = from; r < to; r++) {
+                double value = values[r];
+                if (value != value) continue;  // NaN
+                int g = groupOfRow[r];
+                sums[g] += value;
+                counts[g]++;
+            }
+        }
+
+        @Override
+        void merge(GroupAggregator other, int[] groups) {
+            Sum sum = (Sum) other;
+            for (int g = 0; g < sum.groupsCount; g++) {
+                int group = groups == null ? g : groups[g];
+                sums[group] += sum.sums[g];
+                counts[group] += sum.counts[g];
+            }
+        }
+
+        @Override
+        double[] result() {
+            if (!mean) return sums;
+            double[] means = new double[groupsCount];
+            for (int g = 0; g < groupsCount; g++) means[g] = counts[g] == 0 ? Double.NaN : sums[g] / counts[g];
+            return means;
+        }
+    }
+
+    private static final class Extreme extends GroupAggregator {
+        private final double[] values;
+        private final boolean max;
+        private final double[] extremes;
+
+        Extreme(double[] values, int groupsCount, boolean max) {
+            super(groupsCount);
+            this.values = values;
+            this.max = max;
+            this.extremes = new double[groupsCount];
+            Arrays.fill(extremes, Double.NaN);  // NaN until the first value
+        }
+
+        @Override
+        void accumulate(int[] groupOfRow, int from, int to) {
+            for (int r = from; r < to; r++) {
+                double value = values[r];
+                if (value != value) continue;
+                update(groupOfRow[r], value);
+            }
+        }
+
+        private void update(int g, double value) {
+            double extreme = extremes[g];
+            if (extreme != extreme || (max ? value > extreme : value < extreme)) extremes[g] = value;
+        }
+
+        @Override
+        void merge(GroupAggregator other, int[] groups) {
+            double[] otherExtremes = ((Extreme) other).extremes;
+            for (int g = 0; g < otherExtremes.length; g++) {
+                if (otherExtremes[g] == otherExtremes[g]) update(groups == null ? g : groups[g], otherExtremes[g]);
+            }
+        }
+
+        @Override
+        double[] result() {
+            return extremes;
+        }
+    }
+
+    /**
+     * Welford's update within a range, and Chan's pairwise update between ranges.
+     */
+    private static final class Variance extends GroupAggregator {
+        private final double[] values;
+        private final long[] counts;
+        private final double[] means;
+        private final double[] m2s;  // sums of squared deviations from the mean
+
+        Variance(double[] values, int groupsCount) {
+            super(groupsCount);
+            this.values = values;
+            this.counts = new long[groupsCount];
+            this.means = new double[groupsCount];
+            this.m2s = new double[groupsCount];
+        }
+
+        @Override
+        void accumulate(int[] groupOfRow, int from, int to) {
+            for (int r = from; r < to; r++) {
+                double value = values[r];
+                if (value != value) continue;
+                int g = groupOfRow[r];
+                long n = ++counts[g];
+                double diff = value - means[g];
+                means[g] += diff / n;
+                m2s[g] += diff * (value - means[g]);
+            }
+        }
+
+        @Override
+        void merge(GroupAggregator other, int[] groups) {
+            Variance variance = (Variance) other;
+            for (int g = 0; g < variance.groupsCount; g++) {
+                long otherN = variance.counts[g];
+                if (otherN == 0) continue;
+                int group = groups == null ? g : groups[g];
+                long total = counts[group] + otherN;
+                double diff = variance.means[g] - means[group];
+                m2s[group] += variance.m2s[g] + diff * diff * ((double) counts[group] * otherN / total);
+                means[group] += diff * otherN / total;
+                counts[group] = total;
+            }
+        }
+
+        @Override
+        double[] result() {
+            double[] variances = new double[groupsCount];
+            for (int g = 0; g < groupsCount; g++) variances[g] = counts[g] < 2 ? Double.NaN : m2s[g] / (counts[g] - 1);
+            return variances;
+        }
+    }
+
+    /**
+     * An open-addressing set of (group, value) pairs, values being the key words of
+     * {@link GroupedDataFrame.KeyTable#keyWord(ColumnVector, int)}.
+     */
+    private static final class Distinct extends GroupAggregator {
+        private final ColumnVector vector;
+        private int[] groups = new int[ColumnVector.DEFAULT_CAPACITY];
+        private long[] words = new long[ColumnVector.DEFAULT_CAPACITY];
+        private int[] table = new int[ColumnVector.DEFAULT_CAPACITY * 2];  // entry + 1, 0 means empty slot
+        private int size;
+
+        Distinct(ColumnVector vector, int groupsCount) {
+            super(groupsCount);
+            this.vector = vector;
+        }
+
+        @Override
+        void accumulate(int[] groupOfRow, int from, int to) {
+            for (int r = from; r < to; r++) {
+                if (!vector.isNa(r)) add(groupOfRow[r], GroupedDataFrame.KeyTable.keyWord(vector, r));
+            }
+        }
+
+        private void add(int group, long word) {
+            int hash = 31 * group + (int) (word ^ (word >>> 32));
+            int mask = table.length - 1;
+            for (int slot = mix(hash) & mask; ; slot = (slot + 1) & mask) {
+                int entry = table[slot] - 1;
+                if (entry < 0) {
+                    if (size == groups.length) {
+                        groups = Arrays.copyOf(groups, ColumnVector.grownCapacity(size));
+                        words = Arrays.copyOf(words, groups.length);
+                    }
+                    groups[size] = group;
+                    words[size] = word;
+                    table[slot] = ++size;
+                    if (size * 2 > table.length) rehash(table.length * 2);
+                    return;
+                }
+                if (groups[entry] == group && words[entry] == word) return;
+            }
+        }
+
+        private void rehash(int capacity) {
+            table = new int[capacity];
+            int mask = table.length - 1;
+            for (int entry = 0; entry < size; entry++) {
+                int hash = 31 * groups[entry] + (int) (words[entry] ^ (words[entry] >>> 32));
+                int slot = mix(hash) & mask;
+                while (table[slot] != 0) slot = (slot + 1) & mask;
+                table[slot] = entry + 1;
+            }
+        }
+
+        private static int mix(int hash) {
+            hash *= 0x9E3779B1;
+            return hash ^ (hash >>> 16);
+        }
+
+        @Override
+        void merge(GroupAggregator other, int[] groups) {
+            Distinct distinct = (Distinct) other;
+            for (int entry = 0; entry < distinct.size; entry++) {
+                int group = distinct.groups[entry];
+                add(groups == null ? group : groups[group], distinct.words[entry]);
+            }
+        }
+
+        @Override
+        void canonicalize(StringDictionary texts) {
+            if (!(vector instanceof StringVector)) return;  // words of numbers are already canonical
+            long[] codeWords = BatchAggregator.canonicalWords(((StringVector) vector).dictionary(), texts);
+            for (int entry = 0; entry < size; entry++) words[entry] = codeWords[(int) words[entry]];
+            rehash(table.length);
+        }
+
+        @Override
+        double[] result() {
+            double[] counts = new double[groupsCount];
+            for (int entry = 0; entry < size; entry++) counts[groups[entry]]++;
+            return counts;
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * The rows of a DataFrame partitioned by the values of some key columns, see {@link DataFrame#groupBy(String...)}.
+ * <p>
+ * Rows are partitioned in one pass: the key of each row is read as primitive words (dictionary key codes of text
+ * columns, bits of numbers of numeric columns) and looked up in an open-addressing hash table of the groups. Row
+ * indexes are then laid out group after group in a single array, nothing of the DataFrame is copied.
+ * <p>
+ * Groups are numbered in order of their first row. NA is a key value like any other. Numbers are the same key if they
+ * are equal, 0.0 and -0.0 included, and texts if they have the same text. A number and a non-numeric text are
+ * different keys, so a quoted csv field <code>"1"</code> is not in the group of the number 1, see
+ * {@link StringDictionary#keyCode(int)}.
+ */
+public final class GroupedDataFrame {
+
+    private static final int PARALLEL_ROWS = 1 << 16;  // fewer rows are aggregated sequentially
+
+    private final DataFrame frame;
+    private final String[] keyNames;
+    private final int groupsCount;
+    private final int[] groupOfRow;
+    private final int[] offsets;  // rows of group g are rows[offsets[g]] to rows[offsets[g + 1] - 1]
+    private final int[] rows;
+    private final int[] firstRows;
+
+    GroupedDataFrame(DataFrame frame, String... keyNames) {
+        this.frame = frame;
+        this.keyNames = keyNames.clone();
+        int rowsCount = frame.rowsCount();
+
+        KeyTable table = new KeyTable(keyVectors(frame, keyNames));
+        groupOfRow = new int[rowsCount];
+        for (int r = 0; r < rowsCount; r++) groupOfRow[r] = table.groupOf(r);
+        groupsCount = table.size();
+        firstRows = table.firstRows();
+
+        offsets = new int[groupsCount + 1];
+        for (int group : groupOfRow) offsets[group + 1]++;
+        for (int g = 0; g < groupsCount; g++) offsets[g + 1] += offsets[g];
+        rows = new int[rowsCount];
+        int[] next = Arrays.copyOf(offsets, groupsCount);
+        for (int r = 0; r < rowsCount; r++) rows[next[groupOfRow[r]]++] = r;
+    }
+
+    private static ColumnVector[] keyVectors(DataFrame frame, String... keyNames) {
+        ColumnVector[] vectors = new ColumnVector[keyNames.length];
+        for (int k = 0; k < keyNames.length; k++) {
+            vectors[k] = frame.getColumn(keyNames[k]).vector().materialize();
+        }
+        return vectors;
+    }
+
+    /**
+     * @return the number of groups
+     */
+    public int groupsCount() {
+        return groupsCount;
+    }
+
+    /**
+     * @return a new DataFrame of the key columns, with one row per group, in group order
+     */
+    public DataFrame keys() {
+        return frame.viewByColumns(keyNames).subFrameByRows(firstRows);
+    }
+
+    /**
+     * @param group the group, starts from 0
+     * @return indexes of the rows of <code>group</code>, in ascending order
+     */
+    public int[] rowIndexes(int group) {
+        return Arrays.copyOfRange(rows, offsets[group], offsets[group + 1]);
+    }
+
+    /**
+     * @param group the group, starts from 0
+     * @return the number of rows of <code>group</code>
+     */
+    public int groupSize(int group) {
+        return offsets[group + 1] - offsets[group];
+    }
+
+    /**
+     * Returns the rows of a group, as a view that shares the storage of the grouped DataFrame, see
+     * {@link DataFrame#viewByRows(int...)}.
+     *
+     * @param group the group, starts from 0
+     * @return the rows of <code>group</code>
+     */
+    public DataFrame group(int group) {
+        return frame.viewByRows(rowIndexes(group));
+    }
+
+    /**
+     * Aggregates columns within each group.
+     * <p>
+     * Each aggregation keeps its state in primitive arrays indexed by group, and reads every row once. Above
+     * {@value #PARALLEL_ROWS} rows, the rows are split into ranges that are aggregated in parallel, each into its own
+     * arrays, which are merged at the end.
+     *
+     * @param aggregations the aggregations, see {@link Aggregation}
+     * @return a new DataFrame of the key columns followed by one column per aggregation, with one row per group, in
+     * group order
+     * @throws DataFrameException if an aggregated column is not found
+     */
+    public DataFrame agg(Aggregation... aggregations) {
+        GroupAggregator[] results = aggregate(aggregations);
+        List<DataColumn> columns = new ArrayList<>();
+        DataFrame keys = keys();
+        for (int c = 0; c < keys.columnsCount(); c++) columns.add(keys.getColumn(c));
+        for (int a = 0; a < aggregations.length; a++) {
+            columns.add(DataColumn.of(aggregations[a].outputName(), results[a].result()));
+        }
+        return DataFrame.fromColumns(columns);
+    }
+
+    /**
+     * @return the aggregators of <code>aggregations</code> over all rows, see {@link #agg(Aggregation...)}
+     */
+    GroupAggregator[] aggregate(Aggregation... aggregations) {
+        int rowsCount = frame.rowsCount();
+        ColumnVector[] vectors = new ColumnVector[aggregations.length];
+        double[][] values = new double[aggregations.length][];
+        for (int a = 0; a < aggregations.length; a++) {
+            String colName = aggregations[a].colName();
+            if (colName == null) continue;
+            DataColumn column = frame.getColumn(colName);
+            vectors[a] = column.vector().materialize();
+            if (GroupAggregator.needsValues(aggregations[a])) values[a] = column.numbers();
+        }
+
+        int ranges = rowsCount < PARALLEL_ROWS ? 1 : Math.min(ForkJoinPool.getCommonPoolParallelism(),
+                rowsCount / (PARALLEL_ROWS / 4));
+        return IntStream.range(0, ranges).parallel().mapToObj(range -> {
+            int from = (int) ((long) rowsCount * range / ranges);
+            int to = (int) ((long) rowsCount * (range + 1) / ranges);
+            GroupAggregator[] partials = new GroupAggregator[aggregations.length];
+            for (int a = 0; a < aggregations.length; a++) {
+                partials[a] = GroupAggregator.create(aggregations[a], vectors[a], values[a], groupsCount);
+                partials[a].accumulate(groupOfRow, from, to);
+            }
+            return partials;
+        }).reduce((left, right) -> {
+            for (int a = 0; a < left.length; a++) left[a].merge(right[a], null);
+            return left;
+        }).orElseThrow();
+    }
+
+    /**
+     * @return the grouped DataFrame
+     */
+    public DataFrame frame() {
+        return frame;
+    }
+
+    /**
+     * @return titles of the key columns
+     */
+    public List<String> keyNames() {
+        return List.of(keyNames);
+    }
+
+    /**
+     * @return the group of each row. Must not be modified.
+     */
+    int[] groupOfRow() {
+        return groupOfRow;
+    }
+
+    /**
+     * @return the first row of each group. Must not be modified.
+     */
+    int[] firstRows() {
+        return firstRows;
+    }
+
+    /**
+     * An open-addressing hash table from the key of a row to its group.
+     */
+    static final class KeyTable {
+        private final ColumnVector[] vectors;
+        private final int width;
+        private final long[] rowKey;
+        private long[] keys;  // width words per group
+        private int[] hashes;
+        private int[] firstRows;
+        private int[] table;  // group + 1, 0 means empty slot
+        private int size;
+
+        KeyTable(ColumnVector[] vectors) {
+            this.vectors = vectors;
+            this.width = vectors.length;
+            this.rowKey = new long[width];
+            this.keys = new long[ColumnVector.DEFAULT_CAPACITY * width];
+            this.hashes = new int[ColumnVector.DEFAULT_CAPACITY];
+            this.firstRows = new int[ColumnVector.DEFAULT_CAPACITY];
+            this.table = new int[ColumnVector.DEFAULT_CAPACITY * 2];
+        }
+
+        /**
+         * @return the group of the key at <code>row</code>, a new group if the key is new
+         */
+        int groupOf(int row) {
+            for (int k = 0; k < width; k++) rowKey[k] = keyWord(vectors[k], row);
+            return groupOf(rowKey, row);
+        }
+
+        /**
+         * @param key the words of a key, one per key vector
+         * @param row the first row of a new group
+         * @return the group of <code>key</code>, a new group if the key is new
+         */
+        int groupOf(long[] key, int row) {
+            int hash = 1;
+            for (long word : key) hash = 31 * hash + (int) (word ^ (word >>> 32));
+            int mask = table.length - 1;
+            for (int slot = mix(hash) & mask; ; slot = (slot + 1) & mask) {
+                int group = table[slot] - 1;
+                if (group < 0) return add(slot, key, row, hash);
+                if (hashes[group] == hash && sameKey(group, key)) return group;
+            }
+        }
+
+        private boolean sameKey(int group, long[] key) {
+            for (int k = 0; k < width; k++) {
+                if (keys[group * width + k] != key[k]) return false;
+            }
+            return true;
+        }
+
+        private int add(int slot, long[] key, int row, int hash) {
+            if (size == hashes.length) {
+                int capacity = ColumnVector.grownCapacity(size);
+                keys = Arrays.copyOf(keys, capacity * width);
+                hashes = Arrays.copyOf(hashes, capacity);
+                firstRows = Arrays.copyOf(firstRows, capacity);
+            }
+            int group = size++;
+            System.arraycopy(key, 0, keys, group * width, width);
+            hashes[group] = hash;
+            firstRows[group] = row;
+            table[slot] = group + 1;
+            if (size * 2 > table.length) rehash();
+            return group;
+        }
+
+        private void rehash() {
+            table = new int[table.length * 2];
+            int mask = table.length - 1;
+            for (int group = 0; group < size; group++) {
+                int slot = mix(hashes[group]) & mask;
+                while (table[slot] != 0) slot = (slot + 1) & mask;
+                table[slot] = group + 1;
+            }
+        }
+
+        int size() {
+            return size;
+        }
+
+        int[] firstRows() {
+            return Arrays.copyOf(firstRows, size);
+        }
+
+        /**
+         * @return a word identifying the value at <code>row</code> within its vector
+         */
+        static long keyWord(ColumnVector vector, int row) {
+            if (vector instanceof StringVector) {
+                StringVector strings = (StringVector) vector;
+                int code = strings.getCode(row);
+                return code == StringVector.NA_CODE ? code : strings.dictionary().keyCode(code);
+            }
+            if (vector.isNa(row)) return 0x7ff8000000000000L;  // canonical NaN
+            double number = vector.getNumber(row);
+            return Double.doubleToLongBits(number == 0.0 ? 0.0 : number);  // -0.0 and 0.0 are equal
+        }
+
+        private static int mix(int hash) {
+            hash *= 0x9E3779B1;
+            return hash ^ (hash >>> 16);
+        }
+    }
+}
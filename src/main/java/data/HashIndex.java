@@ -0,0 +1,46 @@
+package data;
+
+import java.util.Arrays;
+
+/**
+ * An equality index of a textual column: the rows of each dictionary key code, laid out code after code.
+ * <p>
+ * The dictionary is already a hash table from values to codes, so a lookup is one probe of the dictionary and one
+ * copy of the rows of that code. Numbers are looked up by value, so every numeric entry equal to the number matches,
+ * -0.0 and 0.0 included, see {@link StringDictionary#keyCode(int)}.
+ */
+final class HashIndex {
+
+    private final StringDictionary dictionary;
+    private final int[] offsets;  // rows of key code c are rows[offsets[c + 1]] to rows[offsets[c + 2] - 1], NA first
+    private final int[] rows;
+
+    HashIndex(StringVector vector) {
+        this.dictionary = vector.dictionary();
+        int size = vector.size();
+        offsets = new int[dictionary.size() + 2];
+        int[] keys = new int[size];
+        for (int r = 0; r < size; r++) {
+            int code = vector.getCode(r);
+            keys[r] = code == StringVector.NA_CODE ? code : dictionary.keyCode(code);
+            offsets[keys[r] + 2]++;
+        }
+        for (int c = 1; c < offsets.length; c++) offsets[c] += offsets[c - 1];
+        rows = new int[size];
+        int[] next = Arrays.copyOf(offsets, offsets.length - 1);
+        for (int r = 0; r < size; r++) rows[next[keys[r] + 1]++] = r;
+    }
+
+    /**
+     * @param text   the text, empty for NA
+     * @param number the numeric value of <code>text</code>, or Double.NaN if not numeric
+     * @return indexes of the rows holding that value, in ascending order
+     */
+    int[] rowsOf(String text, double number) {
+        int code = text.isEmpty() ? StringVector.NA_CODE
+                : Double.isNaN(number) ? dictionary.find(text, number) : dictionary.findNumber(number);
+        boolean absent = code == StringVector.NA_CODE && !text.isEmpty();
+        if (absent || code + 2 >= offsets.length) return new int[0];  // codes added later are in no indexed row
+        return Arrays.copyOfRange(rows, offsets[code + 1], offsets[code + 2]);
+    }
+}
@@ -0,0 +1,252 @@
+package data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Matches the rows of two DataFrames by the values of key columns, then gathers the columns of the matched rows.
+ * <p>
+ * Keys of both sides are encoded together into comparable primitive words, see {@link RowOrder}. If both sides are
+ * already sorted by key, or have cached their sorted order by key (see {@link DataFrame#sortBy(SortKey...)}), they
+ * are merged in one pass. Otherwise the smaller side is put into an open-addressing hash table that the other side
+ * probes, unless it has more than {@value #HASH_BUILD_ROWS} rows: then both sides are radix sorted and merged. NA is
+ * a key value like any other, as in {@link DataFrame#groupBy(String...)}.
+ * <p>
+ * Whichever the strategy, the result has the rows in the same order: in order of left rows, each with its matches in
+ * order of right rows, then the unmatched right rows in order.
+ */
+final class Join {
+
+    static final int HASH_BUILD_ROWS = 1 << 22;  // larger build sides are sort-merged
+
+    enum Strategy {
+        AUTO, HASH, MERGE
+    }
+
+    private final long[][] leftWords;  // [word][row]
+    private final long[][] rightWords;
+    private final int leftRows;
+    private final int rightRows;
+    private final boolean[] rightMatched;
+    private int[] lefts = new int[ColumnVector.DEFAULT_CAPACITY];  // matched pairs, in any order
+    private int[] rights = new int[ColumnVector.DEFAULT_CAPACITY];
+    private int size;
+
+    private Join(long[][] leftWords, int leftRows, long[][] rightWords, int rightRows) {
+        this.leftWords = leftWords;
+        this.rightWords = rightWords;
+        this.leftRows = leftRows;
+        this.rightRows = rightRows;
+        this.rightMatched = new boolean[rightRows];
+    }
+
+    static DataFrame join(DataFrame left, DataFrame right, JoinType type, Strategy strategy, String... keyNames) {
+        if (keyNames.length == 0) throw new DataFrameException("Cannot join on 0 columns.");
+        ColumnVector[] leftKeys = new ColumnVector[keyNames.length];
+        ColumnVector[] rightKeys = new ColumnVector[keyNames.length];
+        for (int k = 0; k < keyNames.length; k++) {
+            leftKeys[k] = left.getColumn(keyNames[k]).vector();
+            rightKeys[k] = right.getColumn(keyNames[k]).vector();
+        }
+        long[][][] words = RowOrder.encode(leftKeys, rightKeys);
+        Join join = new Join(words[0], left.rowsCount(), words[1], right.rowsCount());
+
+        SortKey[] ascending = new SortKey[keyNames.length];
+        for (int k = 0; k < keyNames.length; k++) ascending[k] = SortKey.asc(keyNames[k]);
+        int[] leftOrder = left.cachedSortedOrder(ascending);
+        int[] rightOrder = right.cachedSortedOrder(ascending);
+        boolean sorted = strategy != Strategy.HASH
+                && RowOrder.isSorted(words[0], join.leftRows) && RowOrder.isSorted(words[1], join.rightRows);
+        if (sorted) {
+            join.merge(null, null);
+        } else if (strategy != Strategy.HASH && leftOrder != null && rightOrder != null) {
+            join.merge(leftOrder, rightOrder);
+        } else if (strategy == Strategy.HASH
+                || strategy == Strategy.AUTO && Math.min(join.leftRows, join.rightRows) <= HASH_BUILD_ROWS) {
+            join.hash(join.leftRows < join.rightRows);
+        } else {
+            join.merge(left.sortedOrder(ascending), right.sortedOrder(ascending));
+        }
+        int[][] indexes = join.indexes(type);
+        return gather(left, right, keyNames, leftKeys, rightKeys, indexes[0], indexes[1]);
+    }
+
+    private void match(int left, int right) {
+        if (size == lefts.length) {
+            lefts = Arrays.copyOf(lefts, ColumnVector.grownCapacity(size));
+            rights = Arrays.copyOf(rights, lefts.length);
+        }
+        lefts[size] = left;
+        rights[size++] = right;
+        rightMatched[right] = true;
+    }
+
+    /**
+     * Builds a hash table of one side, chaining the rows of each key in ascending order, and probes it with the
+     * other side.
+     */
+    private void hash(boolean buildLeft) {
+        long[][] build = buildLeft ? leftWords : rightWords;
+        long[][] probe = buildLeft ? rightWords : leftWords;
+        int buildRows = buildLeft ? leftRows : rightRows;
+        int probeRows = buildLeft ? rightRows : leftRows;
+
+        int[] table = new int[Math.max(ColumnVector.DEFAULT_CAPACITY, Integer.highestOneBit(buildRows) << 2)];
+        int mask = table.length - 1;
+        int[] heads = new int[buildRows];  // first row of each key, table holds key + 1
+        int[] next = new int[buildRows];  // next row with the same key, -1 for none
+        int keys = 0;
+        for (int row = buildRows - 1; row >= 0; row--) {
+            int slot = hash(build, row) & mask;
+            while (table[slot] != 0 && RowOrder.compare(build, heads[table[slot] - 1], build, row) != 0) {
+                slot = (slot + 1) & mask;
+            }
+            if (table[slot] == 0) {
+                table[slot] = ++keys;
+                next[row] = -1;
+            } else {
+                next[row] = heads[table[slot] - 1];
+            }
+            heads[table[slot] - 1] = row;
+        }
+
+        for (int row = 0; row < probeRows; row++) {
+            int slot = hash(probe, row) & mask;
+            while (table[slot] != 0) {
+                int head = heads[table[slot] - 1];
+                if (RowOrder.compare(build, head, probe, row) == 0) {
+                    for (int b = head; b >= 0; b = next[b]) {
+                        if (buildLeft) match(b, row);
+                        else match(row, b);
+                    }
+                    break;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+    }
+
+    private static int hash(long[][] words, int row) {
+        int hash = 1;
+        for (long[] column : words) hash = 31 * hash + (int) (column[row] ^ (column[row] >>> 32));
+        hash *= 0x9E3779B1;
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Merges both sides in order of their keys.
+     *
+     * @param leftOrder  the sorted order of left rows, null if already sorted
+     * @param rightOrder the sorted order of right rows, null if already sorted
+     */
+    private void merge(int[] leftOrder, int[] rightOrder) {
+        int i = 0;
+        int j = 0;
+        while (i < leftRows && j < rightRows) {
+            int result = RowOrder.compare(leftWords, at(leftOrder, i), rightWords, at(rightOrder, j));
+            if (result < 0) {
+                i++;
+            } else if (result > 0) {
+                j++;
+            } else {
+                int leftEnd = i + 1;
+                while (leftEnd < leftRows
+                        && RowOrder.compare(leftWords, at(leftOrder, leftEnd), leftWords, at(leftOrder, i)) == 0) {
+                    leftEnd++;
+                }
+                int rightEnd = j + 1;
+                while (rightEnd < rightRows && RowOrder.compare(rightWords, at(rightOrder, rightEnd),
+                        rightWords, at(rightOrder, j)) == 0) {
+                    rightEnd++;
+                }
+                for (int a = i; a < leftEnd; a++) {
+                    for (int b = j; b < rightEnd; b++) match(at(leftOrder, a), at(rightOrder, b));
+                }
+                i = leftEnd;
+                j = rightEnd;
+            }
+        }
+    }
+
+    private static int at(int[] order, int i) {
+        return order == null ? i : order[i];
+    }
+
+    /**
+     * Lays out the matched pairs in order of left rows with a counting sort, which keeps the order of the matches
+     * of each left row, and adds the unmatched rows that <code>type</code> keeps.
+     *
+     * @return the left and right row of each result row, {@link ColumnVector#NA_INDEX} for none
+     */
+    private int[][] indexes(JoinType type) {
+        int[] offsets = new int[leftRows + 1];
+        for (int i = 0; i < size; i++) offsets[lefts[i] + 1]++;
+        int unmatchedRights = 0;
+        if (type == JoinType.OUTER) {
+            for (boolean matched : rightMatched) {
+                if (!matched) unmatchedRights++;
+            }
+        }
+        for (int l = 0; l < leftRows; l++) {
+            if (type != JoinType.INNER && offsets[l + 1] == 0) offsets[l + 1] = 1;
+            offsets[l + 1] += offsets[l];
+        }
+        int total = offsets[leftRows] + unmatchedRights;
+        int[] leftIndexes = new int[total];
+        int[] rightIndexes = new int[total];
+        Arrays.fill(rightIndexes, 0, offsets[leftRows], ColumnVector.NA_INDEX);
+        for (int l = 0; l < leftRows; l++) {
+            if (offsets[l] < offsets[l + 1]) leftIndexes[offsets[l]] = l;  // overwritten by matches if any
+        }
+        for (int i = 0; i < size; i++) {
+            int position = offsets[lefts[i]]++;
+            leftIndexes[position] = lefts[i];
+            rightIndexes[position] = rights[i];
+        }
+        int position = total - unmatchedRights;
+        for (int r = 0; unmatchedRights > 0 && r < rightRows; r++) {
+            if (rightMatched[r]) continue;
+            leftIndexes[position] = ColumnVector.NA_INDEX;
+            rightIndexes[position++] = r;
+        }
+        return new int[][]{leftIndexes, rightIndexes};
+    }
+
+    /**
+     * Gathers the key columns, then the other columns of the left side, then those of the right side. Titles that
+     * are on both sides get suffixes ".x" and ".y".
+     */
+    private static DataFrame gather(DataFrame left, DataFrame right, String[] keyNames, ColumnVector[] leftKeys,
+                                    ColumnVector[] rightKeys, int[] leftIndexes, int[] rightIndexes) {
+        List<DataColumn> columns = new ArrayList<>();
+        Set<String> keys = new HashSet<>();
+        for (int k = 0; k < keyNames.length; k++) {
+            keys.add(keyNames[k].strip());
+            ColumnVector vector = leftKeys[k].gatherOrNa(leftIndexes);
+            for (int i = leftIndexes.length - 1; i >= 0 && leftIndexes[i] == ColumnVector.NA_INDEX; i--) {
+                vector = vector.setFrom(i, rightKeys[k], rightIndexes[i]);  // unmatched right rows are last
+            }
+            columns.add(new DataColumn(left.getColumn(keyNames[k]).getColName(), vector));
+        }
+        Set<String> leftNames = new HashSet<>(left.getTitles());
+        Set<String> rightNames = new HashSet<>(right.getTitles());
+        for (int c = 0; c < left.columnsCount(); c++) {
+            DataColumn column = left.getColumn(c);
+            String name = column.getColName();
+            if (keys.contains(name)) continue;
+            columns.add(new DataColumn(rightNames.contains(name) ? name + ".x" : name,
+                    column.vector().gatherOrNa(leftIndexes)));
+        }
+        for (int c = 0; c < right.columnsCount(); c++) {
+            DataColumn column = right.getColumn(c);
+            String name = column.getColName();
+            if (keys.contains(name)) continue;
+            columns.add(new DataColumn(leftNames.contains(name) ? name + ".y" : name,
+                    column.vector().gatherOrNa(rightIndexes)));
+        }
+        return DataFrame.fromColumns(columns, leftIndexes.length);
+    }
+}
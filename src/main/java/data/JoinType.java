@@ -0,0 +1,19 @@
+package data;
+
+/**
+ * Which rows a join keeps, see {@link DataFrame#join(DataFrame, JoinType, String...)}.
+ */
+public enum JoinType {
+    /**
+     * Only the pairs of rows whose keys match.
+     */
+    INNER,
+    /**
+     * The pairs of rows whose keys match, and every left row without a match, with NA on the right.
+     */
+    LEFT,
+    /**
+     * The pairs of rows whose keys match, and every row of either side without a match, with NA on the other side.
+     */
+    OUTER
+}
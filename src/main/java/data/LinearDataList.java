@@ -1,7 +1,7 @@
 package data;
 
 import java.util.Iterator;
-import java.util.List;
+import java.util.NoSuchElementException;
 
 /**
  * A list of data cells, can be a row or a column.
@@ -11,15 +11,25 @@ import java.util.List;
  */
 public abstract class LinearDataList implements Iterable<DataCell> {
 
-    protected final List<DataCell> cellList;
-
-    LinearDataList(List<DataCell> cellList) {
-        this.cellList = cellList;
+    LinearDataList() {
     }
 
     @Override
     public Iterator<DataCell> iterator() {
-        return cellList.iterator();
+        return new Iterator<>() {
+            private int index = 0;
+
+            @Override
+            public boolean hasNext() {
+                return index < size();
+            }
+
+            @Override
+            public DataCell next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                return get(index++);
+            }
+        };
     }
 
     /**
@@ -37,23 +47,71 @@ public abstract class LinearDataList implements Iterable<DataCell> {
      * @return the numeric values array
      */
     public double[] toNumberArray() {
-        double[] arr = new double[cellList.size()];
+        double[] arr = new double[size()];
         for (int i = 0; i < arr.length; i++) {
-            DataCell cell = cellList.get(i);
-            if (cell.isNumber()) arr[i] = cell.getNumberValue();
+            arr[i] = numberAt(i);
         }
         return arr;
     }
 
-    public DataCell get(int index) {
-        return cellList.get(index);
-    }
+    public abstract DataCell get(int index);
 
     /**
      * @return the size of this
      */
-    public int size() {
-        return cellList.size();
+    public abstract int size();
+
+    /**
+     * Whether the value at <code>index</code> is numeric, without creating a DataCell if possible.
+     *
+     * @param index the index, starts from 0
+     * @return whether the value at <code>index</code> is numeric
+     */
+    boolean isNumberAt(int index) {
+        return get(index).isNumber();
+    }
+
+    /**
+     * The numeric value at <code>index</code>, without creating a DataCell if possible.
+     *
+     * @param index the index, starts from 0
+     * @return the numeric value, or Double.NaN if not numeric
+     */
+    double numberAt(int index) {
+        return get(index).getNumberValue();
+    }
+
+    /**
+     * Whether the value at <code>index</code> is NA, without creating a DataCell if possible.
+     *
+     * @param index the index, starts from 0
+     * @return whether the value at <code>index</code> is NA
+     */
+    boolean isNaAt(int index) {
+        return get(index).isNa();
+    }
+
+    /**
+     * Computes count, sum, mean, variance, minimum, maximum and NA count of this LinearDataList in one scan.
+     * <p>
+     * Prefer this to calling several of {@link #sum()}, {@link #mean()}, {@link #min()} and {@link #max()}, which
+     * each scan all values.
+     *
+     * @return the statistics of all numeric values in this LinearDataList
+     */
+    public SummaryStats summaryStats() {
+        SummaryStats.Accumulator accumulator = new SummaryStats.Accumulator();
+        double[] block = new double[Math.min(size(), SummaryStats.BLOCK)];
+        int naCount = 0;
+        for (int start = 0; start < size(); start += block.length) {
+            int length = Math.min(block.length, size() - start);
+            for (int i = 0; i < length; i++) {
+                if (isNaAt(start + i)) naCount++;
+                block[i] = numberAt(start + i);
+            }
+            accumulator.add(block, 0, length);
+        }
+        return accumulator.result(naCount);
     }
 
     /**
@@ -61,8 +119,8 @@ public abstract class LinearDataList implements Iterable<DataCell> {
      */
     public int numericCellsCount() {
         int count = 0;
-        for (DataCell cell : cellList) {
-            if (cell.isNumber()) count++;
+        for (int i = 0; i < size(); i++) {
+            if (isNumberAt(i)) count++;
         }
         return count;
     }
@@ -72,8 +130,8 @@ public abstract class LinearDataList implements Iterable<DataCell> {
      */
     public double sum() {
         double res = 0.0;
-        for (DataCell cell : cellList) {
-            if (cell.isNumber()) res += cell.getNumberValue();
+        for (int i = 0; i < size(); i++) {
+            if (isNumberAt(i)) res += numberAt(i);
         }
         return res;
     }
@@ -82,8 +140,7 @@ public abstract class LinearDataList implements Iterable<DataCell> {
      * @return the mean value of all numeric values in this LinearDataList
      */
     public double mean() {
-        double sum = sum();
-        return sum / numericCellsCount();
+        return summaryStats().mean();
     }
 
     /**
@@ -91,9 +148,9 @@ public abstract class LinearDataList implements Iterable<DataCell> {
      */
     public double min() {
         double res = Double.MAX_VALUE;
-        for (DataCell cell : cellList) {
-            if (cell.isNumber()) {
-                double cellValue = cell.getNumberValue();
+        for (int i = 0; i < size(); i++) {
+            if (isNumberAt(i)) {
+                double cellValue = numberAt(i);
                 if (cellValue < res) res = cellValue;
             }
         }
@@ -105,12 +162,24 @@ public abstract class LinearDataList implements Iterable<DataCell> {
      */
     public double max() {
         double res = -Double.MAX_VALUE;
-        for (DataCell cell : cellList) {
-            if (cell.isNumber()) {
-                double cellValue = cell.getNumberValue();
+        for (int i = 0; i < size(); i++) {
+            if (isNumberAt(i)) {
+                double cellValue = numberAt(i);
                 if (cellValue > res) res = cellValue;
             }
         }
         return res;
     }
+
+    /**
+     * @return string representation of the cells, like "[a, b, c]"
+     */
+    String cellsString() {
+        StringBuilder builder = new StringBuilder("[");
+        for (int i = 0; i < size(); i++) {
+            if (i > 0) builder.append(", ");
+            builder.append(get(i));
+        }
+        return builder.append(']').toString();
+    }
 }
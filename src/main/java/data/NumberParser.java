@@ -0,0 +1,150 @@
+package data;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Parses decimal numbers without throwing exceptions.
+ * <p>
+ * Accepted: optional surrounding whitespace, an optional sign, then either <code>Infinity</code> or digits with an
+ * optional '.', an optional exponent and an optional type suffix (e.g. <code>-1.5e3</code>, <code>.5</code>,
+ * <code>2.</code>, <code>1d</code>), or a hexadecimal floating point literal (e.g. <code>0x1p3</code>). This is the
+ * syntax of <code>Double.parseDouble</code>. Anything else is not a number, and Double.NaN is returned.
+ */
+final class NumberParser {
+
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    private static final byte[] INFINITY = "Infinity".getBytes(StandardCharsets.US_ASCII);
+
+    private NumberParser() {
+    }
+
+    /**
+     * @param text the text
+     * @return the number, or Double.NaN if <code>text</code> is not a number
+     */
+    static double parse(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.ISO_8859_1);  // non-latin chars are never part of a number
+        return parse(bytes, 0, bytes.length);
+    }
+
+    /**
+     * @param bytes the bytes, UTF-8 or ISO-8859-1, where any byte above 0x7f makes the text not a number
+     * @param from  beginning index, inclusive
+     * @param to    ending index, exclusive
+     * @return the number, or Double.NaN if the bytes are not a number
+     */
+    static double parse(byte[] bytes, int from, int to) {
+        while (from < to && isBlank(bytes[from])) from++;
+        while (to > from && isBlank(bytes[to - 1])) to--;
+        int p = from;
+        if (p == to) return Double.NaN;
+
+        boolean negative = false;
+        if (bytes[p] == '-' || bytes[p] == '+') {
+            negative = bytes[p] == '-';
+            p++;
+        }
+        if (p < to && bytes[p] == 'I') {
+            if (!regionEquals(bytes, p, to, INFINITY)) return Double.NaN;
+            return negative ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+        }
+        if (p + 1 < to && bytes[p] == '0' && (bytes[p + 1] == 'x' || bytes[p + 1] == 'X')) {
+            return parseHex(bytes, from, to);
+        }
+        if (isTypeSuffix(bytes[to - 1])) to--;  // the number is the same with or without it
+
+        long mantissa = 0;
+        int significantDigits = 0;  // digits accumulated in mantissa, leading zeros excluded
+        boolean truncated = false;  // some digit did not fit into mantissa, the fast path is not exact
+        int exponent = 0;
+        int digits = 0;
+        for (; p < to && isDigit(bytes[p]); p++, digits++) {
+            if (significantDigits < 19) {
+                mantissa = mantissa * 10 + (bytes[p] - '0');
+                if (mantissa != 0) significantDigits++;
+            } else {
+                truncated = true;
+            }
+        }
+        if (p < to && bytes[p] == '.') {
+            p++;
+            for (; p < to && isDigit(bytes[p]); p++, digits++) {
+                if (significantDigits < 19) {
+                    mantissa = mantissa * 10 + (bytes[p] - '0');
+                    if (mantissa != 0) significantDigits++;
+                    exponent--;
+                } else {
+                    truncated = true;
+                }
+            }
+        }
+        if (digits == 0) return Double.NaN;
+
+        if (p < to && (bytes[p] == 'e' || bytes[p] == 'E')) {
+            p++;
+            boolean negativeExponent = false;
+            if (p < to && (bytes[p] == '-' || bytes[p] == '+')) {
+                negativeExponent = bytes[p] == '-';
+                p++;
+            }
+            if (p == to) return Double.NaN;
+            int explicitExponent = 0;
+            for (; p < to && isDigit(bytes[p]); p++) {
+                if (explicitExponent < 100_000) explicitExponent = explicitExponent * 10 + (bytes[p] - '0');
+            }
+            exponent += negativeExponent ? -explicitExponent : explicitExponent;
+        }
+        if (p != to) return Double.NaN;
+
+        double value;
+        if (mantissa == 0) {
+            value = 0.0;
+        } else if (!truncated && mantissa <= MAX_EXACT_MANTISSA
+                && exponent >= -22 && exponent <= 22) {
+            // both operands are exact, so a single IEEE operation is correctly rounded
+            value = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+        } else {
+            // the syntax is already validated, parseDouble cannot throw here
+            return Double.parseDouble(new String(bytes, from, to - from, StandardCharsets.ISO_8859_1));
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * @return whether <code>b</code> is an ASCII control char or space, trimmed as by <code>String.trim</code>
+     */
+    static boolean isBlank(byte b) {
+        return 0 <= b && b <= ' ';  // bytes above 0x7f are negative
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private static boolean isTypeSuffix(byte b) {
+        return b == 'd' || b == 'D' || b == 'f' || b == 'F';
+    }
+
+    /**
+     * Hexadecimal literals are rare in data, they are left to <code>Double.parseDouble</code>.
+     */
+    private static double parseHex(byte[] bytes, int from, int to) {
+        try {
+            return Double.parseDouble(new String(bytes, from, to - from, StandardCharsets.ISO_8859_1));
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    private static boolean regionEquals(byte[] bytes, int from, int to, byte[] expected) {
+        if (to - from != expected.length) return false;
+        for (int i = 0; i < expected.length; i++) {
+            if (bytes[from + i] != expected[i]) return false;
+        }
+        return true;
+    }
+}
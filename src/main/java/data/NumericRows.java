@@ -0,0 +1,82 @@
+package data;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Finds the rows whose values are all numeric in some columns.
+ * <p>
+ * Rows are checked 64 at a time: each column gives a word of bits telling which of the 64 values are numeric (for a
+ * numeric column this is just its validity word), and the words are and-ed into a bitmap of the valid rows. Large
+ * frames are split into row ranges, aligned on words, that are checked in parallel in the common ForkJoinPool.
+ */
+final class NumericRows {
+
+    private static final int PARALLEL_THRESHOLD = 1 << 16;
+    private static final int LEAF_WORDS = 1 << 8;  // 16K rows per task
+
+    private NumericRows() {
+    }
+
+    /**
+     * @param columns   the columns to check, all of size <code>rowsCount</code>
+     * @param rowsCount number of rows
+     * @return indexes of rows where every value of <code>columns</code> is numeric, in ascending order
+     */
+    static int[] find(ColumnVector[] columns, int rowsCount) {
+        long[] bitmap = new long[NumericVector.bitmapLength(rowsCount)];
+        MaskTask task = new MaskTask(columns, rowsCount, bitmap, 0, bitmap.length);
+        if (rowsCount >= PARALLEL_THRESHOLD) ForkJoinPool.commonPool().invoke(task);
+        else task.compute();
+
+        int count = 0;
+        for (long word : bitmap) count += Long.bitCount(word);
+        int[] rows = new int[count];
+        int n = 0;
+        for (int w = 0; w < bitmap.length; w++) {
+            for (long word = bitmap[w]; word != 0; word &= word - 1) {
+                rows[n++] = (w << 6) + Long.numberOfTrailingZeros(word);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Fills the words [<code>from</code>, <code>to</code>) of the bitmap.
+     */
+    private static final class MaskTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final ColumnVector[] columns;
+        private final int rowsCount;
+        private final long[] bitmap;
+        private final int from;
+        private final int to;
+
+        MaskTask(ColumnVector[] columns, int rowsCount, long[] bitmap, int from, int to) {
+            this.columns = columns;
+            this.rowsCount = rowsCount;
+            this.bitmap = bitmap;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > LEAF_WORDS) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new MaskTask(columns, rowsCount, bitmap, from, middle),
+                        new MaskTask(columns, rowsCount, bitmap, middle, to));
+                return;
+            }
+            for (int w = from; w < to; w++) {
+                int rows = Math.min(64, rowsCount - (w << 6));
+                long word = rows == 64 ? -1L : (1L << rows) - 1;
+                for (int c = 0; c < columns.length && word != 0; c++) {
+                    word &= columns[c].numberBits(w);
+                }
+                bitmap[w] = word;
+            }
+        }
+    }
+}
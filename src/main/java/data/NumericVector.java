@@ -0,0 +1,318 @@
+package data;
+
+import java.util.Arrays;
+
+/**
+ * A numeric column stored as a double array with a validity bitmap.
+ * <p>
+ * NA slots have their bit cleared and hold Double.NaN, so {@link #toNumberArray()} is a single array copy.
+ * <p>
+ * Numbers keep the text they were read from. A text that is the shortest decimal of its number, see
+ * {@link ColumnVector#numberText(double)}, is not stored. An integer written without a fraction, such as
+ * <code>1675000</code>, takes one bit of a second bitmap. Any other text, such as <code>1.50</code> or
+ * <code>1e3</code>, is kept in an array of texts, which is only allocated for the first of them. Numbers set without
+ * a text get the shortest decimal.
+ */
+final class NumericVector extends ColumnVector {
+
+    private static final int MAX_INTEGER_DIGITS = 15;  // integers below 10^15 are exact doubles
+
+    private double[] values;
+    private long[] validity;  // bit set means the value is not NA
+    private long[] integers;  // bit set means the text is the integer without fraction, null if none is
+    private String[] texts;  // the other texts that are not the shortest decimal, null if there is none
+    private int size;
+
+    NumericVector() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    NumericVector(int capacity) {
+        this.values = new double[capacity];
+        this.validity = new long[bitmapLength(capacity)];
+    }
+
+    NumericVector(double[] values, long[] validity, int size) {
+        this.values = values;
+        this.validity = validity;
+        this.size = size;
+    }
+
+    /**
+     * Wraps an array of doubles, NaN values are treated as NA.
+     *
+     * @param values the numbers, not copied
+     * @return the vector
+     */
+    static NumericVector of(double[] values) {
+        long[] validity = new long[bitmapLength(values.length)];
+        for (int i = 0; i < values.length; i++) {
+            if (!Double.isNaN(values[i])) validity[i >>> 6] |= 1L << i;
+        }
+        return new NumericVector(values, validity, values.length);
+    }
+
+    static int bitmapLength(int size) {
+        return (size + 63) >>> 6;
+    }
+
+    /**
+     * @return the backing array, NA slots hold Double.NaN. Must not be modified.
+     */
+    double[] values() {
+        return values;
+    }
+
+    /**
+     * @return the backing validity bitmap. Must not be modified.
+     */
+    long[] validity() {
+        return validity;
+    }
+
+    /**
+     * @return the bitmap of integer texts, see {@link #isIntegerText(int)}, null if there is none. Must not be
+     * modified.
+     */
+    long[] integerTexts() {
+        return integers;
+    }
+
+    @Override
+    int size() {
+        return size;
+    }
+
+    @Override
+    boolean isNa(int index) {
+        return (validity[index >>> 6] & (1L << index)) == 0;
+    }
+
+    @Override
+    boolean isNumber(int index) {
+        return !isNa(index);
+    }
+
+    @Override
+    double getNumber(int index) {
+        return values[index];
+    }
+
+    @Override
+    String getText(int index) {
+        if (isNa(index)) return "";
+        if (texts != null && texts[index] != null) return texts[index];
+        if (isIntegerText(index)) return Long.toString((long) values[index]);
+        return numberText(values[index]);
+    }
+
+    /**
+     * @param index the index, starts from 0
+     * @return whether the text of the value at <code>index</code> is not the shortest decimal of its number
+     */
+    boolean hasSourceText(int index) {
+        return isIntegerText(index) || texts != null && texts[index] != null;
+    }
+
+    /**
+     * @param index the index, starts from 0
+     * @return whether the text of the value at <code>index</code> is its integer without fraction
+     */
+    boolean isIntegerText(int index) {
+        return integers != null && (integers[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * Marks the text of the value at <code>index</code> as its integer without fraction.
+     */
+    void setIntegerText(int index) {
+        if (integers == null) integers = new long[validity.length];
+        integers[index >>> 6] |= 1L << index;
+    }
+
+    /**
+     * Sets the text of the number at <code>index</code>, which must not be its shortest decimal nor its integer.
+     */
+    void setSourceText(int index, String text) {
+        if (texts == null) texts = new String[values.length];
+        texts[index] = text;
+    }
+
+    /**
+     * @param text  a text
+     * @param value the number of <code>text</code>
+     * @return whether <code>text</code> is <code>value</code> written as an integer without fraction
+     */
+    static boolean isIntegerText(String text, double value) {
+        int start = text.startsWith("-") ? 1 : 0;
+        int digits = text.length() - start;
+        if (digits < 1 || digits > MAX_INTEGER_DIGITS) return false;
+        if (text.charAt(start) == '0' && (digits > 1 || start == 1)) return false;  // leading zeros and -0
+        for (int i = start; i < text.length(); i++) {
+            if (text.charAt(i) < '0' || text.charAt(i) > '9') return false;
+        }
+        return value == (long) value;
+    }
+
+    /**
+     * @return whether the ASCII <code>bytes</code> are <code>value</code> written as an integer without fraction
+     */
+    static boolean isIntegerText(byte[] bytes, int from, int to, double value) {
+        int start = from < to && bytes[from] == '-' ? from + 1 : from;
+        int digits = to - start;
+        if (digits < 1 || digits > MAX_INTEGER_DIGITS) return false;
+        if (bytes[start] == '0' && (digits > 1 || start > from)) return false;
+        for (int i = start; i < to; i++) {
+            if (bytes[i] < '0' || bytes[i] > '9') return false;
+        }
+        return value == (long) value;
+    }
+
+    private void clearText(int index) {
+        if (integers != null) integers[index >>> 6] &= ~(1L << index);
+        if (texts != null) texts[index] = null;
+    }
+
+    /**
+     * Copies the text of a value of another numeric vector, the number must already be set.
+     */
+    void copyText(int index, NumericVector source, int sourceIndex) {
+        if (source.isIntegerText(sourceIndex)) {
+            setIntegerText(index);
+            if (texts != null) texts[index] = null;
+        } else if (source.texts != null && source.texts[sourceIndex] != null) {
+            if (integers != null) integers[index >>> 6] &= ~(1L << index);
+            setSourceText(index, source.texts[sourceIndex]);
+        } else {
+            clearText(index);
+        }
+    }
+
+    /**
+     * @return whether some value has a text that is not its shortest decimal
+     */
+    boolean hasSourceTexts() {
+        return integers != null || texts != null;
+    }
+
+    @Override
+    void addNa() {
+        add(Double.NaN);
+    }
+
+    /**
+     * Appends a number, NaN is treated as NA.
+     *
+     * @param value the number
+     */
+    void add(double value) {
+        if (size == values.length) {
+            int capacity = grownCapacity(size);
+            values = Arrays.copyOf(values, capacity);
+            validity = Arrays.copyOf(validity, bitmapLength(capacity));
+            if (integers != null) integers = Arrays.copyOf(integers, bitmapLength(capacity));
+            if (texts != null) texts = Arrays.copyOf(texts, capacity);
+        }
+        int index = size++;
+        values[index] = value;
+        if (!Double.isNaN(value)) validity[index >>> 6] |= 1L << index;
+    }
+
+    @Override
+    void setNa(int index) {
+        values[index] = Double.NaN;
+        validity[index >>> 6] &= ~(1L << index);
+        clearText(index);
+    }
+
+    @Override
+    void setNumber(int index, double value) {
+        values[index] = value;
+        validity[index >>> 6] |= 1L << index;
+        clearText(index);
+    }
+
+    @Override
+    void setNumber(int index, double value, String text) {
+        setNumber(index, value);
+        if (isIntegerText(text, value)) setIntegerText(index);
+        else if (!text.equals(numberText(value))) setSourceText(index, text);
+    }
+
+    @Override
+    StringVector toStringVector() {
+        StringVector vector = new StringVector(Math.max(size, DEFAULT_CAPACITY));
+        for (int i = 0; i < size; i++) {
+            vector.addNa();
+            if (isNa(i)) continue;
+            if (hasSourceText(i)) vector.setNumber(i, values[i], getText(i));
+            else vector.setNumber(i, values[i]);
+        }
+        return vector;
+    }
+
+    @Override
+    NumericVector copy() {
+        NumericVector copy = new NumericVector(Arrays.copyOf(values, size),
+                Arrays.copyOf(validity, bitmapLength(size)), size);
+        if (integers != null) copy.integers = Arrays.copyOf(integers, bitmapLength(size));
+        if (texts != null) copy.texts = Arrays.copyOf(texts, size);
+        return copy;
+    }
+
+    @Override
+    NumericVector gather(int[] indexes) {
+        return gather(indexes, false);
+    }
+
+    @Override
+    NumericVector gatherOrNa(int[] indexes) {
+        return gather(indexes, true);
+    }
+
+    private NumericVector gather(int[] indexes, boolean naIndexes) {
+        double[] newValues = new double[indexes.length];
+        long[] newValidity = new long[bitmapLength(indexes.length)];
+        for (int i = 0; i < indexes.length; i++) {
+            int index = indexes[i];
+            if (naIndexes && index == NA_INDEX) {
+                newValues[i] = Double.NaN;
+                continue;
+            }
+            if (index < 0 || index >= size) throw new IndexOutOfBoundsException(index);
+            newValues[i] = values[index];
+            if (!isNa(index)) newValidity[i >>> 6] |= 1L << i;
+        }
+        NumericVector gathered = new NumericVector(newValues, newValidity, indexes.length);
+        if (!hasSourceTexts()) return gathered;
+        for (int i = 0; i < indexes.length; i++) {
+            if (indexes[i] != NA_INDEX && hasSourceText(indexes[i])) gathered.copyText(i, this, indexes[i]);
+        }
+        return gathered;
+    }
+
+    @Override
+    double[] toNumberArray() {
+        return Arrays.copyOf(values, size);
+    }
+
+    @Override
+    long numberBits(int word) {
+        return validity[word];
+    }
+
+    @Override
+    SummaryStats summaryStats() {
+        return SummaryStats.of(values, 0, size, -1);  // every NaN slot is NA
+    }
+
+    @Override
+    void trim() {
+        if (values.length != size) {
+            values = Arrays.copyOf(values, size);
+            validity = Arrays.copyOf(validity, bitmapLength(size));
+            if (integers != null) integers = Arrays.copyOf(integers, bitmapLength(size));
+            if (texts != null) texts = Arrays.copyOf(texts, size);
+        }
+    }
+}
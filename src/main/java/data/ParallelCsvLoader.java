@@ -0,0 +1,208 @@
+package data;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Loads a csv file with several threads.
+ * <p>
+ * The file is memory-mapped and cut into byte ranges that end at line breaks outside quoted fields. The quote state
+ * at each cut is known from the parity of the number of '"' before it, which is counted in parallel. Each range is
+ * then parsed by its own {@link CsvReader} into its own column builders, and the columns are concatenated.
+ * <p>
+ * The mapped bytes are not parsed in place: each {@link CsvReader} copies its range block by block into its own
+ * buffer, as it unescapes quoted fields in place and hands fields to the column builders as ranges of a byte array.
+ * The mapping saves the read calls, not that copy. Errors in a range report the byte offset of the record in the
+ * file, since its record number is not known.
+ * <p>
+ * Quotes are expected only around fields (RFC 4180), a '"' inside an unquoted field would break the parity.
+ */
+final class ParallelCsvLoader {
+
+    private static final int SCAN_BLOCK = 1 << 16;
+    private static final long MAX_CHUNK = 1L << 30;  // a single mapping is limited to 2GB
+    private static final int CHUNKS_PER_THREAD = 4;  // smaller chunks balance uneven workers
+
+    private final Path path;
+    private final int threads;
+
+    ParallelCsvLoader(Path path, int threads) {
+        if (threads < 1) throw new DataFrameException("Number of threads must be positive, got " + threads + ".");
+        this.path = path;
+        this.threads = threads;
+    }
+
+    DataFrame load() throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            List<String> titleRow = new ArrayList<>();
+            long dataStart = readTitles(channel, size, titleRow);
+
+            long[] bounds = chunkBounds(channel, executor, dataStart, size);
+            List<Future<ColumnVector[]>> futures = new ArrayList<>();
+            for (int i = 0; i + 1 < bounds.length; i++) {
+                long from = bounds[i];
+                long to = bounds[i + 1];
+                futures.add(executor.submit(() -> parseChunk(channel, from, to, titleRow.size())));
+            }
+            List<List<ColumnVector>> chunkColumns = new ArrayList<>();
+            for (int c = 0; c < titleRow.size(); c++) chunkColumns.add(new ArrayList<>());
+            for (Future<ColumnVector[]> future : futures) {
+                ColumnVector[] vectors = await(future);
+                for (int c = 0; c < vectors.length; c++) chunkColumns.get(c).add(vectors[c]);
+            }
+
+            List<DataColumn> columns = new ArrayList<>();
+            for (int c = 0; c < titleRow.size(); c++) {
+                columns.add(new DataColumn(titleRow.get(c), ColumnVector.concat(chunkColumns.get(c))));
+            }
+            return DataFrame.fromColumns(columns, columns.isEmpty() ? 0 : columns.get(0).size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Reads the title row.
+     *
+     * @return offset of the first data record
+     */
+    private long readTitles(FileChannel channel, long size, List<String> titleRow) throws IOException {
+        long window = Math.min(size, MAX_CHUNK);
+        CsvReader reader = new CsvReader(new ByteBufferInputStream(channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                window)));
+        if (!reader.nextRecord()) return size;
+        for (int c = 0; c < reader.fieldCount(); c++) titleRow.add(reader.text(c));
+        return reader.offset();
+    }
+
+    /**
+     * Cuts [<code>from</code>, <code>to</code>) into ranges that each start at a record.
+     *
+     * @return the boundaries, first is <code>from</code> and last is <code>to</code>
+     */
+    private long[] chunkBounds(FileChannel channel, ExecutorService executor, long from, long to)
+            throws IOException {
+        long length = to - from;
+        int count = (int) Math.max(Math.min((long) threads * CHUNKS_PER_THREAD, length / SCAN_BLOCK),
+                (length + MAX_CHUNK - 1) / MAX_CHUNK);
+        if (count <= 1) return new long[]{from, to};
+
+        long[] tentative = new long[count + 1];
+        for (int i = 0; i <= count; i++) tentative[i] = from + length * i / count;
+
+        List<Future<Integer>> quoteCounts = new ArrayList<>();  // parity only
+        for (int i = 0; i < count; i++) {
+            long start = tentative[i];
+            long end = tentative[i + 1];
+            quoteCounts.add(executor.submit(() -> countQuotes(channel, start, end)));
+        }
+        long[] bounds = new long[count + 1];
+        bounds[0] = from;
+        bounds[count] = to;
+        boolean inQuotes = false;
+        for (int i = 1; i < count; i++) {
+            inQuotes ^= (await(quoteCounts.get(i - 1)) & 1) == 1;
+            bounds[i] = Math.max(bounds[i - 1], nextRecordStart(channel, tentative[i], to, inQuotes));
+        }
+        return bounds;
+    }
+
+    private static int countQuotes(FileChannel channel, long from, long to) throws IOException {
+        ByteBuffer block = ByteBuffer.allocate(SCAN_BLOCK);
+        int count = 0;
+        for (long position = from; position < to; ) {
+            block.clear().limit((int) Math.min(SCAN_BLOCK, to - position));
+            int n = channel.read(block, position);
+            if (n <= 0) break;
+            byte[] bytes = block.array();
+            for (int i = 0; i < n; i++) {
+                if (bytes[i] == '"') count++;
+            }
+            position += n;
+        }
+        return count;
+    }
+
+    /**
+     * @return offset after the first '\n' outside quoted fields at or after <code>from</code>, or <code>to</code>
+     */
+    private static long nextRecordStart(FileChannel channel, long from, long to, boolean inQuotes)
+            throws IOException {
+        ByteBuffer block = ByteBuffer.allocate(SCAN_BLOCK);
+        for (long position = from; position < to; ) {
+            block.clear().limit((int) Math.min(SCAN_BLOCK, to - position));
+            int n = channel.read(block, position);
+            if (n <= 0) break;
+            byte[] bytes = block.array();
+            for (int i = 0; i < n; i++) {
+                if (bytes[i] == '"') inQuotes = !inQuotes;
+                else if (bytes[i] == '\n' && !inQuotes) return position + i + 1;
+            }
+            position += n;
+        }
+        return to;
+    }
+
+    private static ColumnVector[] parseChunk(FileChannel channel, long from, long to, int colsCount)
+            throws IOException {
+        MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+        CsvReader reader = new CsvReader(new ByteBufferInputStream(mapped), CsvReader.DEFAULT_BUFFER_SIZE, from);
+        ColumnBuilder[] builders = new ColumnBuilder[colsCount];
+        for (int c = 0; c < colsCount; c++) builders[c] = new ColumnBuilder();
+        while (reader.nextRecord()) DataFrame.addRecord(reader, builders);
+        ColumnVector[] vectors = new ColumnVector[colsCount];
+        for (int c = 0; c < colsCount; c++) vectors[c] = builders[c].build();
+        return vectors;
+    }
+
+    private static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while loading csv.", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Reads a byte buffer from its position to its limit, with one bulk copy per read.
+     */
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (!buffer.hasRemaining()) return -1;
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Order-preserving primitive words for the values of key columns, and a radix sort of rows by those words.
+ * <p>
+ * A key of numeric vectors is one word: the IEEE-754 bits of the number, with the magnitude bits flipped for
+ * negative numbers so that words compare as signed longs in the same order as the numbers. Other keys are two words:
+ * a class (number, text, NA) then either the bits of the number or the rank of the text among all texts. Either way
+ * NA comes last, equal values have equal words, and words of several vectors encoded together are comparable.
+ */
+final class RowOrder {
+
+    static final long NA_WORD = Long.MAX_VALUE;
+
+    private static final long NUMBER_CLASS = 0L;
+    private static final long TEXT_CLASS = 1L;
+    private static final int DIGIT_BITS = 16;
+    private static final int INSERTION_ROWS = 64;
+
+    private RowOrder() {
+    }
+
+    /**
+     * @return a word that compares as a signed long in the same order as <code>number</code>, -0.0 equals 0.0
+     */
+    static long sortableBits(double number) {
+        long bits = Double.doubleToLongBits(number == 0.0 ? 0.0 : number);
+        return bits >= 0 ? bits : bits ^ Long.MAX_VALUE;
+    }
+
+    /**
+     * Encodes the keys of several sides together, so that words of different sides are comparable.
+     *
+     * @param sides the key vectors of each side, the same number for every side
+     * @return words[side][word][row]
+     */
+    static long[][][] encode(ColumnVector[]... sides) {
+        int keysCount = sides[0].length;
+        List<List<long[]>> words = new ArrayList<>();
+        for (int s = 0; s < sides.length; s++) words.add(new ArrayList<>());
+        for (int k = 0; k < keysCount; k++) {
+            ColumnVector[] vectors = new ColumnVector[sides.length];
+            boolean numeric = true;
+            for (int s = 0; s < sides.length; s++) {
+                vectors[s] = sides[s][k].materialize();
+                numeric &= vectors[s] instanceof NumericVector;
+            }
+            if (numeric) {
+                for (int s = 0; s < sides.length; s++) words.get(s).add(numberWords(vectors[s]));
+                continue;
+            }
+            Map<String, Integer> ranks = textRanks(vectors);
+            for (int s = 0; s < sides.length; s++) {
+                long[][] pair = classWords(vectors[s], ranks);
+                words.get(s).add(pair[0]);
+                words.get(s).add(pair[1]);
+            }
+        }
+        long[][][] result = new long[sides.length][][];
+        for (int s = 0; s < sides.length; s++) result[s] = words.get(s).toArray(new long[0][]);
+        return result;
+    }
+
+    /**
+     * Encodes the keys of one DataFrame in the direction and NA placement of each key.
+     *
+     * @param vectors the key vectors
+     * @param keys    the direction and NA placement of each vector
+     * @return words[word][row]
+     */
+    static long[][] encode(ColumnVector[] vectors, SortKey[] keys) {
+        List<long[]> words = new ArrayList<>();
+        for (int k = 0; k < vectors.length; k++) {
+            long[][] keyWords = encode(new ColumnVector[]{vectors[k]})[0];
+            long naWord = keys[k].isNaFirst() ? Long.MIN_VALUE : NA_WORD;
+            for (int w = keyWords.length - 1; w >= 0; w--) {  // the first word tells NA, so it is changed last
+                long[] column = keyWords[w];
+                for (int r = 0; r < column.length; r++) {
+                    if (keyWords[0][r] == NA_WORD) column[r] = naWord;
+                    else if (keys[k].isDescending()) column[r] = ~column[r];
+                }
+            }
+            words.addAll(List.of(keyWords));
+        }
+        return words.toArray(new long[0][]);
+    }
+
+    private static long[] numberWords(ColumnVector vector) {
+        long[] words = new long[vector.size()];
+        for (int r = 0; r < words.length; r++) {
+            words[r] = vector.isNa(r) ? NA_WORD : sortableBits(vector.getNumber(r));
+        }
+        return words;
+    }
+
+    /**
+     * @return the rank of each distinct non-numeric text of <code>vectors</code>, in lexicographic order
+     */
+    private static Map<String, Integer> textRanks(ColumnVector[] vectors) {
+        List<String> texts = new ArrayList<>();
+        for (ColumnVector vector : vectors) {
+            if (!(vector instanceof StringVector)) continue;
+            StringDictionary dictionary = ((StringVector) vector).dictionary();
+            for (int code = 0; code < dictionary.size(); code++) {
+                if (Double.isNaN(dictionary.number(code))) texts.add(dictionary.text(code));
+            }
+        }
+        String[] sorted = texts.stream().distinct().sorted().toArray(String[]::new);
+        Map<String, Integer> ranks = new HashMap<>(sorted.length * 2);
+        for (int i = 0; i < sorted.length; i++) ranks.put(sorted[i], i);
+        return ranks;
+    }
+
+    private static long[][] classWords(ColumnVector vector, Map<String, Integer> ranks) {
+        int size = vector.size();
+        long[] classes = new long[size];
+        long[] values = new long[size];
+        if (!(vector instanceof StringVector)) {
+            long[] numbers = numberWords(vector);
+            for (int r = 0; r < size; r++) {
+                classes[r] = numbers[r] == NA_WORD ? NA_WORD : NUMBER_CLASS;
+                values[r] = numbers[r];
+            }
+            return new long[][]{classes, values};
+        }
+        StringVector strings = (StringVector) vector;
+        StringDictionary dictionary = strings.dictionary();
+        long[] codeClasses = new long[dictionary.size()];
+        long[] codeValues = new long[dictionary.size()];
+        for (int code = 0; code < codeClasses.length; code++) {
+            double number = dictionary.number(code);
+            boolean text = Double.isNaN(number);
+            codeClasses[code] = text ? TEXT_CLASS : NUMBER_CLASS;
+            codeValues[code] = text ? ranks.get(dictionary.text(code)) : sortableBits(number);
+        }
+        for (int r = 0; r < size; r++) {
+            int code = strings.getCode(r);
+            classes[r] = code == StringVector.NA_CODE ? NA_WORD : codeClasses[code];
+            values[r] = code == StringVector.NA_CODE ? NA_WORD : codeValues[code];
+        }
+        return new long[][]{classes, values};
+    }
+
+    /**
+     * @param words words[word][row]
+     * @param rows  number of rows
+     * @return whether rows are already in ascending order of their words
+     */
+    static boolean isSorted(long[][] words, int rows) {
+        for (int r = 1; r < rows; r++) {
+            if (compare(words, r - 1, words, r) > 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Compares the words of row <code>a</code> of <code>wordsA</code> with row <code>b</code> of <code>wordsB</code>.
+     */
+    static int compare(long[][] wordsA, int a, long[][] wordsB, int b) {
+        for (int w = 0; w < wordsA.length; w++) {
+            int result = Long.compare(wordsA[w][a], wordsB[w][b]);
+            if (result != 0) return result;
+        }
+        return 0;
+    }
+
+    /**
+     * Sorts rows by their words with a stable least-significant-digit radix sort, skipping digits that are the same
+     * in every row. Up to {@value #INSERTION_ROWS} rows are sorted by insertion instead.
+     *
+     * @param words words[word][row]
+     * @param rows  number of rows
+     * @return the permutation: the i-th row in order is row <code>order[i]</code>
+     */
+    static int[] sort(long[][] words, int rows) {
+        int[] order = new int[rows];
+        for (int r = 0; r < rows; r++) order[r] = r;
+        if (rows <= INSERTION_ROWS) {
+            for (int i = 1; i < rows; i++) {
+                int row = order[i];
+                int j = i;
+                for (; j > 0 && compare(words, order[j - 1], words, row) > 0; j--) order[j] = order[j - 1];
+                order[j] = row;
+            }
+            return order;
+        }
+        int[] buffer = new int[rows];
+        int[] counts = new int[(1 << DIGIT_BITS) + 1];
+        for (int w = words.length - 1; w >= 0; w--) {
+            long[] column = words[w];
+            long varying = 0L;
+            for (int r = 1; r < rows; r++) varying |= column[r] ^ column[0];
+            for (int shift = 0; shift < Long.SIZE; shift += DIGIT_BITS) {
+                if ((varying >>> shift & 0xFFFF) == 0) continue;
+                int flip = shift == Long.SIZE - DIGIT_BITS ? 0x8000 : 0;  // the sign bit orders the top digit
+                Arrays.fill(counts, 0);
+                for (int r = 0; r < rows; r++) counts[((int) (column[r] >>> shift) & 0xFFFF ^ flip) + 1]++;
+                for (int d = 0; d < 1 << DIGIT_BITS; d++) counts[d + 1] += counts[d];
+                for (int i = 0; i < rows; i++) {
+                    int row = order[i];
+                    buffer[counts[(int) (column[row] >>> shift) & 0xFFFF ^ flip]++] = row;
+                }
+                int[] swap = order;
+                order = buffer;
+                buffer = swap;
+            }
+        }
+        return order;
+    }
+}
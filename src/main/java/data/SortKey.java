@@ -0,0 +1,82 @@
+package data;
+
+import java.util.Objects;
+
+/**
+ * A column to sort rows by, see {@link DataFrame#sortBy(SortKey...)}.
+ * <p>
+ * Numbers come before text, and text is in lexicographic order. NA comes last unless {@link #naFirst()} is used,
+ * whether the order is ascending or descending.
+ */
+public final class SortKey {
+
+    private final String colName;
+    private final boolean descending;
+    private final boolean naFirst;
+
+    private SortKey(String colName, boolean descending, boolean naFirst) {
+        this.colName = colName.strip();
+        this.descending = descending;
+        this.naFirst = naFirst;
+    }
+
+    /**
+     * @param colName title of the column
+     * @return the column in ascending order
+     */
+    public static SortKey asc(String colName) {
+        return new SortKey(colName, false, false);
+    }
+
+    /**
+     * @param colName title of the column
+     * @return the column in descending order
+     */
+    public static SortKey desc(String colName) {
+        return new SortKey(colName, true, false);
+    }
+
+    /**
+     * @return this key, with NA before the other values
+     */
+    public SortKey naFirst() {
+        return new SortKey(colName, descending, true);
+    }
+
+    /**
+     * @return this key, with NA after the other values
+     */
+    public SortKey naLast() {
+        return new SortKey(colName, descending, false);
+    }
+
+    String colName() {
+        return colName;
+    }
+
+    boolean isDescending() {
+        return descending;
+    }
+
+    boolean isNaFirst() {
+        return naFirst;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        SortKey sortKey = (SortKey) o;
+        return descending == sortKey.descending && naFirst == sortKey.naFirst && colName.equals(sortKey.colName);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(colName, descending, naFirst);
+    }
+
+    @Override
+    public String toString() {
+        return colName + (descending ? " desc" : " asc") + (naFirst ? " na first" : "");
+    }
+}
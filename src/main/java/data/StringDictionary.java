@@ -0,0 +1,210 @@
+package data;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * An append-only dictionary of distinct text values, each with its numeric interpretation.
+ * <p>
+ * The same text may have two entries: a numeric one (e.g. <code>1.0</code>) and a non-numeric one (e.g. the quoted
+ * <code>"1.0"</code>, which is stored as <code>1.0</code> but is not a number). The text of a numeric entry is the
+ * text it was read from, so <code>1</code>, <code>1.0</code> and <code>1e0</code> are three entries of the same
+ * number.
+ * <p>
+ * Entries are found through an open-addressing table, which can also be probed with a range of ASCII bytes so
+ * that parsers do not need to create a String for values already in the dictionary.
+ * <p>
+ * Numeric entries that are the same number, such as <code>0.0</code> and <code>-0.0</code>, share a key code, the code
+ * of the first of them, see {@link #keyCode(int)}. Keys compare numbers by value and texts by text, so a numeric entry
+ * and a non-numeric entry are never the same key, even with the same text.
+ */
+final class StringDictionary {
+
+    private static final int NUMERIC_SALT = 0x9E3779B9;
+
+    private String[] texts = new String[ColumnVector.DEFAULT_CAPACITY];
+    private double[] numbers = new double[ColumnVector.DEFAULT_CAPACITY];
+    private int[] hashes = new int[ColumnVector.DEFAULT_CAPACITY];
+    private int[] table = new int[ColumnVector.DEFAULT_CAPACITY * 2];  // code + 1, 0 means empty slot
+    private int[] keyCodes = new int[ColumnVector.DEFAULT_CAPACITY];
+    private int[] numberTable = new int[ColumnVector.DEFAULT_CAPACITY * 2];  // key code + 1 of each distinct number
+    private int numbersCount;
+    private int size;
+
+    /**
+     * Returns the code of the entry (<code>text</code>, <code>number</code>), adding it if absent.
+     *
+     * @param text   the text
+     * @param number the numeric value of <code>text</code>, or Double.NaN if not numeric
+     * @return the code
+     */
+    int encode(String text, double number) {
+        int hash = saltedHash(text.hashCode(), number);
+        int mask = table.length - 1;
+        for (int slot = mix(hash) & mask; ; slot = (slot + 1) & mask) {
+            int code = table[slot] - 1;
+            if (code < 0) return add(slot, text, number, hash);
+            if (hashes[code] == hash && sameKind(code, number) && texts[code].equals(text)) return code;
+        }
+    }
+
+    /**
+     * Returns the code of the entry (<code>text</code>, <code>number</code>), without adding it.
+     *
+     * @param text   the text
+     * @param number the numeric value of <code>text</code>, or Double.NaN if not numeric
+     * @return the code, or -1 if absent
+     */
+    int find(String text, double number) {
+        int hash = saltedHash(text.hashCode(), number);
+        int mask = table.length - 1;
+        for (int slot = mix(hash) & mask; ; slot = (slot + 1) & mask) {
+            int code = table[slot] - 1;
+            if (code < 0) return -1;
+            if (hashes[code] == hash && sameKind(code, number) && texts[code].equals(text)) return code;
+        }
+    }
+
+    /**
+     * Returns the code of the entry whose text is the UTF-8 <code>bytes</code>, adding it if absent.
+     *
+     * @param bytes  the UTF-8 bytes
+     * @param from   beginning index, inclusive
+     * @param to     ending index, exclusive
+     * @param number the numeric value of the text, or Double.NaN if not numeric
+     * @return the code
+     */
+    int encode(byte[] bytes, int from, int to, double number) {
+        int stringHash = 0;
+        for (int i = from; i < to; i++) {
+            byte b = bytes[i];
+            if (b < 0) return encode(new String(bytes, from, to - from, StandardCharsets.UTF_8), number);
+            stringHash = 31 * stringHash + b;  // same as String.hashCode() for ASCII
+        }
+        int hash = saltedHash(stringHash, number);
+        int mask = table.length - 1;
+        for (int slot = mix(hash) & mask; ; slot = (slot + 1) & mask) {
+            int code = table[slot] - 1;
+            if (code < 0) return add(slot, new String(bytes, from, to - from, StandardCharsets.ISO_8859_1),
+                    number, hash);
+            if (hashes[code] == hash && sameKind(code, number) && asciiEquals(texts[code], bytes, from, to))
+                return code;
+        }
+    }
+
+    /**
+     * Returns the key code of the numeric entries equal to <code>number</code>, 0.0 being equal to -0.0.
+     *
+     * @param number the number, not NaN
+     * @return the key code, or -1 if no numeric entry is equal to <code>number</code>
+     */
+    int findNumber(double number) {
+        int mask = numberTable.length - 1;
+        for (int slot = mix(numberHash(number)) & mask; ; slot = (slot + 1) & mask) {
+            int code = numberTable[slot] - 1;
+            if (code < 0 || numbers[code] == number) return code;
+        }
+    }
+
+    /**
+     * @param code a code
+     * @return the code of the first numeric entry equal to entry <code>code</code> if numeric, <code>code</code>
+     * otherwise
+     */
+    int keyCode(int code) {
+        return keyCodes[code];
+    }
+
+    /**
+     * @return number of entries
+     */
+    int size() {
+        return size;
+    }
+
+    String text(int code) {
+        return texts[code];
+    }
+
+    double number(int code) {
+        return numbers[code];
+    }
+
+    private int add(int slot, String text, double number, int hash) {
+        if (size == texts.length) {
+            int capacity = ColumnVector.grownCapacity(size);
+            texts = Arrays.copyOf(texts, capacity);
+            numbers = Arrays.copyOf(numbers, capacity);
+            hashes = Arrays.copyOf(hashes, capacity);
+            keyCodes = Arrays.copyOf(keyCodes, capacity);
+        }
+        int code = size++;
+        texts[code] = text;
+        numbers[code] = number;
+        hashes[code] = hash;
+        keyCodes[code] = Double.isNaN(number) ? code : numberKey(code);
+        table[slot] = code + 1;
+        if (size * 2 > table.length) rehash();
+        return code;
+    }
+
+    /**
+     * @return the key code of the numeric entry <code>code</code>, itself if its number is new
+     */
+    private int numberKey(int code) {
+        double number = numbers[code];
+        int mask = numberTable.length - 1;
+        int slot = mix(numberHash(number)) & mask;
+        for (; numberTable[slot] != 0; slot = (slot + 1) & mask) {
+            if (numbers[numberTable[slot] - 1] == number) return numberTable[slot] - 1;
+        }
+        numberTable[slot] = code + 1;
+        if (++numbersCount * 2 > numberTable.length) {
+            int[] old = numberTable;
+            numberTable = new int[old.length * 2];
+            mask = numberTable.length - 1;
+            for (int entry : old) {
+                if (entry == 0) continue;
+                int s = mix(numberHash(numbers[entry - 1])) & mask;
+                while (numberTable[s] != 0) s = (s + 1) & mask;
+                numberTable[s] = entry;
+            }
+        }
+        return code;
+    }
+
+    private void rehash() {
+        table = new int[table.length * 2];
+        int mask = table.length - 1;
+        for (int code = 0; code < size; code++) {
+            int slot = mix(hashes[code]) & mask;
+            while (table[slot] != 0) slot = (slot + 1) & mask;
+            table[slot] = code + 1;
+        }
+    }
+
+    private boolean sameKind(int code, double number) {
+        return Double.isNaN(numbers[code]) == Double.isNaN(number);
+    }
+
+    private static int saltedHash(int stringHash, double number) {
+        return Double.isNaN(number) ? stringHash : stringHash ^ NUMERIC_SALT;
+    }
+
+    private static int numberHash(double number) {
+        return Long.hashCode(Double.doubleToLongBits(number == 0.0 ? 0.0 : number));
+    }
+
+    private static int mix(int hash) {
+        hash *= 0x9E3779B1;
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean asciiEquals(String text, byte[] bytes, int from, int to) {
+        if (text.length() != to - from) return false;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) != bytes[from + i]) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,170 @@
+package data;
+
+import java.util.Arrays;
+
+/**
+ * A textual column stored as dictionary codes.
+ * <p>
+ * Code -1 means NA. The dictionary is append-only, so it can be shared by vectors copied from each other.
+ */
+final class StringVector extends ColumnVector {
+
+    static final int NA_CODE = -1;
+
+    private final StringDictionary dictionary;
+    private int[] codes;
+    private int size;
+
+    StringVector() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    StringVector(int capacity) {
+        this(new StringDictionary(), new int[capacity], 0);
+    }
+
+    StringVector(StringDictionary dictionary, int[] codes, int size) {
+        this.dictionary = dictionary;
+        this.codes = codes;
+        this.size = size;
+    }
+
+    /**
+     * @return the dictionary of this vector
+     */
+    StringDictionary dictionary() {
+        return dictionary;
+    }
+
+    /**
+     * @return the backing code array, NA slots hold {@link #NA_CODE}. Must not be modified.
+     */
+    int[] codes() {
+        return codes;
+    }
+
+    /**
+     * @param index the index, starts from 0
+     * @return the dictionary code at <code>index</code>
+     */
+    int getCode(int index) {
+        return codes[index];
+    }
+
+    @Override
+    int size() {
+        return size;
+    }
+
+    @Override
+    boolean isNa(int index) {
+        return codes[index] == NA_CODE;
+    }
+
+    @Override
+    boolean isNumber(int index) {
+        return !Double.isNaN(getNumber(index));
+    }
+
+    @Override
+    double getNumber(int index) {
+        int code = codes[index];
+        return code == NA_CODE ? Double.NaN : dictionary.number(code);
+    }
+
+    @Override
+    String getText(int index) {
+        int code = codes[index];
+        return code == NA_CODE ? "" : dictionary.text(code);
+    }
+
+    @Override
+    void addNa() {
+        if (size == codes.length) codes = Arrays.copyOf(codes, grownCapacity(size));
+        codes[size++] = NA_CODE;
+    }
+
+    @Override
+    void setNa(int index) {
+        codes[index] = NA_CODE;
+    }
+
+    @Override
+    void setNumber(int index, double value) {
+        codes[index] = dictionary.encode(numberText(value), value);
+    }
+
+    @Override
+    void setNumber(int index, double value, String text) {
+        codes[index] = dictionary.encode(text, value);
+    }
+
+    /**
+     * Sets a non-numeric text value.
+     *
+     * @param index the index, starts from 0
+     * @param text  the text, must not be empty
+     */
+    void setString(int index, String text) {
+        codes[index] = dictionary.encode(text, Double.NaN);
+    }
+
+    /**
+     * Sets a value from its UTF-8 bytes.
+     *
+     * @param index  the index, starts from 0
+     * @param bytes  the UTF-8 bytes, must not be empty
+     * @param from   beginning index, inclusive
+     * @param to     ending index, exclusive
+     * @param number the numeric value of the text, or Double.NaN if not numeric
+     */
+    void setBytes(int index, byte[] bytes, int from, int to, double number) {
+        codes[index] = dictionary.encode(bytes, from, to, number);
+    }
+
+    @Override
+    StringVector toStringVector() {
+        return this;
+    }
+
+    @Override
+    StringVector copy() {
+        return new StringVector(dictionary, Arrays.copyOf(codes, size), size);
+    }
+
+    @Override
+    StringVector gather(int[] indexes) {
+        return gather(indexes, false);
+    }
+
+    @Override
+    StringVector gatherOrNa(int[] indexes) {
+        return gather(indexes, true);
+    }
+
+    private StringVector gather(int[] indexes, boolean naIndexes) {
+        int[] newCodes = new int[indexes.length];
+        for (int i = 0; i < indexes.length; i++) {
+            int index = indexes[i];
+            if (naIndexes && index == NA_INDEX) {
+                newCodes[i] = NA_CODE;
+                continue;
+            }
+            if (index < 0 || index >= size) throw new IndexOutOfBoundsException(index);
+            newCodes[i] = codes[index];
+        }
+        return new StringVector(dictionary, newCodes, indexes.length);
+    }
+
+    @Override
+    double[] toNumberArray() {
+        double[] arr = new double[size];
+        for (int i = 0; i < size; i++) arr[i] = getNumber(i);
+        return arr;
+    }
+
+    @Override
+    void trim() {
+        if (codes.length != size) codes = Arrays.copyOf(codes, size);
+    }
+}
@@ -0,0 +1,161 @@
+package data;
+
+/**
+ * Summary statistics of the numeric values of a {@link LinearDataList}, computed in one scan.
+ * <p>
+ * Values are read once, in blocks small enough to stay in the L1 cache. Each block gets its count, sum, minimum,
+ * maximum and, in a second loop over the cached block, its sum of squared deviations from the block mean. Blocks are
+ * then combined with the pairwise update of Chan et al., which keeps the variance accurate for large or shifted data.
+ */
+public final class SummaryStats {
+
+    static final int BLOCK = 1024;
+
+    private final int count;
+    private final int naCount;
+    private final double sum;
+    private final double mean;
+    private final double m2;  // sum of squared deviations from the mean
+    private final double min;
+    private final double max;
+
+    private SummaryStats(int count, int naCount, double sum, double mean, double m2, double min, double max) {
+        this.count = count;
+        this.naCount = naCount;
+        this.sum = sum;
+        this.mean = mean;
+        this.m2 = m2;
+        this.min = min;
+        this.max = max;
+    }
+
+    /**
+     * Computes the statistics of <code>values</code> between <code>from</code> and <code>to</code>, NaN values are
+     * skipped.
+     *
+     * @param values  the numbers, NaN if not numeric
+     * @param from    beginning index, inclusive
+     * @param to      ending index, exclusive
+     * @param naCount number of NA values among them, or -1 to count every NaN as NA
+     * @return the statistics
+     */
+    static SummaryStats of(double[] values, int from, int to, int naCount) {
+        Accumulator accumulator = new Accumulator();
+        for (int start = from; start < to; start += BLOCK) accumulator.add(values, start, Math.min(start + BLOCK, to));
+        return accumulator.result(naCount < 0 ? to - from - accumulator.count : naCount);
+    }
+
+    /**
+     * Statistics of values added block by block, for callers that copy their values into a block themselves.
+     */
+    static final class Accumulator {
+        private int count;
+        private double sum;
+        private double mean;
+        private double m2;
+        private double min = Double.MAX_VALUE;  // as LinearDataList.min()
+        private double max = -Double.MAX_VALUE;
+
+        /**
+         * Adds a block of values, NaN values are skipped. The block is read twice, it should fit in the L1 cache.
+         *
+         * @param values the numbers, NaN if not numeric
+         * @param from   beginning index, inclusive
+         * @param to     ending index, exclusive, at most {@value #BLOCK} values after <code>from</code>
+         */
+        void add(double[] values, int from, int to) {
+            int blockCount = 0;
+            double blockSum = 0.0;
+            for (int i = from; i < to; i++) {
+                double value = values[i];
+                if (value != value) continue;  // NaN
+                blockCount++;
+                blockSum += value;
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            }
+            if (blockCount == 0) return;
+            double blockMean = blockSum / blockCount;
+            double blockM2 = 0.0;
+            for (int i = from; i < to; i++) {
+                double value = values[i];
+                if (value != value) continue;
+                double deviation = value - blockMean;
+                blockM2 += deviation * deviation;
+            }
+            int total = count + blockCount;
+            double delta = blockMean - mean;
+            mean += delta * blockCount / total;
+            m2 += blockM2 + delta * delta * ((double) count * blockCount / total);
+            sum += blockSum;
+            count = total;
+        }
+
+        SummaryStats result(int naCount) {
+            if (count == 0) return new SummaryStats(0, naCount, 0.0, Double.NaN, Double.NaN, min, max);
+            return new SummaryStats(count, naCount, sum, mean, m2, min, max);
+        }
+    }
+
+    /**
+     * @return the number of numeric values
+     */
+    public int count() {
+        return count;
+    }
+
+    /**
+     * @return the number of NA values
+     */
+    public int naCount() {
+        return naCount;
+    }
+
+    /**
+     * @return the sum of numeric values, 0 if there is none
+     */
+    public double sum() {
+        return sum;
+    }
+
+    /**
+     * @return the mean of numeric values, Double.NaN if there is none
+     */
+    public double mean() {
+        return mean;
+    }
+
+    /**
+     * @return the sample variance of numeric values, Double.NaN if there are less than 2
+     */
+    public double variance() {
+        return count < 2 ? Double.NaN : m2 / (count - 1);
+    }
+
+    /**
+     * @return the sample standard deviation of numeric values, Double.NaN if there are less than 2
+     */
+    public double standardDeviation() {
+        return Math.sqrt(variance());
+    }
+
+    /**
+     * @return the minimum numeric value, Double.MAX_VALUE if there is none, as {@link LinearDataList#min()}
+     */
+    public double min() {
+        return min;
+    }
+
+    /**
+     * @return the maximum numeric value, -Double.MAX_VALUE if there is none, as {@link LinearDataList#max()}
+     */
+    public double max() {
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return "SummaryStats{count=" + count + ", naCount=" + naCount + ", sum=" + sum + ", mean=" + mean
+                + ", variance=" + variance() + ", min=" + min + ", max=" + max + "}";
+    }
+}
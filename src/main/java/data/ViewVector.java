@@ -0,0 +1,207 @@
+package data;
+
+import java.util.Arrays;
+
+/**
+ * A read-only view on some values of another vector, selected by an index vector or by a range, each value of the
+ * range possibly repeated a number of times in a row.
+ * <p>
+ * Views are always shared, so a {@link DataColumn} materializes its view through {@link #copy()} before the first
+ * write. A view holds its base vector, so writes to the base are not seen by the view either, until the last holder
+ * of the view has materialized it.
+ */
+final class ViewVector extends ColumnVector {
+
+    private final ColumnVector base;
+    private final int[] indexes;  // null for a range view
+    private final int offset;
+    private final int repeat;  // times each value of a range is repeated
+    private final int size;
+
+    private ViewVector(ColumnVector base, int[] indexes, int offset, int repeat, int size) {
+        base.share();
+        this.base = base;
+        this.indexes = indexes;
+        this.offset = offset;
+        this.repeat = repeat;
+        this.size = size;
+    }
+
+    /**
+     * @param base    the viewed vector
+     * @param indexes indexes in <code>vector</code>, not copied
+     * @return a view on the values at <code>indexes</code>
+     */
+    static ColumnVector of(ColumnVector base, int[] indexes) {
+        for (int index : indexes) {
+            if (index < 0 || index >= base.size()) throw new IndexOutOfBoundsException(index);
+        }
+        if (base instanceof ViewVector) {
+            ViewVector view = (ViewVector) base;
+            int[] composed = new int[indexes.length];
+            for (int i = 0; i < indexes.length; i++) composed[i] = view.baseIndex(indexes[i]);
+            return new ViewVector(view.base, composed, 0, 1, indexes.length);
+        }
+        return new ViewVector(base, indexes, 0, 1, indexes.length);
+    }
+
+    /**
+     * @param base the viewed vector
+     * @param from beginning index, inclusive
+     * @param to   ending index, exclusive
+     * @return a view on the values between <code>from</code> and <code>to</code>
+     */
+    static ColumnVector range(ColumnVector base, int from, int to) {
+        if (from < 0 || to > base.size() || from > to)
+            throw new IndexOutOfBoundsException("Range [" + from + ", " + to + ") out of bounds for length "
+                    + base.size());
+        if (base instanceof ViewVector) {
+            ViewVector view = (ViewVector) base;
+            if (view.isRange()) return new ViewVector(view.base, null, view.offset + from, 1, to - from);
+            int[] composed = new int[to - from];
+            for (int i = 0; i < composed.length; i++) composed[i] = view.baseIndex(from + i);
+            return new ViewVector(view.base, composed, 0, 1, to - from);
+        }
+        return new ViewVector(base, null, from, 1, to - from);
+    }
+
+    /**
+     * @param base  the viewed vector
+     * @param times times each value is repeated
+     * @return a view on each value of <code>base</code> repeated <code>times</code> times in a row
+     */
+    static ColumnVector repeat(ColumnVector base, int times) {
+        if (times < 1) throw new IllegalArgumentException("Cannot repeat " + times + " times.");
+        if (base instanceof ViewVector && !((ViewVector) base).isRange()) {
+            int[] indexes = new int[Math.multiplyExact(base.size(), times)];
+            for (int i = 0; i < indexes.length; i++) indexes[i] = i / times;
+            return of(base, indexes);
+        }
+        int offset = base instanceof ViewVector ? ((ViewVector) base).offset : 0;
+        ColumnVector viewed = base instanceof ViewVector ? ((ViewVector) base).base : base;
+        return new ViewVector(viewed, null, offset, times, Math.multiplyExact(base.size(), times));
+    }
+
+    /**
+     * @return whether this views a range of the base vector, in order and without repetition
+     */
+    private boolean isRange() {
+        return indexes == null && repeat == 1;
+    }
+
+    private int baseIndex(int index) {
+        return indexes == null ? offset + index / repeat : indexes[index];
+    }
+
+    @Override
+    boolean isShared() {
+        return true;
+    }
+
+    @Override
+    void release() {
+        if (super.isShared()) super.release();
+        else base.release();  // the last holder of this view is gone, and so is the hold of the view on its base
+    }
+
+    @Override
+    int size() {
+        return size;
+    }
+
+    @Override
+    boolean isNa(int index) {
+        return base.isNa(baseIndex(index));
+    }
+
+    @Override
+    boolean isNumber(int index) {
+        return base.isNumber(baseIndex(index));
+    }
+
+    @Override
+    double getNumber(int index) {
+        return base.getNumber(baseIndex(index));
+    }
+
+    @Override
+    String getText(int index) {
+        return base.getText(baseIndex(index));
+    }
+
+    @Override
+    void addNa() {
+        throw new UnsupportedOperationException("A view cannot grow.");
+    }
+
+    @Override
+    void setNa(int index) {
+        throw new UnsupportedOperationException("A view is read-only, copy it first.");
+    }
+
+    @Override
+    void setNumber(int index, double value) {
+        throw new UnsupportedOperationException("A view is read-only, copy it first.");
+    }
+
+    @Override
+    StringVector toStringVector() {
+        return copy().toStringVector();
+    }
+
+    @Override
+    ColumnVector copy() {
+        if (indexes != null) return base.gather(indexes);
+        int[] range = new int[size];
+        for (int i = 0; i < size; i++) range[i] = baseIndex(i);
+        return base.gather(range);
+    }
+
+    @Override
+    ColumnVector materialize() {
+        return copy();
+    }
+
+    @Override
+    ColumnVector gather(int[] indexes) {
+        int[] composed = new int[indexes.length];
+        for (int i = 0; i < indexes.length; i++) {
+            if (indexes[i] < 0 || indexes[i] >= size) throw new IndexOutOfBoundsException(indexes[i]);
+            composed[i] = baseIndex(indexes[i]);
+        }
+        return base.gather(composed);
+    }
+
+    @Override
+    ColumnVector gatherOrNa(int[] indexes) {
+        int[] composed = new int[indexes.length];
+        for (int i = 0; i < indexes.length; i++) {
+            if (indexes[i] == NA_INDEX) composed[i] = NA_INDEX;
+            else if (indexes[i] < 0 || indexes[i] >= size) throw new IndexOutOfBoundsException(indexes[i]);
+            else composed[i] = baseIndex(indexes[i]);
+        }
+        return base.gatherOrNa(composed);
+    }
+
+    @Override
+    double[] toNumberArray() {
+        if (isRange() && base instanceof NumericVector) {
+            return Arrays.copyOfRange(((NumericVector) base).values(), offset, offset + size);
+        }
+        double[] arr = new double[size];
+        for (int i = 0; i < size; i++) arr[i] = getNumber(i);
+        return arr;
+    }
+
+    @Override
+    SummaryStats summaryStats() {
+        if (isRange() && base instanceof NumericVector) {
+            return SummaryStats.of(((NumericVector) base).values(), offset, offset + size, -1);
+        }
+        return super.summaryStats();
+    }
+
+    @Override
+    void trim() {
+    }
+}
@@ -0,0 +1,119 @@
+package lm;
+
+import util.NumericKernels;
+
+/**
+ * The means and centered cross products of several variables, accumulated over row blocks.
+ * <p>
+ * Rows are copied into a column-major tile of {@link #TILE_ROWS} rows, small enough to stay in cache. The tile is
+ * centered on its own means, its cross products are dot products of tile columns, and it is merged with the matrix
+ * form of the pairwise update of Chan et al. Accumulators of disjoint row ranges merge the same way, so ranges can be
+ * accumulated in parallel.
+ * <p>
+ * Rows where any variable is NaN are skipped.
+ */
+final class GramAccumulator {
+
+    static final int TILE_ROWS = 256;
+
+    private final int k;
+    private final double[] means;
+    private final double[] comoments;  // k * k, row-major, upper triangle only
+    private long n;
+
+    GramAccumulator(int k) {
+        this.k = k;
+        this.means = new double[k];
+        this.comoments = new double[k * k];
+    }
+
+    /**
+     * Adds the rows between <code>from</code> and <code>to</code>.
+     *
+     * @param columns the variables, all of the same length
+     * @param from    beginning row, inclusive
+     * @param to      ending row, exclusive
+     * @return this
+     */
+    GramAccumulator add(double[][] columns, int from, int to) {
+        NumericKernels kernels = NumericKernels.get();
+        double[][] tile = new double[k][TILE_ROWS];
+        double[] tileMeans = new double[k];
+        double[] tileComoments = new double[k * k];
+        for (int start = from; start < to; ) {
+            int rows = 0;
+            for (; start < to && rows < TILE_ROWS; start++) {
+                if (!isValid(columns, start)) continue;
+                for (int v = 0; v < k; v++) tile[v][rows] = columns[v][start];
+                rows++;
+            }
+            if (rows == 0) continue;
+            for (int v = 0; v < k; v++) {
+                double mean = kernels.mean(tile[v], 0, rows);
+                for (int r = 0; r < rows; r++) tile[v][r] -= mean;
+                tileMeans[v] = mean;
+            }
+            for (int i = 0; i < k; i++) {
+                for (int j = i; j < k; j++) tileComoments[i * k + j] = kernels.dot(tile[i], tile[j], 0, rows);
+            }
+            merge(rows, tileMeans, tileComoments);
+        }
+        return this;
+    }
+
+    /**
+     * Adds the rows of another accumulator.
+     *
+     * @param other accumulator of other rows, not modified
+     * @return this
+     */
+    GramAccumulator merge(GramAccumulator other) {
+        return merge(other.n, other.means, other.comoments);
+    }
+
+    private GramAccumulator merge(long otherN, double[] otherMeans, double[] otherComoments) {
+        if (otherN == 0) return this;
+        long total = n + otherN;
+        double weight = (double) n * otherN / total;
+        double[] diff = new double[k];
+        for (int v = 0; v < k; v++) diff[v] = otherMeans[v] - means[v];
+        for (int i = 0; i < k; i++) {
+            for (int j = i; j < k; j++) {
+                comoments[i * k + j] += otherComoments[i * k + j] + diff[i] * diff[j] * weight;
+            }
+        }
+        for (int v = 0; v < k; v++) means[v] += diff[v] * otherN / total;
+        n = total;
+        return this;
+    }
+
+    static boolean isValid(double[][] columns, int row) {
+        for (double[] column : columns) {
+            if (Double.isNaN(column[row])) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return number of rows added
+     */
+    long count() {
+        return n;
+    }
+
+    /**
+     * @return the means of the variables
+     */
+    double[] means() {
+        return means;
+    }
+
+    /**
+     * @param i index of the first variable
+     * @param j index of the second variable
+     * @return sum((x_i - mean_i) * (x_j - mean_j))
+     */
+    double comoment(int i, int j) {
+        return i <= j ? comoments[i * k + j] : comoments[j * k + i];
+    }
+}
@@ -0,0 +1,324 @@
+package lm;
+
+import data.DataFrame;
+import util.Utility;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * The model for multiple linear regression.
+ * <p>
+ * The response and predictors are read once into primitive arrays, and the centered cross products of all of them
+ * are accumulated over row blocks in parallel, see {@link GramAccumulator}. The normal equations are then solved by
+ * a Cholesky factorization of that matrix. If some predictor is nearly a linear combination of the previous ones, so
+ * that the normal equations lose too much precision, the data is read a second time and factorized by Householder QR
+ * instead. Either way, the factor R of the centered design augmented by the response gives the coefficients, their
+ * standard errors and the sequential sums of squares of the anova table.
+ * <p>
+ * Rows where the response or any predictor is not numeric are skipped.
+ */
+public class LinearModel {
+
+    private static final int RANGE = 1 << 16;  // rows per parallel task
+    // smallest pivot relative to its variance, the squared sine of the angle between a predictor and the previous
+    // ones, so the normal equations are only kept while they lose less than about 7 digits
+    private static final double CHOLESKY_TOLERANCE = 1e-7;
+    private static final double QR_TOLERANCE = 1e-13;
+
+    protected final String response;
+    protected final String[] predictors;
+    protected final double[] estimates;  // intercept first
+    protected final double[] stdErrors;
+    protected final double[] tValues;
+    protected final double[] sequentialSs;  // sum of squares explained by each predictor, after the previous ones
+    protected double rSquared;
+    protected double rSquaredAdj;
+    protected double rss;  // residual squared sum
+    protected double mse;
+    protected double rse;  // residual standard error
+    protected double sst;  // sum squared total
+    protected double ssReg;
+    protected int n;  // number of data
+    private boolean solvedByQr;
+
+    /**
+     * Constructs a multiple linear regression model.
+     *
+     * @param dataFrame  the data frame
+     * @param response   the name of the response variable
+     * @param predictors the names of the predictor variables
+     * @throws LinearModelException if there are not more complete rows than coefficients, or if a predictor is
+     *                              constant or a linear combination of the previous ones
+     */
+    public LinearModel(DataFrame dataFrame, String response, String... predictors) {
+        this.response = response;
+        this.predictors = predictors.clone();
+        this.estimates = new double[predictors.length + 1];
+        this.stdErrors = new double[predictors.length + 1];
+        this.tValues = new double[predictors.length + 1];
+        this.sequentialSs = new double[predictors.length];
+
+        int k = predictors.length + 1;  // the response is the last variable
+        double[][] columns = new double[k][];
+        for (int v = 0; v < predictors.length; v++) {
+            columns[v] = dataFrame.getColumn(predictors[v]).toNumberArray();
+        }
+        columns[k - 1] = dataFrame.getColumn(response).toNumberArray();
+        int rows = dataFrame.rowsCount();
+
+        int ranges = (rows + RANGE - 1) / RANGE;
+        GramAccumulator gram = IntStream.range(0, ranges).parallel().collect(() -> new GramAccumulator(k),
+                (accumulator, r) -> accumulator.add(columns, r * RANGE, Math.min(rows, (r + 1) * RANGE)),
+                GramAccumulator::merge);
+        n = Math.toIntExact(gram.count());
+        if (n <= k) {
+            throw new LinearModelException("Only " + n + " rows have no NA in the response and predictors, more than "
+                    + k + " are needed to estimate " + k + " coefficients and their errors.");
+        }
+
+        double[][] r = cholesky(gram, k);
+        if (r == null) {
+            r = householder(columns, rows, gram.means(), predictors);
+            solvedByQr = true;
+        }
+        analyze(r, gram.means());
+        analyzeAnova();
+    }
+
+    /**
+     * Factorizes the centered cross products of [X y] as R'R.
+     *
+     * @return the upper triangular R, or null if a predictor pivot is too small
+     */
+    private static double[][] cholesky(GramAccumulator gram, int k) {
+        double[][] r = new double[k][k];
+        for (int j = 0; j < k; j++) {
+            double pivot = gram.comoment(j, j);
+            for (int i = 0; i < j; i++) pivot -= r[i][j] * r[i][j];
+            if (j < k - 1 && !(pivot > CHOLESKY_TOLERANCE * gram.comoment(j, j))) return null;
+            r[j][j] = Math.sqrt(Math.max(pivot, 0.0));
+            for (int l = j + 1; l < k; l++) {
+                double value = gram.comoment(j, l);
+                for (int i = 0; i < j; i++) value -= r[i][j] * r[i][l];
+                r[j][l] = value / r[j][j];
+            }
+        }
+        return r;
+    }
+
+    /**
+     * Computes R of the centered [X y] by Householder QR, one tile of rows at a time: R of the previous rows is
+     * stacked over the tile, and the stack is reduced to the new R.
+     *
+     * @return the upper triangular R
+     * @throws LinearModelException if the design is rank deficient
+     */
+    private static double[][] householder(double[][] columns, int rows, double[] means, String[] predictors) {
+        int k = predictors.length + 1;
+        double[][] stack = new double[k + GramAccumulator.TILE_ROWS][k];
+        double[] norms = new double[k];  // column norms, for the rank check
+        int height = k;
+        for (int row = 0; row < rows; row++) {
+            if (!GramAccumulator.isValid(columns, row)) continue;
+            for (int v = 0; v < k; v++) {
+                stack[height][v] = columns[v][row] - means[v];
+                norms[v] += stack[height][v] * stack[height][v];
+            }
+            if (++height == stack.length) {
+                reduce(stack, height, k);
+                height = k;
+            }
+        }
+        reduce(stack, height, k);
+
+        double[][] r = new double[k][];
+        for (int j = 0; j < k; j++) {
+            r[j] = stack[j].clone();
+            if (j < k - 1 && !(Math.abs(r[j][j]) > QR_TOLERANCE * Math.sqrt(norms[j])))
+                throw new LinearModelException("Predictor '" + predictors[j] + "' is constant or a linear combination"
+                        + " of the previous predictors, its coefficient cannot be estimated.");
+        }
+        return r;
+    }
+
+    /**
+     * Reduces the first <code>height</code> rows of <code>stack</code> to an upper triangle in its first k rows.
+     */
+    private static void reduce(double[][] stack, int height, int k) {
+        for (int j = 0; j < k; j++) {
+            double norm = 0.0;
+            for (int i = j; i < height; i++) norm += stack[i][j] * stack[i][j];
+            norm = Math.sqrt(norm);
+            if (norm == 0.0) continue;
+            double alpha = stack[j][j] > 0 ? -norm : norm;
+            double[] v = new double[height - j];  // the Householder vector
+            for (int i = j; i < height; i++) v[i - j] = stack[i][j];
+            v[0] -= alpha;
+            double vNorm2 = 0.0;
+            for (double value : v) vNorm2 += value * value;
+            if (vNorm2 == 0.0) continue;
+            for (int l = j + 1; l < k; l++) {
+                double dot = 0.0;
+                for (int i = j; i < height; i++) dot += v[i - j] * stack[i][l];
+                double scale = 2.0 * dot / vNorm2;
+                for (int i = j; i < height; i++) stack[i][l] -= scale * v[i - j];
+            }
+            stack[j][j] = alpha;
+            for (int i = j + 1; i < height; i++) stack[i][j] = 0.0;
+        }
+        for (int i = k; i < height; i++) Arrays.fill(stack[i], 0.0);
+    }
+
+    private void analyze(double[][] r, double[] means) {
+        int p = predictors.length;
+
+        // R = [Rxx z; 0 sqrt(RSS)], where Rxx b = z and z_j^2 are the sequential sums of squares
+        rss = r[p][p] * r[p][p];
+        ssReg = 0.0;
+        for (int j = 0; j < p; j++) {
+            sequentialSs[j] = r[j][p] * r[j][p];
+            ssReg += sequentialSs[j];
+        }
+        sst = ssReg + rss;
+        rSquared = ssReg / sst;  // R^2
+        mse = rss / degreesOfFreedom();
+
+        double[][] inverse = new double[p][p];  // Rxx^-1, upper triangular
+        for (int j = p - 1; j >= 0; j--) {
+            inverse[j][j] = 1.0 / r[j][j];
+            for (int l = j + 1; l < p; l++) {
+                double value = 0.0;
+                for (int i = j + 1; i <= l; i++) value += r[j][i] * inverse[i][l];
+                inverse[j][l] = -value / r[j][j];
+            }
+        }
+
+        double intercept = means[p];
+        double[] centered = new double[p];  // Rxx^-T * x_bar
+        for (int j = 0; j < p; j++) {
+            double slope = 0.0;
+            double variance = 0.0;
+            for (int l = j; l < p; l++) {
+                slope += inverse[j][l] * r[l][p];
+                variance += inverse[j][l] * inverse[j][l];
+            }
+            estimates[j + 1] = slope;
+            stdErrors[j + 1] = Math.sqrt(mse * variance);
+            intercept -= slope * means[j];
+            for (int l = 0; l <= j; l++) centered[j] += inverse[l][j] * means[l];
+        }
+        estimates[0] = intercept;
+        double leverage = 1.0 / n;
+        for (double value : centered) leverage += value * value;
+        stdErrors[0] = Math.sqrt(mse * leverage);  // standard error of intercept estimator
+    }
+
+    private void analyzeAnova() {
+        rse = Math.sqrt(mse);
+        rSquaredAdj = 1.0 - (rss / degreesOfFreedom()) / (sst / (n - 1));
+        for (int r = 0; r < estimates.length; r++) {
+            tValues[r] = estimates[r] / stdErrors[r];
+        }
+    }
+
+    /**
+     * @return the degrees of freedom (df)
+     */
+    public int degreesOfFreedom() {
+        return n - predictors.length - 1;
+    }
+
+    /**
+     * @return the estimated coefficients, intercept first then predictors in order
+     */
+    public double[] getEstimates() {
+        return estimates.clone();
+    }
+
+    /**
+     * @return whether the normal equations were too ill-conditioned, so that QR was used
+     */
+    boolean isSolvedByQr() {
+        return solvedByQr;
+    }
+
+    /**
+     * @return the summary string
+     */
+    public String summary() {
+        String[][] matrix = new String[estimates.length + 1][4];
+        matrix[0][0] = "";
+        matrix[0][1] = "Estimate";
+        matrix[0][2] = "Std. Error";
+        matrix[0][3] = "t-value";
+
+        matrix[1][0] = "Intercept";
+        for (int j = 0; j < predictors.length; j++) matrix[j + 2][0] = predictors[j];
+
+        for (int r = 0; r < estimates.length; r++) {
+            matrix[r + 1][1] = Utility.doubleToString(estimates[r]);
+            matrix[r + 1][2] = Utility.doubleToString(stdErrors[r]);
+            matrix[r + 1][3] = Utility.doubleToString(tValues[r]);
+        }
+
+        return "Coefficients:\n" +
+                Utility.toGridString(matrix, " ") +
+                "\nResidual standard error: " +
+                Utility.doubleToString(rse) +
+                " on " +
+                degreesOfFreedom() +
+                " degrees of freedom.\n" +
+                "Multiple R-squared: " +
+                Utility.doubleToString(rSquared) +
+                ", Adjusted R-squared: " +
+                Utility.doubleToString(rSquaredAdj) +
+                "\nF-statistics: " +
+                Utility.doubleToString(ssReg / predictors.length / mse) +
+                " on " +
+                degreesOfFreedom() +
+                " degrees of freedom.";
+    }
+
+    @Override
+    public String toString() {
+        return "LinearModel{\n" + summary() + "\n}";
+    }
+
+    /**
+     * The anova table has one row per predictor, with the sum of squares it explains after the previous predictors.
+     *
+     * @return the string representation of anova table
+     */
+    public String anova() {
+        StringBuilder builder = new StringBuilder()
+                .append("Response: ")
+                .append(response)
+                .append('\n');
+        String[][] matrix = new String[predictors.length + 2][5];
+        matrix[0][0] = "";
+        matrix[0][1] = "df";
+        matrix[0][2] = "Sum Sq.";
+        matrix[0][3] = "Mean Sq.";
+        matrix[0][4] = "F value";
+
+        for (int j = 0; j < predictors.length; j++) {
+            matrix[j + 1][0] = predictors[j];
+            matrix[j + 1][1] = "1";
+            String s = Utility.doubleToString(sequentialSs[j]);
+            matrix[j + 1][2] = s;
+            matrix[j + 1][3] = s;
+            matrix[j + 1][4] = Utility.doubleToString(sequentialSs[j] / mse);
+        }
+
+        int last = predictors.length + 1;
+        matrix[last][0] = "Residual";
+        matrix[last][1] = String.valueOf(degreesOfFreedom());
+        matrix[last][2] = Utility.doubleToString(rss);
+        matrix[last][3] = Utility.doubleToString(mse);
+
+        builder.append(Utility.toGridString(matrix, " "));
+
+        return builder.toString();
+    }
+}
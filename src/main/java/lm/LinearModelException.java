@@ -0,0 +1,14 @@
+package lm;
+
+public class LinearModelException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public LinearModelException() {
+        super();
+    }
+
+    public LinearModelException(String msg) {
+        super(msg);
+    }
+}
@@ -0,0 +1,203 @@
+package lm;
+
+import java.io.Serializable;
+
+/**
+ * The sufficient statistics of a simple linear regression, updated one observation at a time.
+ * <p>
+ * Only the number of observations, the two means and the three co-moments Sxx, Sxy and Syy are kept, with the
+ * numerically stable updates of Welford, so data of any size can be streamed through in constant memory. The means
+ * are kept as offsets from a shift, the first observation, so that the differences of means in updates and merges
+ * do not lose digits when the means are much larger than the spread of the data. A
+ * {@link SimpleLinearModel} is then built from it with
+ * {@link SimpleLinearModel#SimpleLinearModel(RegressionAccumulator, String, String)}.
+ * <p>
+ * Accumulators of disjoint partitions can be combined with {@link #merge(RegressionAccumulator)}, which is
+ * associative, so partitions may be accumulated by different threads or by different JVMs that exchange only these
+ * eight numbers (the class is serializable).
+ * <p>
+ * Observations where either value is NaN are skipped.
+ */
+public final class RegressionAccumulator implements Serializable {
+
+    private static final long serialVersionUID = 2L;
+    private static final int BLOCK = 1024;
+
+    private long n;
+    private double xShift;  // the first observation, means are kept relative to it
+    private double yShift;
+    private double xMean;  // x_bar - xShift
+    private double yMean;  // y_bar - yShift
+    private double sxx;  // sum((x_i - x_bar)^2)
+    private double sxy;  // sum((x_i - x_bar) * (y_i - y_bar))
+    private double syy;  // sum((y_i - y_bar)^2)
+
+    /**
+     * Adds an observation.
+     *
+     * @param x the predictor value
+     * @param y the response value
+     * @return this
+     */
+    public RegressionAccumulator add(double x, double y) {
+        if (Double.isNaN(x) || Double.isNaN(y)) return this;
+        if (n == 0) {
+            xShift = x;
+            yShift = y;
+        }
+        n++;
+        double dx = x - xShift;
+        double dy = y - yShift;
+        double xDiff = dx - xMean;
+        double yDiff = dy - yMean;
+        xMean += xDiff / n;
+        yMean += yDiff / n;
+        double yDiffNew = dy - yMean;
+        sxx += xDiff * (dx - xMean);
+        sxy += xDiff * yDiffNew;
+        syy += yDiff * yDiffNew;
+        return this;
+    }
+
+    /**
+     * Adds a batch of observations.
+     *
+     * @param x the predictor values
+     * @param y the response values, same length as <code>x</code>
+     * @return this
+     */
+    public RegressionAccumulator add(double[] x, double[] y) {
+        if (x.length != y.length)
+            throw new IllegalArgumentException("Batch lengths differ: " + x.length + " and " + y.length + ".");
+        return add(x, y, 0, x.length);
+    }
+
+    /**
+     * Adds the observations between <code>from</code> and <code>to</code>.
+     * <p>
+     * Observations are taken in blocks: the means and co-moments of a block are computed with two passes over it,
+     * then the block is merged into this.
+     *
+     * @param x    the predictor values
+     * @param y    the response values
+     * @param from beginning index, inclusive
+     * @param to   ending index, exclusive
+     * @return this
+     */
+    public RegressionAccumulator add(double[] x, double[] y, int from, int to) {
+        RegressionAccumulator block = new RegressionAccumulator();
+        for (int start = from; start < to; start += BLOCK) {
+            int end = Math.min(start + BLOCK, to);
+            int first = start;
+            while (first < end && (Double.isNaN(x[first]) || Double.isNaN(y[first]))) first++;
+            if (first == end) continue;
+            block.xShift = n == 0 ? x[first] : xShift;
+            block.yShift = n == 0 ? y[first] : yShift;
+            long count = 0;
+            double xSum = 0.0;
+            double ySum = 0.0;
+            for (int i = first; i < end; i++) {
+                if (Double.isNaN(x[i]) || Double.isNaN(y[i])) continue;
+                count++;
+                xSum += x[i] - block.xShift;
+                ySum += y[i] - block.yShift;
+            }
+            block.n = count;
+            block.xMean = xSum / count;
+            block.yMean = ySum / count;
+            block.sxx = 0.0;
+            block.sxy = 0.0;
+            block.syy = 0.0;
+            for (int i = first; i < end; i++) {
+                double xDiff = x[i] - block.xShift - block.xMean;
+                double yDiff = y[i] - block.yShift - block.yMean;
+                if (Double.isNaN(xDiff) || Double.isNaN(yDiff)) continue;
+                block.sxx += xDiff * xDiff;
+                block.sxy += xDiff * yDiff;
+                block.syy += yDiff * yDiff;
+            }
+            merge(block);
+        }
+        return this;
+    }
+
+    /**
+     * Adds the observations of another accumulator, with the pairwise update of Chan, Golub and LeVeque.
+     *
+     * @param other the statistics of other observations, not modified
+     * @return this
+     */
+    public RegressionAccumulator merge(RegressionAccumulator other) {
+        if (other.n == 0) return this;
+        if (n == 0) {
+            n = other.n;
+            xShift = other.xShift;
+            yShift = other.yShift;
+            xMean = other.xMean;
+            yMean = other.yMean;
+            sxx = other.sxx;
+            sxy = other.sxy;
+            syy = other.syy;
+            return this;
+        }
+        long total = n + other.n;
+        double xDiff = (other.xShift - xShift) + (other.xMean - xMean);  // exact for shifts within a factor 2
+        double yDiff = (other.yShift - yShift) + (other.yMean - yMean);
+        double weight = (double) n * other.n / total;
+        sxx += other.sxx + xDiff * xDiff * weight;
+        sxy += other.sxy + xDiff * yDiff * weight;
+        syy += other.syy + yDiff * yDiff * weight;
+        xMean += xDiff * other.n / total;
+        yMean += yDiff * other.n / total;
+        n = total;
+        return this;
+    }
+
+    /**
+     * @return number of observations added
+     */
+    public long count() {
+        return n;
+    }
+
+    /**
+     * @return the mean of predictor values
+     */
+    public double xMean() {
+        return n == 0 ? Double.NaN : xShift + xMean;
+    }
+
+    /**
+     * @return the mean of response values
+     */
+    public double yMean() {
+        return n == 0 ? Double.NaN : yShift + yMean;
+    }
+
+    /**
+     * @return Sxx, the sum of squared deviations of predictor values
+     */
+    public double sxx() {
+        return sxx;
+    }
+
+    /**
+     * @return Sxy, the sum of products of deviations of predictor and response values
+     */
+    public double sxy() {
+        return sxy;
+    }
+
+    /**
+     * @return Syy, the sum of squared deviations of response values
+     */
+    public double syy() {
+        return syy;
+    }
+
+    @Override
+    public String toString() {
+        return "RegressionAccumulator{n=" + n + ", xMean=" + xMean() + ", yMean=" + yMean() + ", sxx=" + sxx
+                + ", sxy=" + sxy + ", syy=" + syy + "}";
+    }
+}
@@ -2,19 +2,29 @@ package lm;
 
 import data.DataColumn;
 import data.DataFrame;
+import data.DataFrameStream;
+import data.GroupedDataFrame;
+import util.NumericKernels;
 import util.Utility;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
 /**
  * The model for simple linear regression.
  */
 public class SimpleLinearModel {
 
+    private static final int FIT_RANGE = 1 << 16;  // rows per parallel task
+    private static final int FIT_TILE = 1024;  // rows shared by all predictors while in cache
+
     protected final String predictor;
     protected final double[] estimates;
     protected final double[] stdErrors;
     protected final double[] tValues;
-    private final DataColumn responseCol;
-    private final DataColumn predictorCol;
     protected String response;
     protected double correlation;
     protected double rSquared;
@@ -34,21 +44,184 @@ public class SimpleLinearModel {
      * @param predictor the name of the predictor variable
      */
     public SimpleLinearModel(DataFrame dataFrame, String response, String predictor) {
+        this(response, predictor);
+
+        DataFrame usedFrame = dataFrame.viewByColumns(response, predictor);
+        DataFrame numericFrame = usedFrame.numericSubFrame();  // make sure all rows are numeric
+
+        analyze(numericFrame.getColumn(response), numericFrame.getColumn(predictor));
+        analyzeAnova();
+    }
+
+    /**
+     * Constructs a simple linear regression model from sufficient statistics, without any observation.
+     * <p>
+     * The summary and anova table are the same as those of a model fitted on the observations, up to rounding: the
+     * residual sum of squares is derived as Syy - Sxy^2 / Sxx instead of summed over residuals.
+     *
+     * @param statistics the statistics of the observations
+     * @param response   the name of the response variable
+     * @param predictor  the name of the predictor variable
+     */
+    public SimpleLinearModel(RegressionAccumulator statistics, String response, String predictor) {
+        this(response, predictor);
+
+        analyze(statistics);
+        analyzeAnova();
+    }
+
+    private SimpleLinearModel(String response, String predictor) {
         this.response = response;
         this.predictor = predictor;
 
         this.estimates = new double[2];  // Intercept and slope
         this.stdErrors = new double[2];
         this.tValues = new double[2];
+    }
 
-        DataFrame usedFrame = dataFrame.subFrameByColumns(response, predictor);
-        DataFrame numericFrame = usedFrame.numericSubFrame();  // make sure all rows are numeric
+    /**
+     * Constructs a simple linear regression model from a csv file.
+     * <p>
+     * Only the response and predictor columns are loaded, and rows where either of them is not numeric are skipped
+     * while reading.
+     *
+     * @param csvFile   .csv file
+     * @param response  the name of the response variable
+     * @param predictor the name of the predictor variable
+     * @return the fitted model
+     * @throws IOException if file not readable
+     */
+    public static SimpleLinearModel fromCsv(File csvFile, String response, String predictor) throws IOException {
+        DataFrame dataFrame = DataFrame.fromCsv(csvFile, List.of(response, predictor),
+                row -> row.isNumber(response) && row.isNumber(predictor));
+        return new SimpleLinearModel(dataFrame, response, predictor);
+    }
 
-        this.responseCol = numericFrame.getColumn(response);
-        this.predictorCol = numericFrame.getColumn(predictor);
+    /**
+     * Fits a simple linear regression model in parallel.
+     * <p>
+     * Rows are cut into ranges whose sufficient statistics are accumulated in parallel and then merged, see
+     * {@link RegressionAccumulator}. Rows where either value is not numeric are skipped, as in
+     * {@link #SimpleLinearModel(DataFrame, String, String)}.
+     *
+     * @param dataFrame the data frame
+     * @param response  the name of the response variable
+     * @param predictor the name of the predictor variable
+     * @return the fitted model
+     */
+    public static SimpleLinearModel fit(DataFrame dataFrame, String response, String predictor) {
+        double[] x = dataFrame.getColumn(predictor).toNumberArray();
+        double[] y = dataFrame.getColumn(response).toNumberArray();
+        int ranges = (x.length + FIT_RANGE - 1) / FIT_RANGE;
+        RegressionAccumulator statistics = IntStream.range(0, ranges).parallel().collect(RegressionAccumulator::new,
+                (accumulator, r) -> accumulator.add(x, y, r * FIT_RANGE, Math.min(x.length, (r + 1) * FIT_RANGE)),
+                RegressionAccumulator::merge);
+        return new SimpleLinearModel(statistics, response, predictor);
+    }
 
-        analyze();
-        analyzeAnova();
+    /**
+     * Fits a simple linear regression model to all rows of a stream, then closes it.
+     * <p>
+     * The sufficient statistics of each batch are accumulated and merged, see {@link RegressionAccumulator}, so only
+     * one batch is held at a time. Rows where either value is not numeric are skipped, as in
+     * {@link #SimpleLinearModel(DataFrame, String, String)}.
+     *
+     * @param stream    the stream, see {@link DataFrameStream}
+     * @param response  the name of the response variable
+     * @param predictor the name of the predictor variable
+     * @return the fitted model
+     * @throws IOException if the source of the stream is not readable
+     */
+    public static SimpleLinearModel fit(DataFrameStream stream, String response, String predictor)
+            throws IOException {
+        RegressionAccumulator statistics = new RegressionAccumulator();
+        stream.forEach(batch -> statistics.add(batch.getColumn(predictor).toNumberArray(),
+                batch.getColumn(response).toNumberArray()));
+        return new SimpleLinearModel(statistics, response, predictor);
+    }
+
+    /**
+     * Fits one simple linear regression model per predictor, all with the same response, in one scan of the data.
+     * <p>
+     * Rows are read in tiles, and the tile of the response is used by every predictor while it is in cache. Each
+     * model skips the rows where its own predictor or the response is not numeric, as if constructed by
+     * {@link #SimpleLinearModel(DataFrame, String, String)}. Row ranges are scanned in parallel.
+     *
+     * @param dataFrame  the data frame
+     * @param response   the name of the response variable
+     * @param predictors the names of the predictor variables
+     * @return the fitted models, in the order of <code>predictors</code>
+     */
+    public static List<SimpleLinearModel> fitAll(DataFrame dataFrame, String response, String... predictors) {
+        double[] y = dataFrame.getColumn(response).toNumberArray();
+        double[][] x = new double[predictors.length][];
+        for (int j = 0; j < predictors.length; j++) x[j] = dataFrame.getColumn(predictors[j]).toNumberArray();
+        int ranges = (y.length + FIT_RANGE - 1) / FIT_RANGE;
+        RegressionAccumulator[] statistics = IntStream.range(0, ranges).parallel().collect(
+                () -> {
+                    RegressionAccumulator[] accumulators = new RegressionAccumulator[predictors.length];
+                    for (int j = 0; j < predictors.length; j++) accumulators[j] = new RegressionAccumulator();
+                    return accumulators;
+                },
+                (accumulators, r) -> {
+                    int to = Math.min(y.length, (r + 1) * FIT_RANGE);
+                    for (int from = r * FIT_RANGE; from < to; from += FIT_TILE) {
+                        int end = Math.min(to, from + FIT_TILE);
+                        for (int j = 0; j < predictors.length; j++) accumulators[j].add(x[j], y, from, end);
+                    }
+                },
+                (accumulators, others) -> {
+                    for (int j = 0; j < predictors.length; j++) accumulators[j].merge(others[j]);
+                });
+        List<SimpleLinearModel> models = new ArrayList<>();
+        for (int j = 0; j < predictors.length; j++) {
+            models.add(new SimpleLinearModel(statistics[j], response, predictors[j]));
+        }
+        return models;
+    }
+
+    /**
+     * Fits one simple linear regression model per group of rows, like <code>lm</code> by group in R.
+     * <p>
+     * The response and predictor are read once, and each group accumulates the statistics of its own rows, found by
+     * {@link DataFrame#groupBy(String...)}. Groups are fitted in parallel on the common (work-stealing) ForkJoinPool.
+     *
+     * @param dataFrame the data frame
+     * @param response  the name of the response variable
+     * @param predictor the name of the predictor variable
+     * @param keyNames  titles of the columns whose values define the groups
+     * @return a DataFrame with the key columns, then columns n, intercept, slope, intercept_std_error,
+     * slope_std_error and r_squared, one row per group. Groups with less than 3 numeric rows have NA statistics.
+     */
+    public static DataFrame fitByGroup(DataFrame dataFrame, String response, String predictor, String... keyNames) {
+        GroupedDataFrame groups = dataFrame.groupBy(keyNames);
+        double[] x = dataFrame.getColumn(predictor).toNumberArray();
+        double[] y = dataFrame.getColumn(response).toNumberArray();
+        int groupsCount = groups.groupsCount();
+        SimpleLinearModel[] models = new SimpleLinearModel[groupsCount];
+        IntStream.range(0, groupsCount).parallel().forEach(g -> {
+            RegressionAccumulator statistics = new RegressionAccumulator();
+            for (int row : groups.rowIndexes(g)) statistics.add(x[row], y[row]);
+            models[g] = new SimpleLinearModel(statistics, response, predictor);
+        });
+
+        String[] names = {"n", "intercept", "slope", "intercept_std_error", "slope_std_error", "r_squared"};
+        double[][] values = new double[names.length][groupsCount];
+        for (int g = 0; g < groupsCount; g++) {
+            SimpleLinearModel model = models[g];
+            boolean fitted = model.degreesOfFreedom() > 0;
+            values[0][g] = model.n;
+            values[1][g] = fitted ? model.estimates[0] : Double.NaN;
+            values[2][g] = fitted ? model.estimates[1] : Double.NaN;
+            values[3][g] = fitted ? model.stdErrors[0] : Double.NaN;
+            values[4][g] = fitted ? model.stdErrors[1] : Double.NaN;
+            values[5][g] = fitted ? model.rSquared : Double.NaN;
+        }
+        List<DataColumn> columns = new ArrayList<>();
+        DataFrame keys = groups.keys();
+        for (int c = 0; c < keys.columnsCount(); c++) columns.add(keys.getColumn(c));
+        for (int c = 0; c < names.length; c++) columns.add(DataColumn.of(names[c], values[c]));
+        return DataFrame.fromColumns(columns);
     }
 
     /**
@@ -143,30 +316,54 @@ public class SimpleLinearModel {
         return n - 2;
     }
 
-    private void analyze() {
+    private void analyze(DataColumn responseCol, DataColumn predictorCol) {
         double yMean = responseCol.mean();  // y_bar
         double xMean = predictorCol.mean();  // x_bar
         n = responseCol.size();
 
-        double sxx = 0.0;
-        double sxy = 0.0;
-        double syy = 0.0;
-
         // Least Squared Sum
         // Sxx = sum((x_bar - x_i)^2)
         // Syy = sum((y_bar - y_i)^2)
         // Sxy = sum((x_bar - x_i) * (y_bar - y_i))
-        for (int i = 0; i < n; i++) {
-            double xi = predictorCol.get(i).getNumberValue();
-            double yi = responseCol.get(i).getNumberValue();
+        double[] x = predictorCol.toNumberArray();
+        double[] y = responseCol.toNumberArray();
+        double[] moments = NumericKernels.get().centeredMoments(x, y, 0, n, xMean, yMean);
+        double sxx = moments[0];
+        double sxy = moments[1];
+        double syy = moments[2];
+        estimate(xMean, yMean, sxx, sxy, syy);
+        double slope = estimates[1];
+        double intercept = estimates[0];
 
-            double xDiff = xi - xMean;
-            double yDiff = yi - yMean;
+        rss = 0.0;  // residual squared sum
+        ssReg = 0.0;  // regression total squares
+        for (int i = 0; i < n; i++) {
+            if (Double.isNaN(x[i]) || Double.isNaN(y[i])) continue;
+            double xi = x[i];
+            double yi = y[i];
 
-            sxx += Math.pow(xDiff, 2);
-            syy += Math.pow(yDiff, 2);
-            sxy += xDiff * yDiff;
+            double predict = intercept + slope * xi;
+            double residual = yi - predict;
+            double reg = yMean - predict;
+            rss += Math.pow(residual, 2);
+            ssReg += Math.pow(reg, 2);
         }
+        estimateErrors(xMean, sxx);
+    }
+
+    private void analyze(RegressionAccumulator statistics) {
+        n = Math.toIntExact(statistics.count());
+        double sxx = statistics.sxx();
+        double sxy = statistics.sxy();
+        estimate(statistics.xMean(), statistics.yMean(), sxx, sxy, statistics.syy());
+
+        // SSReg = sum((y_bar - y_hat_i)^2) = b1^2 * Sxx, RSS = Syy - SSReg
+        ssReg = estimates[1] * sxy;
+        rss = Math.max(0.0, sst - ssReg);
+        estimateErrors(statistics.xMean(), sxx);
+    }
+
+    private void estimate(double xMean, double yMean, double sxx, double sxy, double syy) {
         sst = syy;
 
         double slope = sxy / sxx;  // estimated b1
@@ -175,20 +372,9 @@ public class SimpleLinearModel {
         estimates[0] = intercept;
         correlation = sxy / Math.sqrt(sxx * syy);  // r
         rSquared = Math.pow(correlation, 2);  // R^2
+    }
 
-        rss = 0.0;  // residual squared sum
-        ssReg = 0.0;  // regression total squares
-        for (int i = 0; i < n; i++) {
-            if (!predictorCol.get(i).isNumber() || !responseCol.get(i).isNumber()) continue;
-            double xi = predictorCol.get(i).getNumberValue();
-            double yi = responseCol.get(i).getNumberValue();
-
-            double predict = intercept + slope * xi;
-            double residual = yi - predict;
-            double reg = yMean - predict;
-            rss += Math.pow(residual, 2);
-            ssReg += Math.pow(reg, 2);
-        }
+    private void estimateErrors(double xMean, double sxx) {
         mse = rss / degreesOfFreedom();
 
         stdErrors[1] = Math.sqrt(mse / sxx);  // standard error of slope estimator
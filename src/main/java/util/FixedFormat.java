@@ -0,0 +1,207 @@
+package util;
+
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
+/**
+ * Formats doubles with a fixed number of digits after the decimal separator, with the same text as
+ * <code>String.format("%.<i>precision</i>f", value)</code>.
+ * <p>
+ * Like {@link java.util.Formatter}, the decimal digits of a double are its shortest decimal, see
+ * {@link ShortestDouble}, rounded half up to <code>precision</code> digits after the point and padded with zeros.
+ * The sign of negative values is kept even when they round to zero, NaN and infinities are written as by
+ * <code>Double.toString</code>, and the zero digit and decimal separator are taken from the locale.
+ * <p>
+ * Integers from 2<sup>54</sup> to 2<sup>63</sup> get the digits of the JDK, which has changed across versions: some
+ * round the last digits of the long conversion to zeros, others write the shortest decimal. How the running JDK
+ * writes each binary exponent is measured once, on a few probe values, when the class is initialized. Magnitudes of
+ * 2<sup>63</sup> or more, whose JDK digits are not always the shortest, are formatted by <code>String.format</code>.
+ * <p>
+ * The digits are written straight to a StringBuilder, with no intermediate objects, through a scratch buffer owned by
+ * the instance. Instances are therefore not thread-safe, keep one per thread.
+ */
+public final class FixedFormat {
+
+    private static final int MIN_LONG_EXPONENT = 54;
+    private static final int MAX_INSIGNIFICANT_DIGITS = 5;
+    private static final int SHORTEST = -1;  // digits of ShortestDouble
+    private static final int FORMATTER = -2;  // digits of String.format
+    private static final int[] LONG_DIGITS = new int[Long.SIZE - 1 - MIN_LONG_EXPONENT];  // by exponent from 54 to 62
+
+    static {
+        for (int exponent = MIN_LONG_EXPONENT; exponent < Long.SIZE - 1; exponent++) {
+            LONG_DIGITS[exponent - MIN_LONG_EXPONENT] = jdkDigits(exponent);
+        }
+    }
+
+    private final int precision;
+    private final Locale locale;
+    private final String pattern;
+    private final char zero;
+    private final char decimalSeparator;
+    private final byte[] digits = new byte[ShortestDouble.MAX_LENGTH + 1];  // one more for a carry
+
+    /**
+     * Formats with the symbols of the default locale for formatting, as <code>String.format</code>.
+     *
+     * @param precision the number of digits after the decimal separator
+     */
+    public FixedFormat(int precision) {
+        this(precision, Locale.getDefault(Locale.Category.FORMAT));
+    }
+
+    /**
+     * @param precision the number of digits after the decimal separator
+     * @param locale    the locale of the zero digit and the decimal separator
+     */
+    public FixedFormat(int precision, Locale locale) {
+        if (precision < 0) throw new IllegalArgumentException("Precision must not be negative: " + precision + ".");
+        this.precision = precision;
+        this.locale = locale;
+        this.pattern = "%." + precision + "f";
+        DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(locale);
+        this.zero = symbols.getZeroDigit();
+        this.decimalSeparator = symbols.getDecimalSeparator();
+    }
+
+    /**
+     * @return the number of digits after the decimal separator
+     */
+    public int precision() {
+        return precision;
+    }
+
+    /**
+     * @param value the double
+     * @return <code>value</code> with {@link #precision()} digits after the decimal separator
+     */
+    public String format(double value) {
+        return format(value, new StringBuilder(24)).toString();
+    }
+
+    /**
+     * Appends <code>value</code> with {@link #precision()} digits after the decimal separator.
+     *
+     * @param value   the double
+     * @param builder the destination
+     * @return <code>builder</code>
+     */
+    public StringBuilder format(double value, StringBuilder builder) {
+        if (Double.isNaN(value)) return builder.append("NaN");
+        if (Double.isInfinite(value)) return builder.append(value > 0 ? "Infinity" : "-Infinity");
+
+        int binaryExponent = Math.getExponent(value);
+        int mode = binaryExponent >= Long.SIZE - 1 ? FORMATTER
+                : binaryExponent >= MIN_LONG_EXPONENT ? LONG_DIGITS[binaryExponent - MIN_LONG_EXPONENT] : SHORTEST;
+        return format(value, builder, mode);
+    }
+
+    /**
+     * @param mode {@link #SHORTEST}, {@link #FORMATTER}, or the number of last digits of the long conversion that are
+     *             rounded to zeros
+     */
+    private StringBuilder format(double value, StringBuilder builder, int mode) {
+        if (mode == FORMATTER) return builder.append(String.format(locale, pattern, value));
+
+        // compacts the decimal to its digits, after a leading '0' that takes the carry of rounding
+        int end = mode == SHORTEST ? ShortestDouble.format(value, digits, 1) : longDigits(Math.abs(value), mode);
+        int start = digits[1] == '-' ? 2 : 1;
+        int count = 0;
+        int point = -1;  // digits before the point, -1 until seen
+        int exponent = 0;
+        digits[count++] = '0';
+        for (int i = start; i < end; i++) {
+            byte b = digits[i];
+            if (b == '.') {
+                point = count;
+            } else if (b == 'E') {
+                exponent = parseExponent(i + 1, end);
+                break;
+            } else {
+                digits[count++] = b;
+            }
+        }
+        if (point < 0) point = count;
+        point += exponent;
+
+        int kept = point + precision;  // digits kept by rounding
+        if (kept < count) {
+            if (kept <= 0) {
+                count = 0;
+            } else {
+                if (digits[kept] >= '5') {
+                    int i = kept - 1;
+                    while (digits[i] == '9') digits[i--] = '0';
+                    digits[i]++;
+                }
+                count = kept;
+            }
+        }
+
+        if (Double.compare(value, 0.0) < 0) builder.append('-');
+        int first = 0;  // skips leading zeros of the integer part, but keeps one
+        while (first < point - 1 && first < count && digits[first] == '0') first++;
+        for (int i = first; i < point; i++) appendDigit(builder, i < count ? digits[i] : '0');
+        if (point <= 0) appendDigit(builder, '0');
+        if (precision > 0) builder.append(decimalSeparator);
+        for (int i = point; i < point + precision; i++) appendDigit(builder, 0 <= i && i < count ? digits[i] : '0');
+        return builder;
+    }
+
+    /**
+     * Writes the digits of an integer as the JDK does, with the <code>insignificant</code> last ones rounded half up to
+     * zeros, from index 1.
+     *
+     * @return the index after the last digit
+     */
+    private int longDigits(double value, int insignificant) {
+        long l = (long) value;
+        long zeros = 1;
+        for (int i = 0; i < insignificant; i++) zeros *= 10;
+        long residue = l % zeros;
+        l /= zeros;
+        if (residue >= zeros / 2 && insignificant > 0) l++;
+        int end = 1;
+        for (long rest = l; rest > 0; rest /= 10) end++;
+        for (int i = end - 1; i >= 1; i--) {
+            digits[i] = (byte) ('0' + l % 10);
+            l /= 10;
+        }
+        for (int i = 0; i < insignificant; i++) digits[end++] = '0';
+        return end;
+    }
+
+    /**
+     * @return the first mode that gives the digits of <code>String.format</code> for probe values of the binary
+     * <code>exponent</code>, {@link #FORMATTER} if none does
+     */
+    private static int jdkDigits(int exponent) {
+        double[] probes = {
+                Math.scalb(0x1.fffffffffffffp0, exponent),
+                Math.scalb(0x1.5555555555555p0, exponent),
+                Math.scalb(0x1.0000000000001p0, exponent)
+        };
+        FixedFormat format = new FixedFormat(0, Locale.ROOT);
+        for (int mode = 0; mode <= MAX_INSIGNIFICANT_DIGITS + 1; mode++) {
+            int candidate = mode <= MAX_INSIGNIFICANT_DIGITS ? mode : SHORTEST;
+            boolean matches = true;
+            for (double probe : probes) {
+                String expected = String.format(Locale.ROOT, "%.0f", probe);
+                matches &= format.format(probe, new StringBuilder(24), candidate).toString().equals(expected);
+            }
+            if (matches) return candidate;
+        }
+        return FORMATTER;
+    }
+
+    private int parseExponent(int from, int to) {
+        boolean negative = digits[from] == '-';
+        int e = 0;
+        for (int i = negative ? from + 1 : from; i < to; i++) e = 10 * e + (digits[i] - '0');
+        return negative ? -e : e;
+    }
+
+    private void appendDigit(StringBuilder builder, int digit) {
+        builder.append((char) (zero + digit - '0'));
+    }
+}
@@ -0,0 +1,102 @@
+package util;
+
+/**
+ * Aggregation loops over double arrays, used by column statistics and linear models.
+ * <p>
+ * NaN values are skipped, and pairs of values are skipped if either of them is NaN.
+ * <p>
+ * {@link #get()} returns SIMD kernels built on the incubating JDK Vector API if they were compiled (Maven profile
+ * <code>vector</code>) and the JVM runs with <code>--add-modules jdk.incubator.vector</code>, otherwise plain scalar
+ * loops.
+ */
+public abstract class NumericKernels {
+
+    private static final String VECTOR_KERNELS = "util.VectorKernels";
+    private static final NumericKernels INSTANCE = load();
+
+    NumericKernels() {
+    }
+
+    /**
+     * @return the fastest kernels available in this JVM
+     */
+    public static NumericKernels get() {
+        return INSTANCE;
+    }
+
+    private static NumericKernels load() {
+        try {
+            return (NumericKernels) Class.forName(VECTOR_KERNELS).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return new ScalarKernels();  // not compiled, or jdk.incubator.vector not resolved
+        }
+    }
+
+    /**
+     * @return whether these kernels use SIMD instructions
+     */
+    public abstract boolean isVectorized();
+
+    /**
+     * @param values the values
+     * @param from   beginning index, inclusive
+     * @param to     ending index, exclusive
+     * @return the number of values that are not NaN
+     */
+    public abstract int count(double[] values, int from, int to);
+
+    /**
+     * @param values the values
+     * @param from   beginning index, inclusive
+     * @param to     ending index, exclusive
+     * @return the sum of values that are not NaN, 0 if none
+     */
+    public abstract double sum(double[] values, int from, int to);
+
+    /**
+     * @param values the values
+     * @param from   beginning index, inclusive
+     * @param to     ending index, exclusive
+     * @return the mean of values that are not NaN, Double.NaN if none
+     */
+    public abstract double mean(double[] values, int from, int to);
+
+    /**
+     * @param values the values
+     * @param from   beginning index, inclusive
+     * @param to     ending index, exclusive
+     * @return the minimum of values that are not NaN, Double.MAX_VALUE if none
+     */
+    public abstract double min(double[] values, int from, int to);
+
+    /**
+     * @param values the values
+     * @param from   beginning index, inclusive
+     * @param to     ending index, exclusive
+     * @return the maximum of values that are not NaN, -Double.MAX_VALUE if none
+     */
+    public abstract double max(double[] values, int from, int to);
+
+    /**
+     * @param x    the first values
+     * @param y    the second values
+     * @param from beginning index, inclusive
+     * @param to   ending index, exclusive
+     * @return sum(x_i * y_i)
+     */
+    public abstract double dot(double[] x, double[] y, int from, int to);
+
+    /**
+     * Computes the centered second moments used by least squares.
+     *
+     * @param x     the predictor values
+     * @param y     the response values
+     * @param from  beginning index, inclusive
+     * @param to    ending index, exclusive
+     * @param xMean center of <code>x</code>
+     * @param yMean center of <code>y</code>
+     * @return {Sxx, Sxy, Syy}, where Sxx = sum((x_i - xMean)^2), Sxy = sum((x_i - xMean) * (y_i - yMean)) and
+     * Syy = sum((y_i - yMean)^2)
+     */
+    public abstract double[] centeredMoments(double[] x, double[] y, int from, int to, double xMean, double yMean);
+}
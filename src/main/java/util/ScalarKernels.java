@@ -0,0 +1,87 @@
+package util;
+
+/**
+ * The portable kernels, one value at a time.
+ */
+final class ScalarKernels extends NumericKernels {
+
+    @Override
+    public boolean isVectorized() {
+        return false;
+    }
+
+    @Override
+    public int count(double[] values, int from, int to) {
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            if (!Double.isNaN(values[i])) count++;
+        }
+        return count;
+    }
+
+    @Override
+    public double sum(double[] values, int from, int to) {
+        double sum = 0.0;
+        for (int i = from; i < to; i++) {
+            if (!Double.isNaN(values[i])) sum += values[i];
+        }
+        return sum;
+    }
+
+    @Override
+    public double mean(double[] values, int from, int to) {
+        double sum = 0.0;
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            if (!Double.isNaN(values[i])) {
+                sum += values[i];
+                count++;
+            }
+        }
+        return sum / count;
+    }
+
+    @Override
+    public double min(double[] values, int from, int to) {
+        double min = Double.MAX_VALUE;
+        for (int i = from; i < to; i++) {
+            if (values[i] < min) min = values[i];
+        }
+        return min;
+    }
+
+    @Override
+    public double max(double[] values, int from, int to) {
+        double max = -Double.MAX_VALUE;
+        for (int i = from; i < to; i++) {
+            if (values[i] > max) max = values[i];
+        }
+        return max;
+    }
+
+    @Override
+    public double dot(double[] x, double[] y, int from, int to) {
+        double sum = 0.0;
+        for (int i = from; i < to; i++) {
+            if (Double.isNaN(x[i]) || Double.isNaN(y[i])) continue;
+            sum += x[i] * y[i];
+        }
+        return sum;
+    }
+
+    @Override
+    public double[] centeredMoments(double[] x, double[] y, int from, int to, double xMean, double yMean) {
+        double sxx = 0.0;
+        double sxy = 0.0;
+        double syy = 0.0;
+        for (int i = from; i < to; i++) {
+            double xDiff = x[i] - xMean;
+            double yDiff = y[i] - yMean;
+            if (Double.isNaN(xDiff) || Double.isNaN(yDiff)) continue;
+            sxx += xDiff * xDiff;
+            sxy += xDiff * yDiff;
+            syy += yDiff * yDiff;
+        }
+        return new double[]{sxx, sxy, syy};
+    }
+}
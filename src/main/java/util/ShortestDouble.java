@@ -0,0 +1,258 @@
+package util;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Formats a double as the shortest decimal that reads back as the same double, in the layout of
+ * {@link Double#toString(double)}: plain notation between 10<sup>-3</sup> and 10<sup>7</sup>, computerized scientific
+ * notation otherwise, and at least one digit after the point.
+ * <p>
+ * The digits are computed with the Schubfach algorithm of R. Giulietti, "The Schubfach way to render doubles"
+ * (2020): the bounds of the rounding interval of the double are scaled by a 126-bit approximation of a power of ten
+ * with a few 64-bit multiplications, and the shortest decimal inside the interval is picked directly. Nothing is
+ * allocated, digits are written as ASCII bytes.
+ * <p>
+ * Unlike <code>Double.toString</code> before Java 19, which may print one or two digits more than needed, the result
+ * is always the shortest, and the closest to the double among the shortest.
+ */
+public final class ShortestDouble {
+
+    /**
+     * The maximum number of bytes written for a double, e.g. <code>-2.2250738585072014E-308</code>.
+     */
+    public static final int MAX_LENGTH = 24;
+
+    private static final int P = 53;  // precision
+    private static final int Q_MIN = -1074;  // minimum binary exponent of the integer significand
+    private static final long C_MIN = 1L << P - 1;
+    private static final int C_TINY = 3;  // subnormal significands below need one more digit of scale
+    private static final int K_MIN = -324;
+    private static final int K_MAX = 292;
+    private static final int H = 17;  // maximum number of significant digits
+    private static final long MASK_63 = (1L << 63) - 1;
+    private static final int MASK_28 = (1 << 28) - 1;
+
+    private static final long[] POWERS_OF_TEN = new long[H + 1];
+    private static final long[] G1 = new long[K_MAX - K_MIN + 1];  // g = floor(10^-k 2^r) + 1 = G1 2^63 + G0,
+    private static final long[] G0 = new long[K_MAX - K_MIN + 1];  // with r such that 2^125 <= g < 2^126
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i <= H; i++) POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        for (int k = K_MIN; k <= K_MAX; k++) {
+            BigInteger g;
+            if (k <= 0) {
+                BigInteger power = BigInteger.TEN.pow(-k);
+                int shift = 126 - power.bitLength();
+                g = shift >= 0 ? power.shiftLeft(shift) : power.shiftRight(-shift);
+            } else {
+                BigInteger power = BigInteger.TEN.pow(k);
+                g = BigInteger.ONE.shiftLeft(power.bitLength() + 125).divide(power);
+            }
+            g = g.add(BigInteger.ONE);
+            G1[k - K_MIN] = g.shiftRight(63).longValue();
+            G0[k - K_MIN] = g.longValue() & MASK_63;
+        }
+    }
+
+    private ShortestDouble() {
+    }
+
+    /**
+     * @param value the double
+     * @return the shortest decimal of <code>value</code>, the same text as {@link #format(double, byte[], int)}
+     */
+    public static String toString(double value) {
+        byte[] bytes = new byte[MAX_LENGTH];
+        return new String(bytes, 0, format(value, bytes, 0), StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Writes the shortest decimal of <code>value</code>. NaN and infinities are written as by
+     * <code>Double.toString</code>.
+     *
+     * @param value the double
+     * @param bytes the destination, with at least {@value #MAX_LENGTH} bytes from <code>index</code>
+     * @param index the index of the first byte to write
+     * @return the index after the last byte written
+     */
+    public static int format(double value, byte[] bytes, int index) {
+        long bits = Double.doubleToRawLongBits(value);
+        long t = bits & C_MIN - 1;
+        int bq = (int) (bits >>> P - 1) & 0x7ff;
+        if (bq == 0x7ff) return ascii(t != 0 ? "NaN" : bits > 0 ? "Infinity" : "-Infinity", bytes, index);
+        if (bits < 0) bytes[index++] = '-';
+        if (bq != 0) {  // normal
+            int mq = -Q_MIN + 1 - bq;
+            long c = C_MIN | t;
+            if (0 < mq && mq < P) {  // an integer below 2^53
+                long f = c >> mq;
+                if (f << mq == c) return digits(f, 0, bytes, index);
+            }
+            return decimal(-mq, c, 0, bytes, index);
+        }
+        if (t == 0) return ascii("0.0", bytes, index);
+        return t < C_TINY ? decimal(Q_MIN, 10 * t, -1, bytes, index) : decimal(Q_MIN, t, 0, bytes, index);
+    }
+
+    /**
+     * Picks the shortest decimal in the rounding interval of <code>c 2^q</code>, see figure 7 of the paper.
+     */
+    private static int decimal(int q, long c, int dk, byte[] bytes, int index) {
+        int out = (int) c & 0x1;
+        long cb = c << 2;
+        long cbr = cb + 2;
+        long cbl;
+        int k;
+        if (c != C_MIN || q == Q_MIN) {  // regular spacing
+            cbl = cb - 2;
+            k = floorLog10Pow2(q);
+        } else {  // the lower neighbour is closer
+            cbl = cb - 1;
+            k = floorLog10ThreeQuartersPow2(q);
+        }
+        int h = q + floorLog2Pow10(-k) + 2;
+        long g1 = G1[k - K_MIN];
+        long g0 = G0[k - K_MIN];
+        long vb = roundToOdd(g1, g0, cb << h);
+        long vbl = roundToOdd(g1, g0, cbl << h);
+        long vbr = roundToOdd(g1, g0, cbr << h);
+
+        long s = vb >> 2;
+        if (s >= 100) {  // one digit less, if exactly one of its neighbours is in the interval
+            long sp10 = 10 * Math.multiplyHigh(s, 115_292_150_460_684_698L << 4);
+            long tp10 = sp10 + 10;
+            boolean upIn = vbl + out <= sp10 << 2;
+            boolean wpIn = (tp10 << 2) + out <= vbr;
+            if (upIn != wpIn) return digits(upIn ? sp10 : tp10, k, bytes, index);
+        }
+        long t = s + 1;
+        boolean uIn = vbl + out <= s << 2;
+        boolean wIn = (t << 2) + out <= vbr;
+        if (uIn != wIn) return digits(uIn ? s : t, k + dk, bytes, index);
+        long cmp = vb - (s + t << 1);  // both are in the interval, the closest wins, the even one on ties
+        return digits(cmp < 0 || cmp == 0 && (s & 0x1) == 0 ? s : t, k + dk, bytes, index);
+    }
+
+    /**
+     * @return cp g 2^-127 rounded to odd, with g = g1 2^63 + g0
+     */
+    private static long roundToOdd(long g1, long g0, long cp) {
+        long x1 = Math.multiplyHigh(g0, cp);
+        long y0 = g1 * cp;
+        long y1 = Math.multiplyHigh(g1, cp);
+        long z = (y0 >>> 1) + x1;
+        long vbp = y1 + (z >>> 63);
+        return vbp | (z & MASK_63) + MASK_63 >>> 63;
+    }
+
+    private static int floorLog10Pow2(int e) {
+        return (int) (e * 661_971_961_083L >> 41);
+    }
+
+    private static int floorLog10ThreeQuartersPow2(int e) {
+        return (int) (e * 661_971_961_083L - 274_743_187_321L >> 41);
+    }
+
+    private static int floorLog2Pow10(int e) {
+        return (int) (e * 913_124_641_741L >> 38);
+    }
+
+    /**
+     * Writes <code>f 10^e</code> in the layout of <code>Double.toString</code>.
+     */
+    private static int digits(long f, int e, byte[] bytes, int index) {
+        int len = floorLog10Pow2(Long.SIZE - Long.numberOfLeadingZeros(f));
+        if (f >= POWERS_OF_TEN[len]) len++;
+        f *= POWERS_OF_TEN[H - len];  // now 10^16 <= f < 10^17 and the value is 0.f 10^e
+        e += len;
+
+        long hm = Math.multiplyHigh(f, 193_428_131_138_340_668L) >>> 20;  // f / 10^8
+        int l = (int) (f - 100_000_000L * hm);
+        int h = (int) (hm * 1_441_151_881L >>> 57);  // hm / 10^8
+        int m = (int) (hm - 100_000_000 * h);
+
+        if (0 < e && e <= 7) {  // plain, no leading zero
+            bytes[index++] = (byte) ('0' + h);
+            int y = scaled(m);
+            int i = 1;
+            for (; i < e; i++) {
+                int t = 10 * y;
+                bytes[index++] = (byte) ('0' + (t >>> 28));
+                y = t & MASK_28;
+            }
+            bytes[index++] = '.';
+            for (; i <= 8; i++) {
+                int t = 10 * y;
+                bytes[index++] = (byte) ('0' + (t >>> 28));
+                y = t & MASK_28;
+            }
+            return lowDigits(l, bytes, index);
+        }
+        if (-3 < e && e <= 0) {  // plain, with leading zeros
+            bytes[index++] = '0';
+            bytes[index++] = '.';
+            for (; e < 0; e++) bytes[index++] = '0';
+            bytes[index++] = (byte) ('0' + h);
+            index = eightDigits(m, bytes, index);
+            return lowDigits(l, bytes, index);
+        }
+        bytes[index++] = (byte) ('0' + h);  // scientific
+        bytes[index++] = '.';
+        index = eightDigits(m, bytes, index);
+        index = lowDigits(l, bytes, index);
+        return exponent(e - 1, bytes, index);
+    }
+
+    private static int lowDigits(int l, byte[] bytes, int index) {
+        if (l != 0) index = eightDigits(l, bytes, index);
+        while (bytes[index - 1] == '0') index--;
+        if (bytes[index - 1] == '.') index++;  // keeps one zero after the point
+        return index;
+    }
+
+    /**
+     * Writes the 8 digits of <code>a</code>, left to right, with one multiplication per digit.
+     */
+    private static int eightDigits(int a, byte[] bytes, int index) {
+        int y = scaled(a);
+        for (int i = 0; i < 8; i++) {
+            int t = 10 * y;
+            bytes[index++] = (byte) ('0' + (t >>> 28));
+            y = t & MASK_28;
+        }
+        return index;
+    }
+
+    /**
+     * @return a 10^-8 2^28 rounded so that the digits of <code>a &lt; 10^8</code> are the successive carries of
+     * multiplications by 10
+     */
+    private static int scaled(int a) {
+        return (int) (Math.multiplyHigh((long) (a + 1) << 28, 193_428_131_138_340_668L) >>> 20) - 1;
+    }
+
+    private static int exponent(int e, byte[] bytes, int index) {
+        bytes[index++] = 'E';
+        if (e < 0) {
+            bytes[index++] = '-';
+            e = -e;
+        }
+        if (e >= 100) {
+            int d = e * 1_311 >>> 17;  // e / 100
+            bytes[index++] = (byte) ('0' + d);
+            e -= 100 * d;
+            bytes[index++] = (byte) ('0' + e / 10);
+        } else if (e >= 10) {
+            bytes[index++] = (byte) ('0' + e / 10);
+        }
+        bytes[index++] = (byte) ('0' + e % 10);
+        return index;
+    }
+
+    private static int ascii(String text, byte[] bytes, int index) {
+        for (int i = 0; i < text.length(); i++) bytes[index++] = (byte) text.charAt(i);
+        return index;
+    }
+}
@@ -2,6 +2,8 @@ package util;
 
 public class Utility {
 
+    private static final ThreadLocal<FixedFormat> FOUR_DIGITS = ThreadLocal.withInitial(() -> new FixedFormat(4));
+
     /**
      * Transfer a string matrix to an aligned string grid.
      * <p>
@@ -39,12 +41,12 @@ public class Utility {
     }
 
     /**
-     * Converts a double to a more readable string representation.
+     * Converts a double to a more readable string representation, as <code>String.format("%.4f", value)</code>.
      *
      * @param value the double value
      * @return the string representation
      */
     public static String doubleToString(double value) {
-        return String.format("%.4f", value);
+        return FOUR_DIGITS.get().format(value);
     }
 }
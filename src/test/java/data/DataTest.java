@@ -1,8 +1,23 @@
 package data;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import util.NumericKernels;
+import util.FixedFormat;
+import util.ShortestDouble;
+import util.Utility;
 
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
+import java.util.Random;
 
 public class DataTest {
 
@@ -59,6 +74,91 @@ public class DataTest {
         System.out.println(tidy);
     }
 
+    @Test
+    void testPrint() throws IOException {
+        DataFrame df = DataFrame.fromDataArray(
+                new String[]{"name", "hp", "attack range"},
+                new Object[][]{
+                        {"Garen", 616.0, 125},
+                        {"Annie", "", 625},
+                }
+        );
+        assert df.toString().equals("name , hp   , attack range\n"
+                + "Garen, 616.0, 125.0       \n"
+                + "Annie, NA   , 625.0       \n");
+
+        int rows = 1_000;
+        double[] x = new double[rows];
+        for (int r = 0; r < rows; r++) x[r] = r;
+        ColumnBuilder notes = new ColumnBuilder();
+        for (int r = 0; r < rows; r++) notes.addText(r == 998 ? "a very long note ".repeat(20) : "note");
+        DataFrame large = DataFrame.fromColumns(List.of(DataColumn.of("x", x), new DataColumn("note", notes.build()),
+                DataColumn.of("y", x)));
+        StringBuilder builder = new StringBuilder();
+        large.print(builder, 5, 60);
+        String[] lines = builder.toString().split("\n");
+        assert lines.length == 8 && lines[0].startsWith("x    , note");
+        assert lines[1].startsWith("0.0  , note") && lines[3].startsWith("2.0  , note");
+        assert lines[4].equals("... 995 more rows");
+        assert lines[5].startsWith("998.0, a very long note") && lines[5].endsWith("...");
+        assert lines[6].startsWith("999.0, note");
+        assert lines[7].equals("... 1 more columns");
+        for (String line : lines) assert line.length() <= 60 : line;
+
+        assert large.toString().split("\n").length == 63;  // titles, 60 rows and both markers
+        String full = fullString(large);
+        assert full.split("\n").length == rows + 1 && full.contains("a very long note ".repeat(20));
+        String note = "a very long note ".repeat(6);
+        DataFrame small = DataFrame.fromDataArray(new String[]{"note", "x"}, new Object[][]{{note, 1.0}});
+        assert small.toString().equals("note" + " ".repeat(note.length() - 4) + ", x  \n" + note + ", 1.0\n");
+    }
+
+    private static String fullString(DataFrame df) throws IOException {
+        StringBuilder builder = new StringBuilder();
+        df.print(builder, Integer.MAX_VALUE, Integer.MAX_VALUE);
+        return builder.toString();
+    }
+
+    @Test
+    void testPivotWider() {
+        DataFrame df = DataFrame.fromDataArray(
+                new String[]{"name", "category", "position", "hp", "attack range"},
+                new Object[][]{
+                        {"Garen", "fighter", "top", 616.0, 125},
+                        {"Annie", "mage", "mid", 511.0, ""},
+                        {"Master Yi", "fighter", "jungle", 598.0, 125},
+                        {"Caitlyn", "marksman", "bottom", 524.0, 650}
+                }
+        );
+        DataFrame tidy = df.pivotLonger(List.of("name", "category"), "item", "value");
+        assert tidy.rowsCount() == 12;
+        assert tidy.getCell(4, "name").toString().equals("Annie");
+        assert tidy.getCell(4, "item").toString().equals("hp") && tidy.getCell(5, "value").isNa();
+        assert tidy.getCell(6, "value").toString().equals("jungle");
+
+        // preserved columns are views, so writing to them does not change the original
+        tidy.getCell(0, "name").setValue("Darius");
+        assert tidy.getCell(0, "name").toString().equals("Darius");
+        assert tidy.getCell(1, "name").toString().equals("Garen");
+        assert df.getCell(0, "name").toString().equals("Garen");
+        tidy.getCell(0, "name").setValue("Garen");
+
+        DataFrame wide = tidy.pivotWider("item", "value");
+        assert wide.getTitles().equals(df.getTitles());
+        assert wide.toString().equals(df.toString());
+
+        DataFrame partial = tidy.subFrameByRows(0, 1, 2, 3, 4).pivotWider("item", "value");
+        assert partial.rowsCount() == 2 && partial.getCell(1, "attack range").isNa();
+
+        // nothing to move, and moved columns that are all numeric
+        DataFrame none = df.pivotLonger(df.getTitles(), "item", "value");
+        assert none.rowsCount() == 0;
+        assert none.getTitles().equals(List.of("name", "category", "position", "hp", "attack range", "item", "value"));
+        DataFrame numbers = df.pivotLonger(List.of("name", "category", "position"), "item", "value");
+        assert numbers.rowsCount() == 8 && numbers.getCell(2, "value").getNumberValue() == 511.0;
+        assert numbers.getCell(3, "value").isNa() && numbers.getCell(7, "item").toString().equals("attack range");
+    }
+
     @Test
     void testMutation() {
         DataFrame df = DataFrame.fromDataArray(
@@ -75,4 +175,966 @@ public class DataTest {
         // the value in the original DataFrame should not change
         assert df.getCell(0, "hp").getNumberValue() == 616.0;
     }
+
+    @Test
+    void testCellCopies() {
+        DataFrame df = DataFrame.fromDataArray(
+                new String[]{"name", "hp"},
+                new Object[][]{
+                        {"Garen", 616.0},
+                        {"Annie", 511.0}
+                }
+        );
+        DataFrame df2 = df.subFrameByColumns(0, 1);
+        // copied cells hold their own value
+        DataCell name = df.getCell(0, "name").copy();
+        DataCell hp = df.getCell(0, "hp").copy();
+        df.getCell(0, "name").setValue("Darius");
+        df.getCell(0, "hp").setValue(1.0);
+        assert name.column() == null && name.toString().equals("Garen") && !name.isNumber();
+        assert hp.getNumberValue() == 616.0 && !hp.equals(df2.getCell(1, "hp").copy());
+        name.setValue("\"1\"");
+        assert !name.isNumber() && name.toString().equals("1");
+        hp.setValue(" 1e3 ");
+        assert hp.getNumberValue() == 1000.0 && hp.toString().equals("1e3");
+        DataColumn cells = new DataColumn("cells", List.of(hp, name, df.getCell(1, "name")));
+        assert cells.get(0).toString().equals("1e3") && !cells.get(1).isNumber();
+        assert cells.get(2).equals(df.getCell(1, "name"));
+    }
+
+    @Test
+    void testCellEquality(@TempDir Path dir) throws IOException {
+        // cells are equal if their texts are, whether they view a numeric column, a textual column or nothing
+        Path csv = dir.resolve("cells.csv");
+        Files.writeString(csv, "n,t,\"q\"\n1,1,\"1\"\n1.0,x,1.0\n,,\n");
+        DataFrame df = DataFrame.fromCsv(csv.toFile());
+        DataCell numeric = df.getCell(0, "n");
+        DataCell textual = df.getCell(0, "t");
+        DataCell quoted = df.getCell(0, "q");
+        assert numeric.isNumber() && textual.isNumber() && !quoted.isNumber();
+        for (DataCell cell : new DataCell[]{numeric, textual, quoted, numeric.copy(), textual.copy(),
+                new DataCell("1"), new DataCell(" 1 ")}) {
+            assert cell.equals(numeric) && numeric.equals(cell) && cell.hashCode() == numeric.hashCode() : cell;
+            assert cell.equals(cell.copy()) && cell.copy().equals(cell);
+            assert !cell.equals(df.getCell(1, "n")) && !cell.equals(new DataCell(1.0));
+        }
+        assert df.getCell(1, "n").equals(df.getCell(1, "q")) && df.getCell(1, "n").equals(new DataCell(1.0));
+        assert df.getCell(2, "n").equals(df.getCell(2, "t")) && df.getCell(2, "n").equals(new DataCell(""));
+        assert df.getCell(2, "n").hashCode() == new DataCell(Double.NaN).hashCode();
+    }
+
+    @Test
+    void testColumnarViews() {
+        DataFrame df = DataFrame.fromDataArray(
+                new String[]{"name", "hp", "attack range"},
+                new Object[][]{
+                        {"Garen", 616.0, 125},
+                        {"Annie", "", 625},
+                        {"Master Yi", 598.0, 125}
+                }
+        );
+        // rows and columns are views on the same storage
+        df.getRow(0).get(1).setValue(700.0);
+        assert df.getColumn("hp").get(0).getNumberValue() == 700.0;
+        assert df.getCell(1, "hp").isNa();
+
+        double[] hp = df.getColumn("hp").toNumberArray();
+        assert hp.length == 3 && hp[0] == 700.0 && Double.isNaN(hp[1]) && hp[2] == 598.0;
+
+        // a numeric column accepts text
+        df.getCell(2, "hp").setValue("unknown");
+        assert !df.getCell(2, "hp").isNumber();
+        assert df.getCell(2, "hp").toString().equals("unknown");
+        assert df.getCell(0, "hp").getNumberValue() == 700.0;
+        assert df.getColumn("attack range").sum() == 875.0;
+    }
+
+    @Test
+    void testNumericSubFrame() {
+        DataFrame df = DataFrame.fromDataArray(
+                new String[]{"name", "hp", "attack range"},
+                new Object[][]{
+                        {"Garen", 616.0, 125},
+                        {"Annie", "", 625},
+                        {"Master Yi", 598.0, "melee"},
+                        {"Caitlyn", 524.0, 650}
+                }
+        );
+        assert df.numericSubFrame().rowsCount() == 0;
+        DataFrame numeric = df.numericSubFrame("name");
+        assert numeric.rowsCount() == 2;
+        assert numeric.getCell(1, "name").toString().equals("Caitlyn");
+        assert df.numericSubFrame(" name ", "attack range").rowsCount() == 3;
+
+        // large frames are checked in parallel
+        int rows = 300_000;
+        double[] x = new double[rows];
+        String[] labels = new String[rows];
+        int expected = 0;
+        for (int r = 0; r < rows; r++) {
+            x[r] = r % 7 == 0 ? Double.NaN : r;
+            labels[r] = r % 11 == 0 ? "n/a" : String.valueOf(r);
+            if (r % 7 != 0 && r % 11 != 0) expected++;
+        }
+        ColumnBuilder builder = new ColumnBuilder();
+        for (String label : labels) builder.addText(label);
+        DataFrame large = DataFrame.fromColumns(List.of(new DataColumn("x", NumericVector.of(x)),
+                new DataColumn("label", builder.build())));
+        DataFrame filtered = large.numericSubFrame();
+        assert filtered.rowsCount() == expected;
+        for (int r = 0; r < filtered.rowsCount(); r++) {
+            double value = filtered.getCell(r, "x").getNumberValue();
+            assert value % 7 != 0 && value % 11 != 0;
+            assert filtered.getCell(r, "label").getNumberValue() == value;
+        }
+        assert large.numericSubFrame("label").rowsCount() == rows - (rows + 6) / 7;
+    }
+
+    @Test
+    void testGroupBy() {
+        DataFrame df = DataFrame.fromDataArray(
+                new String[]{"name", "category", "gender", "hp"},
+                new Object[][]{
+                        {"Garen", "fighter", "M", 616.0},
+                        {"Annie", "mage", "F", 511.0},
+                        {"Master Yi", "fighter", "M", 598.0},
+                        {"Caitlyn", "marksman", "F", 524.0},
+                        {"Lux", "mage", "F", ""},
+                        {"Irelia", "fighter", "F", 591.0}
+                }
+        );
+        GroupedDataFrame byCategory = df.groupBy("category");
+        assert byCategory.groupsCount() == 3;
+        assert byCategory.keys().getCell(1, "category").toString().equals("mage");
+        assert Arrays.equals(byCategory.rowIndexes(0), new int[]{0, 2, 5});
+        assert byCategory.group(1).getCell(1, "name").toString().equals("Lux");
+
+        GroupedDataFrame byTwo = df.groupBy("category", "gender");
+        assert byTwo.groupsCount() == 4;
+        assert byTwo.groupSize(0) == 2 && byTwo.groupSize(3) == 1;
+        assert byTwo.keys().getCell(3, "gender").toString().equals("F");
+
+        GroupedDataFrame byHp = df.groupBy("hp");
+        assert byHp.groupsCount() == 6 && byHp.keys().getCell(4, "hp").isNa();
+    }
+
+    @Test
+    void testGroupByMixedKeys() throws IOException {
+        // numbers are keyed by value, texts by text: the quoted "1" is not the number 1
+        ColumnBuilder keys = new ColumnBuilder();
+        for (String text : new String[]{"\"1\"", "1", "0", "-0", "a", "1", "\"1\""}) keys.addText(text);
+        DataFrame df = DataFrame.fromColumns(List.of(new DataColumn("key", keys.build()),
+                DataColumn.of("one", new double[]{1, 1, 1, 1, 1, 1, 1})));
+        GroupedDataFrame byKey = df.groupBy("key");
+        assert byKey.groupsCount() == 4;
+        assert Arrays.equals(byKey.rowIndexes(0), new int[]{0, 6});
+        assert Arrays.equals(byKey.rowIndexes(1), new int[]{1, 5});
+        assert Arrays.equals(byKey.rowIndexes(2), new int[]{2, 3});  // 0 and -0
+        assert !byKey.keys().getCell(0, "key").isNumber() && byKey.keys().getCell(1, "key").isNumber();
+
+        DataFrame whole = df.groupBy("one").agg(Aggregation.nDistinct("key"));
+        assert whole.getCell(0, "n_distinct_key").getNumberValue() == 4;
+        DataFrame streamed = DataFrameStream.of(df, 2).agg(List.of("key"), Aggregation.count());
+        assert streamed.rowsCount() == 4 && streamed.getCell(2, "n").getNumberValue() == 2;
+    }
+
+    @Test
+    void testGroupByAgg() {
+        DataFrame df = DataFrame.fromDataArray(
+                new String[]{"name", "category", "gender", "hp"},
+                new Object[][]{
+                        {"Garen", "fighter", "M", 616.0},
+                        {"Annie", "mage", "F", 511.0},
+                        {"Master Yi", "fighter", "M", 598.0},
+                        {"Caitlyn", "marksman", "F", 524.0},
+                        {"Lux", "mage", "F", ""},
+                        {"Irelia", "fighter", "F", 591.0}
+                }
+        );
+        DataFrame agg = df.groupBy("category").agg(Aggregation.count(), Aggregation.count("hp"),
+                Aggregation.sum("hp"), Aggregation.mean("hp").as("hp"), Aggregation.min("hp"), Aggregation.max("hp"),
+                Aggregation.variance("hp"), Aggregation.nDistinct("gender"));
+        assert agg.getTitles().equals(List.of("category", "n", "count_hp", "sum_hp", "hp", "min_hp", "max_hp",
+                "variance_hp", "n_distinct_gender"));
+        assert agg.rowsCount() == 3;
+        assert agg.getCell(0, "n").getNumberValue() == 3 && agg.getCell(1, "count_hp").getNumberValue() == 1;
+        assert agg.getCell(0, "sum_hp").getNumberValue() == 1805.0 && agg.getCell(1, "hp").getNumberValue() == 511.0;
+        assert agg.getCell(0, "min_hp").getNumberValue() == 591.0 && agg.getCell(0, "max_hp").getNumberValue() == 616;
+        assert Math.abs(agg.getCell(0, "variance_hp").getNumberValue() - 166.333333333333) < 1e-9;
+        assert agg.getCell(1, "variance_hp").isNa() && agg.getCell(2, "variance_hp").isNa();
+        assert agg.getCell(0, "n_distinct_gender").getNumberValue() == 2;
+        assert agg.getCell(2, "n_distinct_gender").getNumberValue() == 1;
+
+        // enough rows to aggregate in parallel
+        int rows = 300_000;
+        int groups = 7;
+        double[] keys = new double[rows];
+        double[] values = new double[rows];
+        double[] sums = new double[groups];
+        double[] mins = new double[groups];
+        Arrays.fill(mins, Double.MAX_VALUE);
+        Random random = new Random(16);
+        for (int r = 0; r < rows; r++) {
+            keys[r] = r % groups;
+            values[r] = random.nextInt(1000);
+            sums[r % groups] += values[r];
+            mins[r % groups] = Math.min(mins[r % groups], values[r]);
+        }
+        DataFrame large = DataFrame.fromColumns(List.of(DataColumn.of("key", keys), DataColumn.of("value", values)));
+        DataFrame result = large.groupBy("key").agg(Aggregation.count(), Aggregation.sum("value"),
+                Aggregation.min("value"), Aggregation.variance("value"), Aggregation.nDistinct("value"));
+        for (int g = 0; g < groups; g++) {
+            assert result.getCell(g, "key").getNumberValue() == g;
+            assert result.getCell(g, "n").getNumberValue() == (rows - g + groups - 1) / groups;
+            assert result.getCell(g, "sum_value").getNumberValue() == sums[g];
+            assert result.getCell(g, "min_value").getNumberValue() == mins[g];
+            assert Math.abs(result.getCell(g, "variance_value").getNumberValue() - 83333.0) < 1000.0;
+            assert result.getCell(g, "n_distinct_value").getNumberValue() == 1000;
+        }
+    }
+
+    @Test
+    void testJoin() throws IOException {
+        DataFrame champions = DataFrame.fromDataArray(
+                new String[]{"name", "category", "hp"},
+                new Object[][]{
+                        {"Garen", "fighter", 616.0},
+                        {"Annie", "mage", 511.0},
+                        {"Master Yi", "fighter", 598.0},
+                        {"Caitlyn", "marksman", 524.0}
+                }
+        );
+        DataFrame categories = DataFrame.fromDataArray(
+                new String[]{"category", "hp", "range"},
+                new Object[][]{
+                        {"mage", 1.0, "ranged"},
+                        {"fighter", 2.0, "melee"},
+                        {"tank", 3.0, "melee"}
+                }
+        );
+        DataFrame inner = champions.join(categories, JoinType.INNER, "category");
+        assert inner.getTitles().equals(List.of("category", "name", "hp.x", "hp.y", "range"));
+        assert inner.rowsCount() == 3;
+        assert inner.getCell(2, "name").toString().equals("Master Yi");
+        assert inner.getCell(2, "range").toString().equals("melee");
+
+        DataFrame left = champions.join(categories, JoinType.LEFT, "category");
+        assert left.rowsCount() == 4 && left.getCell(3, "range").isNa();
+
+        DataFrame outer = champions.join(categories, JoinType.OUTER, "category");
+        assert outer.rowsCount() == 5;
+        assert outer.getCell(4, "category").toString().equals("tank") && outer.getCell(4, "name").isNa();
+        assert outer.getCell(4, "hp.y").getNumberValue() == 3.0;
+
+        // every strategy gives the same rows in the same order
+        int rows = 2_000;
+        Random random = new Random(17);
+        Object[][] leftData = new Object[rows][];
+        Object[][] rightData = new Object[rows / 2][];
+        for (int r = 0; r < rows; r++) leftData[r] = new Object[]{random.nextInt(500), "k" + random.nextInt(3), r};
+        for (int r = 0; r < rows / 2; r++) {
+            rightData[r] = new Object[]{random.nextInt(600), "k" + random.nextInt(4), -r};
+        }
+        DataFrame large = DataFrame.fromDataArray(new String[]{"id", "kind", "value"}, leftData);
+        DataFrame small = DataFrame.fromDataArray(new String[]{"id", "kind", "value"}, rightData);
+        for (JoinType type : JoinType.values()) {
+            // the hash table is built on the right side, then on the left side
+            String hashed = fullString(Join.join(large, small, type, Join.Strategy.HASH, "id", "kind"));
+            assert hashed.equals(fullString(Join.join(large, small, type, Join.Strategy.MERGE, "id", "kind")));
+            hashed = fullString(Join.join(small, large, type, Join.Strategy.HASH, "id", "kind"));
+            assert hashed.equals(fullString(Join.join(small, large, type, Join.Strategy.MERGE, "id", "kind")));
+        }
+        DataFrame inners = Join.join(large, small, JoinType.INNER, Join.Strategy.HASH, "id", "kind");
+        assert inners.rowsCount() > 0;
+        for (int r = 0; r < inners.rowsCount(); r++) {
+            int leftRow = (int) inners.getCell(r, "value.x").getNumberValue();
+            int rightRow = (int) -inners.getCell(r, "value.y").getNumberValue();
+            assert leftData[leftRow][0].equals(rightData[rightRow][0]);
+            assert leftData[leftRow][1].equals(rightData[rightRow][1]);
+        }
+
+        DataFrame sortedLeft = DataFrame.fromColumns(List.of(DataColumn.of("id", new double[]{1, 2, 2, 5})));
+        DataFrame sortedRight = DataFrame.fromColumns(List.of(DataColumn.of("id", new double[]{2, 2, 3, 5}),
+                DataColumn.of("value", new double[]{20, 21, 30, 50})));
+        DataFrame merged = sortedLeft.join(sortedRight, JoinType.OUTER, "id");
+        assert Arrays.equals(merged.getColumn("id").toNumberArray(), new double[]{1, 2, 2, 2, 2, 5, 3});
+        assert Arrays.equals(merged.getColumn("value").toNumberArray(),
+                new double[]{Double.NaN, 20, 21, 20, 21, 50, 30});
+    }
+
+    @Test
+    void testSortBy() {
+        DataFrame df = DataFrame.fromDataArray(
+                new String[]{"name", "category", "hp"},
+                new Object[][]{
+                        {"Garen", "fighter", 616.0},
+                        {"Annie", "mage", 511.0},
+                        {"Master Yi", "fighter", 598.0},
+                        {"Caitlyn", "marksman", 524.0},
+                        {"Lux", "mage", ""},
+                        {"Irelia", "fighter", -591.0}
+                }
+        );
+        DataFrame byHp = df.sortBy("hp");
+        assert Arrays.equals(byHp.getColumn("hp").toNumberArray(),
+                new double[]{-591.0, 511.0, 524.0, 598.0, 616.0, Double.NaN});
+        DataFrame byHpDesc = df.sortBy(SortKey.desc("hp").naFirst());
+        assert Arrays.equals(byHpDesc.getColumn("hp").toNumberArray(),
+                new double[]{Double.NaN, 616.0, 598.0, 524.0, 511.0, -591.0});
+        DataFrame byName = df.sortBy(SortKey.desc("category"), SortKey.asc("name"));
+        assert byName.getColumn("name").toString().equals(df.subFrameByRows(3, 1, 4, 0, 5, 2)
+                .getColumn("name").toString());
+
+        // the order is cached until a key column is written
+        int[] order = df.sortedOrder(SortKey.asc("hp"));
+        assert df.sortedOrder(SortKey.asc(" hp ")) == order;
+        df.getCell(4, "hp").setValue(1.0);
+        assert df.cachedSortedOrder(SortKey.asc("hp")) == null;
+        assert df.sortBy("hp").getCell(1, "name").toString().equals("Lux");
+
+        // large frames are radix sorted
+        int rows = 100_000;
+        Random random = new Random(18);
+        double[] values = new double[rows];
+        for (int r = 0; r < rows; r++) values[r] = random.nextInt(10) == 0 ? Double.NaN : random.nextGaussian() * 1e6;
+        double[] sorted = DataFrame.fromColumns(List.of(DataColumn.of("x", values))).sortBy("x")
+                .getColumn("x").toNumberArray();
+        double[] expected = values.clone();
+        Arrays.sort(expected);  // NaN last
+        assert Arrays.equals(sorted, expected);
+    }
+
+    @Test
+    void testWhere() {
+        DataFrame df = DataFrame.fromDataArray(
+                new String[]{"name", "category", "hp"},
+                new Object[][]{
+                        {"Garen", "fighter", 616.0},
+                        {"Annie", "mage", 511.0},
+                        {"Master Yi", "fighter", 598.0},
+                        {"Caitlyn", "marksman", 524.0},
+                        {"Lux", "mage", ""},
+                        {"Irelia", "fighter", 598.0}
+                }
+        );
+        DataFrame fighters = df.whereEquals("category", "fighter");
+        assert fighters.rowsCount() == 3 && fighters.getCell(2, "name").toString().equals("Irelia");
+        assert df.whereEquals("category", "tank").rowsCount() == 0;
+        assert df.whereEquals("hp", 598).rowsCount() == 2;
+        assert df.whereEquals("hp", "598").getCell(0, "name").toString().equals("Master Yi");
+        assert df.whereEquals("hp", "").getCell(0, "name").toString().equals("Lux");
+        assert df.whereEquals("hp", "\"598\"").rowsCount() == 0;
+        // NaN is no number, it matches neither NA nor the text "NaN"
+        assert df.whereEquals("hp", Double.NaN).rowsCount() == 0;
+        df.getCell(1, "category").setValue("NaN");
+        assert df.whereEquals("category", Double.NaN).rowsCount() == 0;
+        assert df.whereEquals("category", "NaN").getCell(0, "name").toString().equals("Annie");
+        df.getCell(1, "category").setValue("mage");
+        DataFrame between = df.whereBetween("hp", 520, 600);
+        assert between.rowsCount() == 3 && between.getCell(0, "name").toString().equals("Master Yi");
+
+        // indexes are rebuilt after a write
+        df.getCell(4, "category").setValue("fighter");
+        df.getCell(4, "hp").setValue(599.0);
+        assert df.whereEquals("category", "fighter").rowsCount() == 4;
+        assert df.whereBetween("hp", 520, 600).rowsCount() == 4;
+
+        int rows = 1_000_000;
+        ColumnBuilder ids = new ColumnBuilder();
+        double[] values = new double[rows];
+        for (int r = 0; r < rows; r++) {
+            ids.addText("crew" + r);
+            values[r] = r;
+        }
+        DataFrame large = DataFrame.fromColumns(List.of(new DataColumn("crew_id", ids.build()),
+                DataColumn.of("value", values)));
+        assert large.whereEquals("crew_id", "crew123456").getCell(0, "value").getNumberValue() == 123456;
+        assert large.whereEquals("value", 654321).getCell(0, "crew_id").toString().equals("crew654321");
+    }
+
+    @Test
+    void testWhereEqualsMixed() {
+        String[] texts = {"0", "-0.0", "0.0", "-0", "1", "1.0", "\"1\"", "a", "", "2e0", "\"0\""};
+        Random random = new Random(19);
+        ColumnBuilder mixed = new ColumnBuilder();
+        double[] numbers = new double[600];
+        double[] ids = new double[numbers.length];
+        for (int r = 0; r < numbers.length; r++) {
+            mixed.addText(texts[random.nextInt(texts.length)]);
+            numbers[r] = random.nextInt(4) == 0 ? -0.0 : random.nextInt(3);
+            ids[r] = r;
+        }
+        DataFrame df = DataFrame.fromColumns(List.of(new DataColumn("mixed", mixed.build()),
+                DataColumn.of("numbers", numbers), DataColumn.of("id", ids)));
+        for (String colName : new String[]{"mixed", "numbers"}) {
+            for (String probe : texts) {
+                double[] expected = java.util.stream.IntStream.range(0, df.rowsCount())
+                        .filter(r -> matches(df.getCell(r, colName), probe)).asDoubleStream().toArray();
+                double[] found = df.whereEquals(colName, probe).getColumn("id").vector().toNumberArray();
+                assert Arrays.equals(found, expected) : colName + " " + probe;
+            }
+        }
+    }
+
+    /**
+     * The linear scan for whereEquals: numbers match by value, quoted and other texts by text, empty text matches NA.
+     */
+    private static boolean matches(DataCell cell, String probe) {
+        if (probe.isEmpty()) return cell.isNa();
+        double number = NumberParser.parse(probe);
+        if (!Double.isNaN(number)) return cell.isNumber() && cell.getNumberValue() == number;
+        String text = probe.startsWith("\"") ? probe.substring(1, probe.length() - 1) : probe;
+        return !cell.isNa() && !cell.isNumber() && cell.toString().equals(text);
+    }
+
+    @Test
+    void testColumnHandle() {
+        DataFrame df = DataFrame.fromDataArray(
+                new String[]{"name", "hp", "hp"},
+                new Object[][]{
+                        {"Garen", 616.0, 1},
+                        {"Annie", "", 2}
+                }
+        );
+        assert df.indexOfColumn(" hp ") == 1 && df.indexOfColumn("mp") == -1;
+        // names are stripped before the lookup, so a title with surrounding blanks is never found
+        DataFrame padded = DataFrame.fromDataArray(new String[]{" a", "a"}, new Object[][]{{1, 2}});
+        assert padded.indexOfColumn(" a") == 1 && padded.indexOfColumn("a") == 1;
+        ColumnHandle hp = df.handle("hp");
+        assert hp.index() == 1 && hp.name().equals("hp") && hp.size() == 2;
+        assert hp.getNumber(0) == 616.0 && hp.isNa(1) && hp.getText(1).equals("NA");
+
+        hp.setValue(1, "unknown");
+        assert df.getCell(1, "hp").toString().equals("unknown") && !hp.isNumber(1);
+        hp.setValue(0, 700.0);
+        assert df.getCell(0, "hp").getNumberValue() == 700.0 && hp.getCell(0).getNumberValue() == 700.0;
+    }
+
+    @Test
+    void testSummaryStats() {
+        DataFrame df = DataFrame.fromDataArray(
+                new String[]{"name", "hp", "attack range"},
+                new Object[][]{
+                        {"Garen", 616.0, 125},
+                        {"Annie", "", 625},
+                        {"Master Yi", 598.0, "melee"},
+                        {"Caitlyn", 524.0, 650}
+                }
+        );
+        SummaryStats hp = df.getColumn("hp").summaryStats();
+        assert hp.count() == 3 && hp.naCount() == 1;
+        assert hp.sum() == 1738.0 && hp.min() == 524.0 && hp.max() == 616.0;
+        assert Math.abs(hp.mean() - 1738.0 / 3) < 1e-12;
+        assert Math.abs(hp.variance() - 2377.333333333333) < 1e-9;
+
+        SummaryStats range = df.getColumn("attack range").summaryStats();
+        assert range.count() == 3 && range.naCount() == 0 && range.max() == 650.0;
+        assert df.getColumn("attack range").mean() == 1400.0 / 3;
+        SummaryStats row = df.getRow(1).summaryStats();
+        assert row.count() == 1 && row.naCount() == 1 && Double.isNaN(row.variance());
+        // no numeric value, minimum and maximum as LinearDataList.min() and max()
+        DataColumn none = DataColumn.of("none", new double[]{Double.NaN, Double.NaN});
+        DataRow name = df.subFrameByColumns("name").getRow(0);
+        assert none.summaryStats().count() == 0 && Double.isNaN(none.summaryStats().mean());
+        assert none.summaryStats().min() == none.min() && none.summaryStats().max() == none.max();
+        assert name.summaryStats().min() == name.min() && name.summaryStats().max() == name.max();
+        assert df.viewByRowsRange(1, 3).getColumn("hp").summaryStats().count() == 1;
+
+        // blocks are merged without losing the variance of shifted data
+        double[] values = new double[10_000];
+        for (int i = 0; i < values.length; i++) values[i] = 1e9 + i % 7;
+        SummaryStats shifted = DataFrame.fromColumns(List.of(new DataColumn("x", NumericVector.of(values))))
+                .getColumn("x").summaryStats();
+        double mean = 0.0;
+        for (double value : values) mean += (value - 1e9) / values.length;
+        double m2 = 0.0;
+        for (double value : values) m2 += (value - 1e9 - mean) * (value - 1e9 - mean);
+        assert Math.abs(shifted.variance() - m2 / (values.length - 1)) < 1e-9;
+        assert Math.abs(shifted.mean() - 1e9 - mean) < 1e-6;
+    }
+
+    @Test
+    void testNumericKernels() {
+        NumericKernels kernels = NumericKernels.get();
+        System.out.println("Vectorized kernels: " + kernels.isVectorized());
+        Random random = new Random(7);
+        for (int length : new int[]{0, 1, 3, 8, 17, 1000}) {
+            double[] x = new double[length];
+            double[] y = new double[length];
+            for (int i = 0; i < length; i++) {
+                x[i] = random.nextInt(10) == 0 ? Double.NaN : random.nextGaussian() * 100;
+                y[i] = random.nextInt(10) == 0 ? Double.NaN : random.nextGaussian() * 100;
+            }
+            int count = 0;
+            double sum = 0.0, min = Double.MAX_VALUE, max = -Double.MAX_VALUE, dot = 0.0, sxy = 0.0;
+            for (int i = 0; i < length; i++) {
+                if (Double.isNaN(x[i])) continue;
+                count++;
+                sum += x[i];
+                min = Math.min(min, x[i]);
+                max = Math.max(max, x[i]);
+                if (Double.isNaN(y[i])) continue;
+                dot += x[i] * y[i];
+                sxy += (x[i] - 1.0) * (y[i] + 2.0);
+            }
+            DataColumn column = new DataColumn("x", NumericVector.of(x));
+            assert column.numericCellsCount() == count;
+            assert Math.abs(column.sum() - sum) < 1e-9;
+            assert length == 0 ? Double.isNaN(column.mean()) : Math.abs(column.mean() - sum / count) < 1e-9;
+            assert column.min() == min && column.max() == max;
+            assert Math.abs(kernels.dot(x, y, 0, length) - dot) < 1e-9;
+            assert Math.abs(kernels.centeredMoments(x, y, 0, length, 1.0, -2.0)[1] - sxy) < 1e-9;
+        }
+    }
+
+    @Test
+    void testViews() {
+        DataFrame df = DataFrame.fromDataArray(
+                new String[]{"name", "category", "gender", "hp", "attack range"},
+                new Object[][]{
+                        {"Garen", "fighter", "M", 616.0, 125},
+                        {"Annie", "mage", "F", 511.0, 625},
+                        {"Master Yi", "fighter", "M", 598.0, 125},
+                        {"Caitlyn", "marksman", "F", 524.0, 650}
+                }
+        );
+        DataFrame columnView = df.viewByColumns("name", "hp");
+        DataFrame rowView = df.viewByRows(3, 1);
+        DataFrame rangeView = df.viewByRowsRange(1, 3).viewByRows(1);
+        assert columnView.toString().equals(df.subFrameByColumns("name", "hp").toString());
+        assert rowView.toString().equals(df.subFrameByRows(3, 1).toString());
+        assert rangeView.getCell(0, "name").toString().equals("Master Yi");
+
+        // writes through a view copy its column first
+        columnView.getCell(0, "hp").setValue(700.0);
+        rowView.getCell(0, "name").setValue("Jinx");
+        rangeView.getCell(0, "attack range").setValue("melee");
+        assert df.getCell(0, "hp").getNumberValue() == 616.0;
+        assert df.getCell(3, "name").toString().equals("Caitlyn");
+        assert df.getCell(2, "attack range").getNumberValue() == 125.0;
+
+        // and so do writes to the parent
+        df.getCell(1, "hp").setValue(1.0);
+        assert columnView.getCell(1, "hp").getNumberValue() == 511.0;
+        assert rowView.getCell(1, "hp").getNumberValue() == 511.0;
+        assert rowView.getColumn("hp").sum() == 1035.0;
+
+        // once the views have copied it, the parent writes its column in place again
+        DataFrame hpView = df.viewByColumns("hp");
+        DataFrame hpRows = df.viewByRows(0, 0);
+        hpView.getCell(0, "hp").setValue(2.0);
+        hpRows.getCell(0, "hp").setValue(3.0);
+        ColumnVector hp = df.getColumn("hp").vector();
+        df.getCell(0, "hp").setValue(4.0);
+        assert df.getColumn("hp").vector() == hp;
+        assert hpView.getCell(0, "hp").getNumberValue() == 2.0 && hpRows.getCell(1, "hp").getNumberValue() == 616.0;
+    }
+
+    @Test
+    void testCsvQuoting(@TempDir Path dir) throws IOException {
+        Path csv = dir.resolve("quoted.csv");
+        Files.writeString(csv, "\"name\", value ,note\r\n"
+                + "\"Smith, John\",1.5,\"said \"\"hi\"\"\"\r\n"
+                + "\"multi\nline\", 2 ,\n"
+                + "\n"
+                + "plain,\"3\",last");
+        DataFrame df = DataFrame.fromCsv(csv.toFile());
+        assert df.getTitles().equals(List.of("name", "value", "note"));
+        assert df.rowsCount() == 3;
+        assert df.getCell(0, "name").toString().equals("Smith, John");
+        assert df.getCell(0, "note").toString().equals("said \"hi\"");
+        assert df.getCell(1, "name").toString().equals("multi\nline");
+        assert df.getCell(1, "value").getNumberValue() == 2.0;
+        assert df.getCell(1, "note").isNa();
+        // quoted fields are never numeric
+        assert !df.getCell(2, "value").isNumber();
+        assert df.getCell(2, "value").toString().equals("3");
+    }
+
+    @Test
+    void testNumericText(@TempDir Path dir) throws IOException {
+        // numbers keep the text they were read from, in textual and numeric columns
+        Path csv = dir.resolve("zips.csv");
+        Files.writeString(csv, "zip,n\n02139,1\n1e3,2\n 1 ,3\nunknown,4\n");
+        for (DataFrame df : new DataFrame[]{DataFrame.fromCsv(csv.toFile()), DataFrame.fromCsvParallel(csv, 2)}) {
+            assert df.getCell(0, "zip").toString().equals("02139") && df.getCell(0, "zip").getNumberValue() == 2139;
+            assert df.getCell(1, "zip").toString().equals("1e3") && df.getCell(1, "zip").isNumber();
+            assert df.getCell(2, "zip").toString().equals("1");
+            assert df.getCell(0, "n").toString().equals("1");
+        }
+        DataFrame df = DataFrame.fromCsv(csv.toFile());
+        Path out = dir.resolve("out.csv");
+        df.toCsv(out);
+        assert Files.readAllLines(out).get(1).equals("02139,1");
+        Path bin = dir.resolve("zips.bin");
+        df.write(bin);
+        assert DataFrame.read(bin).getCell(1, "zip").toString().equals("1e3");
+
+        DataFrame array = DataFrame.fromDataArray(new String[]{"code"}, new Object[][]{{"007"}, {1}, {"x"}});
+        assert array.getCell(0, "code").toString().equals("007") && array.getCell(0, "code").isNumber();
+        assert array.getCell(1, "code").toString().equals("1.0");
+        df.getCell(3, "zip").setValue("1.0");
+        assert !df.getCell(2, "zip").equals(df.getCell(3, "zip"));
+        assert df.getCell(2, "zip").getNumberValue() == df.getCell(3, "zip").getNumberValue();
+    }
+
+    @Test
+    void testNumericColumnText(@TempDir Path dir) throws IOException {
+        Path csv = dir.resolve("numbers.csv");
+        Files.writeString(csv, "n,m\n1675000,4\n1.50,-0\n1e3,0.1\n,-12\n");
+        String[][] texts = {{"1675000", "4"}, {"1.50", "-0"}, {"1e3", "0.1"}, {"NA", "-12"}};
+        for (DataFrame df : new DataFrame[]{DataFrame.fromCsv(csv.toFile()), DataFrame.fromCsvParallel(csv, 2)}) {
+            assert df.getColumn("n").vector() instanceof NumericVector;
+            assert df.getColumn("m").vector() instanceof NumericVector;
+            assert df.getCell(0, "n").getNumberValue() == 1675000 && df.getCell(2, "n").getNumberValue() == 1000;
+            for (int row = 0; row < texts.length; row++) {
+                assert df.getCell(row, "n").toString().equals(texts[row][0]) : df.getCell(row, "n");
+                assert df.getCell(row, "m").toString().equals(texts[row][1]) : df.getCell(row, "m");
+                assert df.getRow(row).toString().contains(texts[row][1]);
+            }
+        }
+        DataFrame df = DataFrame.fromCsv(csv.toFile());
+        Path out = dir.resolve("out.csv");
+        df.toCsv(out);
+        assert Files.readAllLines(out).equals(Files.readAllLines(csv));
+        Path bin = dir.resolve("numbers.bin");
+        df.write(bin);
+        DataFrame read = DataFrame.read(bin);
+        for (int row = 0; row < texts.length; row++) {
+            assert read.getCell(row, "n").toString().equals(texts[row][0]);
+            assert read.getCell(row, "m").toString().equals(texts[row][1]);
+        }
+        // sorting, filtering and promotion keep the texts, computed numbers get their shortest decimal
+        assert df.sortBy("n").getCell(0, "n").toString().equals("1.50");
+        assert df.whereEquals("m", 4).getCell(0, "n").toString().equals("1675000");
+        df.getCell(3, "n").setValue("x");
+        assert df.getCell(2, "n").toString().equals("1e3") && df.getCell(0, "n").toString().equals("1675000");
+        df.getCell(0, "m").setValue(2.5e-3);
+        assert df.getCell(0, "m").toString().equals("0.0025");
+    }
+
+    @Test
+    void testNumberParser(@TempDir Path dir) throws IOException {
+        Random random = new Random(303);
+        for (int i = 0; i < 100_000; i++) {
+            double value;
+            switch (i % 4) {
+                case 0:
+                    value = random.nextDouble() * 1000;
+                    break;
+                case 1:
+                    value = random.nextGaussian() * 1e-7;
+                    break;
+                case 2:
+                    value = Double.longBitsToDouble(random.nextLong());
+                    break;
+                default:
+                    value = random.nextInt(100_000) / 100.0;
+            }
+            String text = String.valueOf(value);
+            assert Double.compare(NumberParser.parse(text), Double.parseDouble(text)) == 0 : text;
+        }
+        for (String text : new String[]{"12", " -3.25 ", ".5", "2.", "+1e3", "1E-3", "-Infinity", "0.1234567890123456789"}) {
+            assert Double.compare(NumberParser.parse(text), Double.parseDouble(text)) == 0 : text;
+        }
+        // type suffixes and hexadecimal literals, as Double.parseDouble
+        for (String text : new String[]{"1d", "1f", "-2.5e3F", ".5D", "0x1p3", "-0x1.8P1d", " 0X1p-2 "}) {
+            assert Double.compare(NumberParser.parse(text), Double.parseDouble(text)) == 0 : text;
+        }
+        for (String text : new String[]{"", "abc", "NaN", ".", "1e", "1.2.3", "--1", "0x10", "1dd", "d", "1ed", "0x",
+                "12abc", "5\u20ac", "\u00e95", "\u00a05", "5\u00a0", "\u4e945"}) {
+            assert Double.isNaN(NumberParser.parse(text)) : text;
+            byte[] utf8 = text.getBytes(StandardCharsets.UTF_8);
+            assert Double.isNaN(NumberParser.parse(utf8, 0, utf8.length)) : text;
+        }
+
+        // multibyte text next to digits stays text when loaded
+        Path csv = dir.resolve("multibyte.csv");
+        Files.writeString(csv, "price,x\n5\u20ac,1\n\u00a05,2\n7,3\n", StandardCharsets.UTF_8);
+        DataFrame df = DataFrame.fromCsv(csv.toFile());
+        assert df.getCell(0, "price").toString().equals("5\u20ac") && !df.getCell(0, "price").isNumber();
+        assert df.getCell(1, "price").toString().equals("\u00a05") && !df.getCell(1, "price").isNumber();
+        assert df.getCell(2, "price").getNumberValue() == 7.0;
+    }
+
+    @Test
+    void testShortestDouble() {
+        Random random = new Random(303);
+        for (int i = 0; i < 200_000; i++) {
+            double value = i % 2 == 0 ? Double.longBitsToDouble(random.nextLong()) : random.nextInt(1_000_000) / 1000.0;
+            if (Double.isNaN(value)) continue;
+            String text = ShortestDouble.toString(value);
+            assert Double.parseDouble(text) == value : text;
+            assert text.length() <= Double.toString(value).length() : text;
+        }
+        assert ShortestDouble.toString(616.0).equals("616.0");
+        assert ShortestDouble.toString(-0.00125).equals("-0.00125");
+        assert ShortestDouble.toString(1e23).equals("1.0E23");  // Double.toString gives 9.999999999999999E22 before 19
+        assert ShortestDouble.toString(Double.MIN_VALUE).equals("4.9E-324");
+        assert ShortestDouble.toString(Double.NEGATIVE_INFINITY).equals("-Infinity");
+    }
+
+    @Test
+    void testFixedFormat() {
+        Random random = new Random(303);
+        FixedFormat[] formats = new FixedFormat[8];
+        for (int p = 0; p < formats.length; p++) formats[p] = new FixedFormat(p, Locale.ROOT);
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 200_000; i++) {
+            double value = i % 3 == 0 ? Double.longBitsToDouble(random.nextLong())
+                    : i % 3 == 1 ? (random.nextInt(200_000) - 100_000) * 0.00005
+                    : random.nextGaussian() * Math.pow(10, random.nextInt(40) - 20);
+            int p = i % formats.length;
+            builder.setLength(0);
+            String text = formats[p].format(value, builder).toString();
+            assert text.equals(String.format(Locale.ROOT, "%." + p + "f", value)) : value + " " + text;
+        }
+        for (double value : new double[]{0.15, 9.99995, -0.00001, -0.0, Math.pow(2, 60), Double.MAX_VALUE,
+                Double.MIN_VALUE, Double.NaN, Double.NEGATIVE_INFINITY}) {
+            assert Utility.doubleToString(value).equals(String.format("%.4f", value)) : value;
+        }
+        assert new FixedFormat(1, Locale.ROOT).format(0.15).equals("0.2");  // half up on the shortest decimal
+        assert new FixedFormat(2, Locale.GERMANY).format(-1234.567).equals("-1234,57");
+    }
+
+    /**
+     * The digits of integers from 2^54 to 2^63 are measured on the running JDK, checks them on many more values.
+     */
+    @Test
+    void testFixedFormatLargeValues() {
+        Random random = new Random(404);
+        FixedFormat[] formats = new FixedFormat[10];
+        for (int p = 0; p < formats.length; p++) formats[p] = new FixedFormat(p, Locale.ROOT);
+        for (int exponent = 52; exponent <= 66; exponent++) {
+            for (int i = 0; i < 2_000; i++) {
+                double value = Math.scalb(1 + random.nextDouble(), exponent);
+                if (i % 4 == 0) value = Math.scalb(1.0, exponent);
+                if (i % 4 == 1) value = Math.nextDown(Math.scalb(1.0, exponent + 1));
+                if (i % 2 == 0) value = -value;
+                int p = i % formats.length;
+                String expected = String.format(Locale.ROOT, "%." + p + "f", value);
+                assert formats[p].format(value).equals(expected) : value + " " + formats[p].format(value);
+            }
+        }
+    }
+
+    @Test
+    void testCsvWrite(@TempDir Path dir) throws IOException {
+        Path csv = dir.resolve("written.csv");
+        for (String name : new String[]{"data/ship_data.csv", "data/reale_data.csv"}) {
+            DataFrame df = DataFrame.fromCsv(name);
+            df.toCsv(csv);
+            assertSameFrame(df, DataFrame.fromCsv(csv.toFile()));
+        }
+
+        // more rows than a block, with values that need quotes
+        int rows = 3 * CsvWriter.BLOCK_ROWS + 5;
+        Random random = new Random(303);
+        ColumnBuilder notes = new ColumnBuilder();
+        double[] x = new double[rows];
+        for (int r = 0; r < rows; r++) {
+            x[r] = r % 10 == 0 ? Double.NaN : random.nextGaussian() * Math.pow(10, random.nextInt(30) - 15);
+            switch (r % 5) {
+                case 0:
+                    notes.addText("Smith, \"John\"");
+                    break;
+                case 1:
+                    notes.addText("line\nbreak \u00e9");
+                    break;
+                case 2:
+                    notes.addNa();
+                    break;
+                case 3:
+                    notes.addText(" padded ");
+                    break;
+                default:
+                    notes.addField("42".getBytes(), 0, 2, true);  // a quoted number is text
+            }
+        }
+        DataFrame df = DataFrame.fromColumns(List.of(DataColumn.of("x", x),
+                new DataColumn("note, quoted", notes.build())));
+        df.getCell(3, "note, quoted").setValue("1.5");
+        df.toCsv(csv);
+        DataFrame read = DataFrame.fromCsv(csv.toFile());
+        assertSameFrame(df, read);
+        assert read.getCell(2, "x").getNumberValue() == x[2] && read.getCell(2, "note, quoted").isNa();
+    }
+
+    @Test
+    void testCsvParallel(@TempDir Path dir) throws IOException {
+        for (String name : new String[]{"data/ship_data.csv", "data/reale_data.csv"}) {
+            assertSameFrame(DataFrame.fromCsv(name), DataFrame.fromCsvParallel(Path.of(name), 4));
+        }
+        // quoted line breaks and quotes around the chunk boundaries, and a column that is only partly numeric
+        Path csv = dir.resolve("quoted.csv");
+        Random random = new Random(303);
+        try (BufferedWriter writer = Files.newBufferedWriter(csv)) {
+            writer.write("id,note,mixed\n");
+            for (int r = 0; r < 50_000; r++) {
+                String note = random.nextInt(10) == 0 ? "\"line\nbreak, \"\"quoted\"\"\"" : "plain" + r % 7;
+                String mixed = r == 40_000 ? "text" : String.valueOf(random.nextInt(100));
+                writer.write(r + "," + note + "," + mixed + "\r\n");
+            }
+        }
+        DataFrame expected = DataFrame.fromCsv(csv.toFile());
+        for (int threads : new int[]{1, 3, 8}) {
+            assertSameFrame(expected, DataFrame.fromCsvParallel(csv, threads));
+        }
+
+        // errors far from the start of the file give the byte offset of the record in the file
+        Path invalid = dir.resolve("invalid.csv");
+        StringBuilder text = new StringBuilder("a,b\n");
+        for (int r = 0; r < 50_000; r++) text.append(r).append(',').append(r % 3).append('\n');
+        long offset = text.length();
+        text.append("1,2,3\n4,5\n");
+        Files.writeString(invalid, text);
+        try {
+            DataFrame.fromCsvParallel(invalid, 4);
+            assert false;
+        } catch (DataFrameException e) {
+            assert e.getMessage().contains("the record at byte " + offset + ")") : e.getMessage();
+        }
+        try {
+            DataFrame.fromCsv(invalid.toFile());
+            assert false;
+        } catch (DataFrameException e) {
+            assert e.getMessage().contains("(record 50002)") : e.getMessage();
+        }
+    }
+
+    @Test
+    void testCsvProjectionAndFilter() throws IOException {
+        File csv = new File("data/ship_data.csv");
+        DataFrame df = DataFrame.fromCsv(csv, List.of("week", "division", "productivity"),
+                row -> row.getNumberValue("week") <= 2 && row.getText("gender").equals("Feminine"));
+        DataFrame full = DataFrame.fromCsv(csv);
+        assert df.getTitles().equals(List.of("week", "division", "productivity"));
+        int expectedRows = 0;
+        for (int r = 0; r < full.rowsCount(); r++) {
+            if (full.getCell(r, "week").getNumberValue() <= 2
+                    && full.getCell(r, "gender").toString().equals("Feminine")) {
+                assert full.getCell(r, "productivity").equals(df.getCell(expectedRows, "productivity"));
+                expectedRows++;
+            }
+        }
+        assert expectedRows > 0 && df.rowsCount() == expectedRows;
+        assert DataFrame.fromCsv(csv, "crew_id").columnsCount() == 1;
+    }
+
+    @Test
+    void testDataFrameStream(@TempDir Path dir) throws IOException {
+        File csv = new File("data/ship_data.csv");
+        DataFrame full = DataFrame.fromCsv(csv);
+        Aggregation[] aggregations = {Aggregation.count(), Aggregation.mean("productivity"),
+                Aggregation.variance("productivity"), Aggregation.max("week"), Aggregation.nDistinct("name")};
+        DataFrame expected = full.groupBy("division", "gender").agg(aggregations);
+        DataFrame streamed = DataFrameStream.fromCsv(csv, null, null, 100)
+                .agg(List.of("division", "gender"), aggregations);
+        assert streamed.getTitles().equals(expected.getTitles());
+        assert streamed.rowsCount() == expected.rowsCount();
+        for (int r = 0; r < expected.rowsCount(); r++) {
+            for (int c = 0; c < expected.columnsCount(); c++) {
+                DataCell e = expected.getCell(r, c);
+                DataCell a = streamed.getCell(r, c);
+                assert e.isNumber() ? Math.abs(e.getNumberValue() - a.getNumberValue()) < 1e-9 : e.equals(a);
+            }
+        }
+        // a single group, and batches of views over a DataFrame
+        DataFrame total = DataFrameStream.of(full, 7).agg(List.of(), Aggregation.sum("week"));
+        assert total.rowsCount() == 1 && total.getCell(0, "sum_week").getNumberValue() == full.getColumn("week").sum();
+
+        long kept = DataFrameStream.fromCsv(csv, List.of("week", "division", "productivity"), null, 256)
+                .filter("week", week -> week <= 2)
+                .filterText("division", division -> !division.equals("Command"))
+                .map("productivity", "percent", p -> p / 100)
+                .select("division", "percent")
+                .count();
+        long expectedKept = 0;
+        for (int r = 0; r < full.rowsCount(); r++) {
+            if (full.getCell(r, "week").getNumberValue() <= 2
+                    && !full.getCell(r, "division").toString().equals("Command")) expectedKept++;
+        }
+        assert kept == expectedKept && kept > 0;
+
+        // batches are written one after the other and read back as one DataFrame
+        Path out = dir.resolve("out.csv");
+        DataFrameStream.fromCsv(csv, null, null, 500).replaceNa("none").toCsv(out);
+        assertSameFrame(full.replaceNa("none"), DataFrame.fromCsv(out.toFile()));
+        DataFrame tricky = DataFrame.fromCsv(out.toFile(), "crew_id", "name").subFrameByRowsRange(0, 3);
+        tricky.getCell(0, "name").setValue("Smith, \"John\"\n");
+        tricky.getCell(1, "name").setValue(" 1.5");
+        DataFrameStream.of(tricky, 2).toCsv(out);
+        assertSameFrame(tricky, DataFrame.fromCsv(out.toFile()));
+    }
+
+    @Test
+    void testBinaryRoundTrip(@TempDir Path dir) throws IOException {
+        for (String name : new String[]{"data/ship_data.csv", "data/reale_data.csv"}) {
+            DataFrame df = DataFrame.fromCsv(name);
+            Path file = dir.resolve("frame.bin");
+            df.write(file);
+            DataFrame read = DataFrame.read(file);
+            assertSameFrame(df, read);
+            assert df.toString().equals(read.toString());
+        }
+        // a column sharing a larger dictionary only writes the entries it uses
+        DataFrame ships = DataFrame.fromCsv("data/ship_data.csv").subFrameByRows(3, 0, 3);
+        ships.write(dir.resolve("rows.bin"));
+        DataFrame rows = DataFrame.read(dir.resolve("rows.bin"));
+        assertSameFrame(ships, rows);
+        assert ((StringVector) rows.getColumn("name").vector()).dictionary().size() <= 2;
+
+        DataFrame empty = DataFrame.fromRows(List.of("a", "b"), List.of());
+        empty.write(dir.resolve("empty.bin"));
+        assertSameFrame(empty, DataFrame.read(dir.resolve("empty.bin")));
+    }
+
+    private static void assertSameFrame(DataFrame expected, DataFrame actual) {
+        assert expected.getTitles().equals(actual.getTitles());
+        assert expected.rowsCount() == actual.rowsCount();
+        for (int c = 0; c < expected.columnsCount(); c++) {
+            for (int r = 0; r < expected.rowsCount(); r++) {
+                DataCell e = expected.getCell(r, c);
+                DataCell a = actual.getCell(r, c);
+                assert e.equals(a) && e.isNumber() == a.isNumber()
+                        && Double.compare(e.getNumberValue(), a.getNumberValue()) == 0 : "row " + r + ", column " + c;
+            }
+        }
+    }
+
+    /**
+     * Checks csv loading throughput on a generated file, run with
+     * <code>mvn test -Dcsv.throughput=true -DargLine=-Xmx4g</code>.
+     * <p>
+     * The file size in MB and the minimum throughput in MB/s can be set by <code>csv.throughput.mb</code>
+     * (default 1024) and <code>csv.throughput.target</code> (default 50).
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "csv.throughput", matches = "true")
+    void testCsvThroughput(@TempDir Path dir) throws IOException {
+        long targetBytes = Long.getLong("csv.throughput.mb", 1024) << 20;
+        double targetMbPerSecond = Double.parseDouble(System.getProperty("csv.throughput.target", "50"));
+        Path csv = dir.resolve("generated.csv");
+        Random random = new Random(303);
+        String[] divisions = {"\"Command\"", "\"Engineering\"", "\"Science\"", "\"Security\""};
+        try (BufferedWriter writer = Files.newBufferedWriter(csv)) {
+            writer.write("id,division,gpa,score,week,productivity,ratio,name\n");
+            long written = 0;
+            for (int r = 0; written < targetBytes; r++) {
+                String line = r + "," + divisions[r & 3] + "," + random.nextInt(1000) / 100.0 + ","
+                        + random.nextInt(100) / 10.0 + "," + (r % 52) + "," + random.nextDouble() * 100 + ","
+                        + random.nextDouble() + ",crew" + (r % 5000) + "\n";
+                writer.write(line);
+                written += line.length();
+            }
+        }
+        long size = Files.size(csv);
+        long start = System.nanoTime();
+        DataFrame df = DataFrame.fromCsv(csv.toFile());
+        double seconds = (System.nanoTime() - start) / 1e9;
+        double mbPerSecond = size / 1048576.0 / seconds;
+        System.out.printf("Loaded %d rows, %.1f MB in %.2f s: %.1f MB/s%n",
+                df.rowsCount(), size / 1048576.0, seconds, mbPerSecond);
+        assert mbPerSecond >= targetMbPerSecond : mbPerSecond + " MB/s is below the target " + targetMbPerSecond;
+    }
 }
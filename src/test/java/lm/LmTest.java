@@ -1,9 +1,16 @@
 package lm;
 
+import data.DataColumn;
 import data.DataFrame;
+import data.DataFrameStream;
+import data.GroupedDataFrame;
 import org.junit.jupiter.api.Test;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
 
 public class LmTest {
 
@@ -52,4 +59,199 @@ public class LmTest {
         System.out.println(lm.summary());
         System.out.println(lm.anova());
     }
+
+    @Test
+    void testSimpleLmFromCsv() throws IOException {
+        SimpleLinearModel full = new SimpleLinearModel(DataFrame.fromCsv("data/reale_data.csv"), "Sale", "list");
+        SimpleLinearModel projected = SimpleLinearModel.fromCsv(new File("data/reale_data.csv"), "Sale", "list");
+        assert full.summary().equals(projected.summary());
+        assert full.anova().equals(projected.anova());
+    }
+
+    @Test
+    void testSimpleLmStreaming() throws IOException {
+        DataFrame df = DataFrame.fromCsv("data/ship_data.csv");
+        SimpleLinearModel full = new SimpleLinearModel(df, "perseverance_score", "starfleet_gpa");
+
+        RegressionAccumulator statistics = new RegressionAccumulator();
+        double[] x = df.getColumn("starfleet_gpa").toNumberArray();
+        double[] y = df.getColumn("perseverance_score").toNumberArray();
+        int half = x.length / 2;
+        for (int i = 0; i < half; i++) statistics.add(x[i], y[i]);
+        statistics.add(Arrays.copyOfRange(x, half, x.length), Arrays.copyOfRange(y, half, y.length));
+        SimpleLinearModel streamed = new SimpleLinearModel(statistics, "perseverance_score", "starfleet_gpa");
+
+        assert full.summary().equals(streamed.summary());
+        assert full.anova().equals(streamed.anova());
+
+        SimpleLinearModel batched = SimpleLinearModel.fit(DataFrameStream.fromCsv(new File("data/ship_data.csv"),
+                List.of("perseverance_score", "starfleet_gpa"), null, 500), "perseverance_score", "starfleet_gpa");
+        assert full.summary().equals(batched.summary());
+    }
+
+    @Test
+    void testSimpleLmParallelFit() {
+        Random random = new Random(12);
+        int rows = 1_000_000;
+        double[] x = new double[rows];
+        double[] y = new double[rows];
+        for (int i = 0; i < rows; i++) {
+            x[i] = 10.0 + 3.0 * random.nextGaussian();
+            y[i] = i % 1000 == 0 ? Double.NaN : 3.0 - 2.0 * x[i] + random.nextGaussian();
+        }
+        DataFrame df = DataFrame.fromColumns(List.of(DataColumn.of("x", x), DataColumn.of("y", y)));
+        SimpleLinearModel single = new SimpleLinearModel(df, "y", "x");
+        SimpleLinearModel parallel = SimpleLinearModel.fit(df, "y", "x");
+        assert parallel.n == single.n;
+        for (int i = 0; i < 2; i++) {
+            assert Math.abs(parallel.estimates[i] / single.estimates[i] - 1) < 1e-12;
+            assert Math.abs(parallel.stdErrors[i] / single.stdErrors[i] - 1) < 1e-12;
+        }
+        assert Math.abs(parallel.rss / single.rss - 1) < 1e-12;
+
+        // merging is associative, up to rounding
+        RegressionAccumulator a = new RegressionAccumulator().add(x, y, 0, 1000);
+        RegressionAccumulator b = new RegressionAccumulator().add(x, y, 1000, 5000);
+        RegressionAccumulator c = new RegressionAccumulator().add(x, y, 5000, 20000);
+        RegressionAccumulator left = new RegressionAccumulator().merge(a).merge(b).merge(c);
+        RegressionAccumulator right = new RegressionAccumulator().merge(a).merge(new RegressionAccumulator().merge(b)
+                .merge(c));
+        assert left.count() == right.count() && left.count() == 19980;
+        assert Math.abs(left.sxy() / right.sxy() - 1) < 1e-12;
+        assert Math.abs(left.xMean() / right.xMean() - 1) < 1e-15;
+    }
+
+    @Test
+    void testSimpleLmParallelFitShifted() {
+        // predictor values around 1e9 with unit spread, compared to the same fit on the exactly shifted values
+        Random random = new Random(13);
+        int rows = 1_000_000;
+        double shift = 1e9;
+        double[] x = new double[rows];
+        double[] shifted = new double[rows];
+        double[] y = new double[rows];
+        for (int i = 0; i < rows; i++) {
+            x[i] = shift + random.nextGaussian();
+            shifted[i] = x[i] - shift;  // exact, both are within a factor 2
+            y[i] = 3.0 - 2.0 * shifted[i] + random.nextGaussian();
+        }
+        SimpleLinearModel parallel = SimpleLinearModel.fit(DataFrame.fromColumns(
+                List.of(DataColumn.of("x", x), DataColumn.of("y", y))), "y", "x");
+        SimpleLinearModel reference = new SimpleLinearModel(DataFrame.fromColumns(
+                List.of(DataColumn.of("x", shifted), DataColumn.of("y", y))), "y", "x");
+        assert Math.abs(parallel.estimates[1] / reference.estimates[1] - 1) < 1e-12;
+        assert Math.abs(parallel.stdErrors[1] / reference.stdErrors[1] - 1) < 1e-12;
+        assert Math.abs(parallel.rss / reference.rss - 1) < 1e-12;
+        double intercept = reference.estimates[0] - reference.estimates[1] * shift;
+        assert Math.abs(parallel.estimates[0] - intercept) < 1e-12 * Math.abs(reference.estimates[1] * shift);
+    }
+
+    @Test
+    void testSimpleLmFitAll() throws IOException {
+        DataFrame df = DataFrame.fromCsv("data/ship_data.csv");
+        String[] predictors = {"crew_id", "starfleet_gpa", "week", "productivity"};
+        List<SimpleLinearModel> models = SimpleLinearModel.fitAll(df, "perseverance_score", predictors);
+        assert models.size() == predictors.length;
+        for (int j = 0; j < predictors.length; j++) {
+            SimpleLinearModel fitted = models.get(j);
+            SimpleLinearModel single = new SimpleLinearModel(df, "perseverance_score", predictors[j]);
+            assert fitted.n == single.n && fitted.predictor.equals(predictors[j]);
+            for (int i = 0; i < 2; i++) {
+                assert Math.abs(fitted.estimates[i] - single.estimates[i]) < 1e-9 * Math.abs(single.estimates[0]);
+                assert Math.abs(fitted.stdErrors[i] / single.stdErrors[i] - 1) < 1e-9;
+            }
+            assert Math.abs(fitted.rss / single.rss - 1) < 1e-9;
+        }
+    }
+
+    @Test
+    void testSimpleLmByGroup() throws IOException {
+        DataFrame df = DataFrame.fromCsv("data/ship_data.csv");
+        DataFrame fits = SimpleLinearModel.fitByGroup(df, "productivity", "week", "division");
+        System.out.println(fits);
+        GroupedDataFrame groups = df.groupBy("division");
+        assert fits.rowsCount() == groups.groupsCount();
+        for (int g = 0; g < groups.groupsCount(); g++) {
+            SimpleLinearModel single = new SimpleLinearModel(groups.group(g), "productivity", "week");
+            assert fits.getCell(g, "division").equals(groups.keys().getCell(g, "division"));
+            assert fits.getCell(g, "n").getNumberValue() == single.n;
+            assert Math.abs(fits.getCell(g, "slope").getNumberValue() / single.estimates[1] - 1) < 1e-9;
+            assert Math.abs(fits.getCell(g, "slope_std_error").getNumberValue() / single.stdErrors[1] - 1) < 1e-9;
+        }
+    }
+
+    @Test
+    void testLinearModel() throws IOException {
+        DataFrame ship = DataFrame.fromCsv("data/ship_data.csv");
+        SimpleLinearModel simple = new SimpleLinearModel(ship, "perseverance_score", "starfleet_gpa");
+        LinearModel single = new LinearModel(ship, "perseverance_score", "starfleet_gpa");
+        assert single.summary().equals(simple.summary());
+        assert single.anova().equals(simple.anova());
+
+        Random random = new Random(13);
+        int rows = 200_000;
+        double[][] x = new double[4][rows];
+        double[] y = new double[rows];
+        for (int i = 0; i < rows; i++) {
+            x[0][i] = random.nextGaussian();
+            x[1][i] = 100 + 10 * random.nextGaussian();
+            x[2][i] = x[0][i] + 0.5 * random.nextGaussian();
+            x[3][i] = i % 997 == 0 ? Double.NaN : random.nextInt(5);
+            y[i] = 1.0 + 2.0 * x[0][i] - 0.5 * x[1][i] + 0.25 * x[2][i] + 3.0 * x[3][i] + 0.1 * random.nextGaussian();
+        }
+        DataFrame df = DataFrame.fromColumns(List.of(DataColumn.of("a", x[0]), DataColumn.of("b", x[1]),
+                DataColumn.of("c", x[2]), DataColumn.of("d", x[3]), DataColumn.of("y", y)));
+        LinearModel lm = new LinearModel(df, "y", "a", "b", "c", "d");
+        System.out.println(lm.summary());
+        System.out.println(lm.anova());
+        assert !lm.isSolvedByQr() && lm.n == rows - (rows + 996) / 997;
+        double[] expected = {1.0, 2.0, -0.5, 0.25, 3.0};
+        for (int j = 0; j < expected.length; j++) {
+            assert Math.abs(lm.estimates[j] - expected[j]) < 5 * lm.stdErrors[j] + 1e-9 : j;
+        }
+
+        // nearly collinear predictors are solved by QR, to the same fit
+        double[] e = new double[rows];
+        for (int i = 0; i < rows; i++) e[i] = x[0][i] + 1e-6 * random.nextGaussian();
+        DataFrame collinear = DataFrame.fromColumns(List.of(DataColumn.of("a", x[0]), DataColumn.of("e", e),
+                DataColumn.of("y", y)));
+        LinearModel qr = new LinearModel(collinear, "y", "a", "e");
+        assert qr.isSolvedByQr();
+        assert Math.abs(qr.estimates[1] + qr.estimates[2] - new LinearModel(collinear, "y", "a").estimates[1]) < 1e-3;
+        assert qr.rss > 0 && Math.abs(qr.rSquared - new LinearModel(collinear, "y", "a").rSquared) < 1e-6;
+
+        // a condition number around 1e4, which the normal equations square, falls back to QR too
+        double[] f = new double[rows];
+        for (int i = 0; i < rows; i++) f[i] = x[0][i] + 1e-4 * random.nextGaussian();
+        assert new LinearModel(DataFrame.fromColumns(List.of(DataColumn.of("a", x[0]), DataColumn.of("f", f),
+                DataColumn.of("y", y))), "y", "a", "f").isSolvedByQr();
+
+        // and a rank deficient design names the predictor that cannot be estimated
+        DataFrame deficient = DataFrame.fromColumns(List.of(DataColumn.of("a", x[0]), DataColumn.of("b", x[1]),
+                DataColumn.of("twice a", Arrays.stream(x[0]).map(v -> 2 * v).toArray()), DataColumn.of("y", y)));
+        try {
+            new LinearModel(deficient, "y", "a", "b", "twice a");
+            assert false;
+        } catch (LinearModelException exception) {
+            assert exception.getMessage().startsWith("Predictor 'twice a' is constant") : exception.getMessage();
+        }
+
+        // too few complete rows is reported as such, not as a deficient predictor
+        double[] na = new double[rows];
+        Arrays.fill(na, Double.NaN);
+        na[0] = 1;
+        na[1] = 2;
+        na[2] = 4;
+        for (DataFrame frame : new DataFrame[]{
+                DataFrame.fromColumns(List.of(DataColumn.of("a", x[0]), DataColumn.of("b", na), DataColumn.of("y", y))),
+                DataFrame.fromColumns(List.of(DataColumn.of("a", new double[0]), DataColumn.of("b", new double[0]),
+                        DataColumn.of("y", new double[0])))}) {
+            try {
+                new LinearModel(frame, "y", "a", "b");
+                assert false;
+            } catch (LinearModelException exception) {
+                assert exception.getMessage().startsWith("Only ") : exception.getMessage();
+            }
+        }
+    }
 }